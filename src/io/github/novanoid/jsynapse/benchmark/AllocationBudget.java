@@ -0,0 +1,216 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+// Copyright 2014 Novanoid
+
+package io.github.novanoid.jsynapse.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.sun.management.ThreadMXBean;
+
+import io.github.novanoid.jsynapse.network.NeuralNetwork;
+import io.github.novanoid.jsynapse.training.Training;
+import io.github.novanoid.jsynapse.training.TrainingDataSet;
+
+/**
+ * Measures the memory allocated by a single pass through the network and by a
+ * single training iteration, failing if a budget is exceeded so allocations
+ * which crept back into the hot paths are noticed
+ * 
+ * @author Novanoid
+ */
+public class AllocationBudget {
+	/**
+	 * Iterations run before measuring, so the just in time compiler has
+	 * optimized the hot paths
+	 */
+	private static final int WARM_UP_ITERATIONS = 5000;
+	/**
+	 * Iterations to average the allocated memory over
+	 */
+	private static final int MEASURED_ITERATIONS = 2000;
+
+	private ThreadMXBean threadBean;
+
+	/**
+	 * Create a new allocation measurement for the current thread
+	 */
+	public AllocationBudget() {
+		this.threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+		if (!this.threadBean.isThreadAllocatedMemorySupported()) {
+			throw new UnsupportedOperationException(
+					"This virtual machine can not measure allocated memory.");
+		}
+		this.threadBean.setThreadAllocatedMemoryEnabled(true);
+	}
+
+	/**
+	 * Get the amount of bytes the current thread has allocated so far
+	 * 
+	 * @return Allocated bytes of the current thread
+	 */
+	private long allocatedBytes() {
+		return this.threadBean.getThreadAllocatedBytes(Thread.currentThread()
+				.getId());
+	}
+
+	/**
+	 * Measure the bytes allocated by one call of the input method working on
+	 * arrays
+	 * 
+	 * @param net
+	 *            Neural network to be measured
+	 * @return Average allocated bytes per pass through the network
+	 */
+	public long measureArrayInference(NeuralNetwork net) {
+		double[] input = new double[net.getAmountOfInputValues()];
+		double[] output = new double[net.getAmountOfNeuralNodesInOutputLayer()];
+		for (int i = 0; i < input.length; i++) {
+			input[i] = i % 2;
+		}
+
+		for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+			net.input(input, output);
+		}
+
+		long before = this.allocatedBytes();
+		for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+			net.input(input, output);
+		}
+
+		return (this.allocatedBytes() - before) / MEASURED_ITERATIONS;
+	}
+
+	/**
+	 * Measure the bytes allocated by one call of the input method working on
+	 * lists
+	 * 
+	 * @param net
+	 *            Neural network to be measured
+	 * @return Average allocated bytes per pass through the network
+	 */
+	public long measureListInference(NeuralNetwork net) {
+		List<Double> input = new ArrayList<Double>();
+		for (int i = 0; i < net.getAmountOfInputValues(); i++) {
+			input.add((double) (i % 2));
+		}
+
+		for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+			net.input(input);
+		}
+
+		long before = this.allocatedBytes();
+		for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+			net.input(input);
+		}
+
+		return (this.allocatedBytes() - before) / MEASURED_ITERATIONS;
+	}
+
+	/**
+	 * Measure the bytes allocated by one training iteration, always training
+	 * with the same data set so only the training itself is measured
+	 * 
+	 * @param net
+	 *            Neural network to be measured
+	 * @return Average allocated bytes per training iteration
+	 */
+	public long measureTraining(NeuralNetwork net) {
+		List<Double> input = new ArrayList<Double>();
+		for (int i = 0; i < net.getAmountOfInputValues(); i++) {
+			input.add((double) (i % 2));
+		}
+		List<Double> desiredOutput = new ArrayList<Double>();
+		for (int i = 0; i < net.getAmountOfNeuralNodesInOutputLayer(); i++) {
+			desiredOutput.add(i == 0 ? 1.0 : 0.0);
+		}
+		final TrainingDataSet dataSet = new TrainingDataSet(input,
+				desiredOutput);
+
+		Training training = new Training(net) {
+			@Override
+			protected TrainingDataSet getDataSet(boolean verbose) {
+				return dataSet;
+			}
+
+			@Override
+			protected boolean categorizeData(TrainingDataSet dataSet) {
+				return false;
+			}
+		};
+
+		training.startTraining(WARM_UP_ITERATIONS, false);
+
+		long before = this.allocatedBytes();
+		training.startTraining(MEASURED_ITERATIONS, false);
+
+		return (this.allocatedBytes() - before) / MEASURED_ITERATIONS;
+	}
+
+	/**
+	 * Compare a measurement with its budget and print the result
+	 * 
+	 * @param name
+	 *            Name of the measured path
+	 * @param bytes
+	 *            Measured bytes per iteration
+	 * @param budget
+	 *            Allowed bytes per iteration or a negative value to only
+	 *            report the measurement
+	 * @return True, if the budget has been kept
+	 */
+	private static boolean check(String name, long bytes, long budget) {
+		boolean kept = budget < 0 || bytes <= budget;
+		System.out.println(name + ": " + bytes + " bytes per iteration"
+				+ (budget < 0 ? "" : ", budget " + budget + " bytes")
+				+ (kept ? "" : " -> EXCEEDED"));
+
+		return kept;
+	}
+
+	/**
+	 * Measure the hot paths of a digit recognition network and exit with a
+	 * non-zero status if a budget is exceeded
+	 * 
+	 * @param args
+	 *            Optional budgets in bytes for inference on arrays (defaults
+	 *            to 0), inference on lists and training iterations, negative
+	 *            values only report the measurement
+	 */
+	public static void main(String[] args) {
+		long arrayBudget = args.length > 0 ? Long.parseLong(args[0]) : 0;
+		long listBudget = args.length > 1 ? Long.parseLong(args[1]) : -1;
+		long trainingBudget = args.length > 2 ? Long.parseLong(args[2]) : -1;
+
+		AllocationBudget allocationBudget = new AllocationBudget();
+		boolean kept = true;
+		for (boolean softmax : new boolean[] { false, true }) {
+			NeuralNetwork net = new NeuralNetwork(256, 2, 10, softmax);
+			String output = softmax ? " (softmax)" : " (sigmoid)";
+
+			kept &= check("Inference on arrays" + output,
+					allocationBudget.measureArrayInference(net), arrayBudget);
+			kept &= check("Inference on lists" + output,
+					allocationBudget.measureListInference(net), listBudget);
+			kept &= check("Training iteration" + output,
+					allocationBudget.measureTraining(net), trainingBudget);
+		}
+
+		if (!kept) {
+			System.exit(1);
+		}
+	}
+}
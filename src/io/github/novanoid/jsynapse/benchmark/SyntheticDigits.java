@@ -0,0 +1,197 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+// Copyright 2014 Novanoid
+
+package io.github.novanoid.jsynapse.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.github.novanoid.jsynapse.math.RandomStream;
+import io.github.novanoid.jsynapse.training.TrainingDataSet;
+
+/**
+ * Generates images of digits in the shape of the Semeion data set without
+ * downloading anything, so benchmarks can run offline and give the same data
+ * sets for the same seed. Every digit is drawn from the segments of a seven
+ * segment display, shifted by a random offset, drawn with a random stroke
+ * width and disturbed by noise.
+ * 
+ * @author Novanoid
+ */
+public class SyntheticDigits {
+	/**
+	 * Width and height of the images
+	 */
+	public static final int IMAGE_SIZE = 16;
+
+	/**
+	 * The segments lit for each digit, in the order top, top right, bottom
+	 * right, bottom, bottom left, top left and middle
+	 */
+	private static final boolean[][] SEGMENTS = {
+			{ true, true, true, true, true, true, false },
+			{ false, true, true, false, false, false, false },
+			{ true, true, false, true, true, false, true },
+			{ true, true, true, true, false, false, true },
+			{ false, true, true, false, false, true, true },
+			{ true, false, true, true, false, true, true },
+			{ true, false, true, true, true, true, true },
+			{ true, true, true, false, false, false, false },
+			{ true, true, true, true, true, true, true },
+			{ true, true, true, true, false, true, true } };
+
+	/**
+	 * Probability of each pixel to be flipped
+	 */
+	private static final double NOISE = 0.02;
+
+	private SyntheticDigits() {
+	}
+
+	/**
+	 * Generate data sets of random digits
+	 * 
+	 * @param amount
+	 *            Amount of data sets to generate
+	 * @param random
+	 *            Source of all random decisions, so the same seed gives the
+	 *            same data sets
+	 * @return Data sets of 256 pixel values and 10 desired outputs each
+	 */
+	public static List<TrainingDataSet> generate(int amount,
+			RandomStream random) {
+		List<TrainingDataSet> dataSets = new ArrayList<TrainingDataSet>(amount);
+		for (int i = 0; i < amount; i++) {
+			int digit = random.nextInt(10);
+			double[] pixels = draw(digit, random);
+
+			List<Double> input = new ArrayList<Double>(pixels.length);
+			for (double pixel : pixels) {
+				input.add(pixel);
+			}
+			List<Double> desiredOutput = new ArrayList<Double>(10);
+			for (int j = 0; j < 10; j++) {
+				desiredOutput.add(j == digit ? 1.0 : 0.0);
+			}
+
+			dataSets.add(new TrainingDataSet(input, desiredOutput));
+		}
+
+		return dataSets;
+	}
+
+	/**
+	 * Draw a single digit
+	 * 
+	 * @param digit
+	 *            The digit to draw
+	 * @param random
+	 *            Source of all random decisions
+	 * @return The pixels of the image row by row, either 0 or 1
+	 */
+	private static double[] draw(int digit, RandomStream random) {
+		double[] pixels = new double[IMAGE_SIZE * IMAGE_SIZE];
+		int left = 4 + random.nextInt(2), top = 2 + random.nextInt(2);
+		int width = 7 + random.nextInt(2), height = 11 + random.nextInt(2);
+		int stroke = 1 + random.nextInt(2);
+		int right = left + width - stroke, bottom = top + height - stroke;
+		int middle = top + (height - stroke) / 2;
+
+		boolean[] segments = SEGMENTS[digit];
+		if (segments[0]) {
+			fill(pixels, left, top, right + stroke, top + stroke);
+		}
+		if (segments[1]) {
+			fill(pixels, right, top, right + stroke, middle + stroke);
+		}
+		if (segments[2]) {
+			fill(pixels, right, middle, right + stroke, bottom + stroke);
+		}
+		if (segments[3]) {
+			fill(pixels, left, bottom, right + stroke, bottom + stroke);
+		}
+		if (segments[4]) {
+			fill(pixels, left, middle, left + stroke, bottom + stroke);
+		}
+		if (segments[5]) {
+			fill(pixels, left, top, left + stroke, middle + stroke);
+		}
+		if (segments[6]) {
+			fill(pixels, left, middle, right + stroke, middle + stroke);
+		}
+
+		for (int i = 0; i < pixels.length; i++) {
+			if (random.nextDouble() < NOISE) {
+				pixels[i] = 1.0 - pixels[i];
+			}
+		}
+
+		return pixels;
+	}
+
+	/**
+	 * Set all pixels of a rectangle, ignoring those outside of the image
+	 * 
+	 * @param pixels
+	 *            The pixels of the image row by row
+	 * @param fromX
+	 *            Left edge of the rectangle, inclusive
+	 * @param fromY
+	 *            Top edge of the rectangle, inclusive
+	 * @param toX
+	 *            Right edge of the rectangle, exclusive
+	 * @param toY
+	 *            Bottom edge of the rectangle, exclusive
+	 */
+	private static void fill(double[] pixels, int fromX, int fromY, int toX,
+			int toY) {
+		for (int y = Math.max(0, fromY); y < Math.min(IMAGE_SIZE, toY); y++) {
+			for (int x = Math.max(0, fromX); x < Math.min(IMAGE_SIZE, toX); x++) {
+				pixels[y * IMAGE_SIZE + x] = 1.0;
+			}
+		}
+	}
+
+	/**
+	 * Save data sets in the text format of the Semeion data set, so they can
+	 * be read like the downloaded data set
+	 * 
+	 * @param dataSets
+	 *            Data sets to be saved
+	 * @param path
+	 *            Path and file name of the new file
+	 */
+	public static void save(List<TrainingDataSet> dataSets, String path) {
+		try {
+			BufferedWriter writer = new BufferedWriter(new FileWriter(path));
+			for (TrainingDataSet dataSet : dataSets) {
+				for (double pixel : dataSet.getInput()) {
+					writer.write(pixel == 1.0 ? "1.0000 " : "0.0000 ");
+				}
+				for (double output : dataSet.getDesiredOutput()) {
+					writer.write(output == 1.0 ? "1 " : "0 ");
+				}
+				writer.newLine();
+			}
+			writer.close();
+		} catch (Exception e) {
+			System.err.println("Could not save the data sets to the file '"
+					+ path + "':");
+			e.printStackTrace();
+		}
+	}
+}
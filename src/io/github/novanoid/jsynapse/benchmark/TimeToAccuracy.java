@@ -0,0 +1,811 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+// Copyright 2014 Novanoid
+
+package io.github.novanoid.jsynapse.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.OperatingSystemMXBean;
+
+import io.github.novanoid.jsynapse.math.RandomStream;
+import io.github.novanoid.jsynapse.network.NeuralNetwork;
+import io.github.novanoid.jsynapse.training.Training;
+import io.github.novanoid.jsynapse.training.TrainingDataSet;
+import io.github.novanoid.jsynapse.training.distributed.ParameterAveragingCoordinator;
+import io.github.novanoid.jsynapse.training.distributed.ParameterAveragingWorker;
+
+/**
+ * Measures how long training a digit recognition network takes until it
+ * reaches a target accuracy on held out data sets, for different network
+ * shapes, trainers and amounts of threads. The data sets are generated
+ * locally and all random decisions are derived from a single seed, so runs on
+ * different versions of the code can be compared through their reports.
+ * 
+ * Only training is measured, testing the accuracy in between is not.
+ * 
+ * @author Novanoid
+ */
+public class TimeToAccuracy {
+	/**
+	 * Trains a single network on a single thread
+	 */
+	public static final String SEQUENTIAL = "sequential";
+	/**
+	 * Trains a copy of the network on each thread and averages their weights
+	 * through a {@link ParameterAveragingCoordinator} on the loopback device
+	 */
+	public static final String AVERAGING = "averaging";
+
+	/**
+	 * Training iterations of each averaging worker between two
+	 * synchronizations
+	 */
+	private static final int SYNCHRONIZATION_PERIOD = 100;
+	/**
+	 * Training iterations run before the first measurement, so the just in
+	 * time compiler has optimized the hot paths
+	 */
+	private static final int WARM_UP_ITERATIONS = 5000;
+
+	private List<TrainingDataSet> trainingDataSets, testDataSets;
+	private long seed;
+	private double targetAccuracy;
+	private int evaluationPeriod, maximumIterations;
+	private double eta = 0.05, alpha = 0.0001;
+
+	/**
+	 * Create a new benchmark, generating its data sets
+	 * 
+	 * @param seed
+	 *            Seed all data sets, weights and choices of data sets are
+	 *            derived from
+	 * @param trainingDataSets
+	 *            Amount of data sets to train with
+	 * @param testDataSets
+	 *            Amount of held out data sets to test the accuracy with
+	 * @param targetAccuracy
+	 *            Accuracy to train for, ranging from 0 to 1
+	 * @param evaluationPeriod
+	 *            Training iterations between two tests of the accuracy
+	 * @param maximumIterations
+	 *            Training iterations after which a run is given up
+	 */
+	public TimeToAccuracy(long seed, int trainingDataSets, int testDataSets,
+			double targetAccuracy, int evaluationPeriod, int maximumIterations) {
+		if (targetAccuracy <= 0 || targetAccuracy > 1) {
+			throw new IllegalArgumentException("The target accuracy ("
+					+ targetAccuracy + ") must be above 0 and at most 1.");
+		} else if (evaluationPeriod < 1) {
+			throw new IllegalArgumentException("The evaluation period ("
+					+ evaluationPeriod + ") must be at least 1.");
+		}
+
+		this.seed = seed;
+		this.targetAccuracy = targetAccuracy;
+		this.evaluationPeriod = evaluationPeriod;
+		this.maximumIterations = maximumIterations;
+
+		RandomStream random = new RandomStream(seed);
+		this.trainingDataSets = SyntheticDigits.generate(trainingDataSets,
+				random.split());
+		this.testDataSets = SyntheticDigits.generate(testDataSets,
+				random.split());
+	}
+
+	/**
+	 * Specify the variables for error backpropagation of all networks
+	 * 
+	 * @param eta
+	 *            The learning rate
+	 * @param alpha
+	 *            The momentum
+	 */
+	public void configure(double eta, double alpha) {
+		this.eta = eta;
+		this.alpha = alpha;
+	}
+
+	/**
+	 * Let the just in time compiler optimize the training before measuring
+	 */
+	public void warmUp() {
+		NeuralNetwork net = this.createNetwork(1, new RandomStream(this.seed));
+		DataSetTraining training = new DataSetTraining(net,
+				this.trainingDataSets);
+		training.startTraining(WARM_UP_ITERATIONS, false);
+		this.test(training, net);
+	}
+
+	/**
+	 * Train a new network until it reaches the target accuracy
+	 * 
+	 * @param hiddenLayers
+	 *            Amount of hidden layers of the network
+	 * @param trainer
+	 *            Either {@link #SEQUENTIAL} or {@link #AVERAGING}
+	 * @param threads
+	 *            Amount of threads to train with, only 1 for sequential
+	 *            training
+	 * @return The measurements of this run
+	 * @throws IOException
+	 *             If the averaging workers could not reach their coordinator
+	 * @throws InterruptedException
+	 *             If the thread was interrupted while waiting for the workers
+	 */
+	public Result run(int hiddenLayers, String trainer, int threads)
+			throws IOException, InterruptedException {
+		if (SEQUENTIAL.equals(trainer) && threads != 1) {
+			throw new IllegalArgumentException("Sequential training runs on "
+					+ "a single thread, not " + threads + ".");
+		} else if (!SEQUENTIAL.equals(trainer) && !AVERAGING.equals(trainer)) {
+			throw new IllegalArgumentException("Unknown trainer '" + trainer
+					+ "'.");
+		} else if (threads < 1) {
+			throw new IllegalArgumentException("The amount of threads ("
+					+ threads + ") must be at least 1.");
+		}
+
+		Measurement measurement = new Measurement();
+		try {
+			if (SEQUENTIAL.equals(trainer)) {
+				this.runSequential(hiddenLayers, measurement);
+			} else {
+				this.runAveraging(hiddenLayers, threads, measurement);
+			}
+		} finally {
+			measurement.stop();
+		}
+
+		return new Result(trainer, hiddenLayers, threads, measurement);
+	}
+
+	/**
+	 * Train a single network on the current thread
+	 * 
+	 * @param hiddenLayers
+	 *            Amount of hidden layers of the network
+	 * @param measurement
+	 *            Measurement to record the run in
+	 */
+	private void runSequential(int hiddenLayers, Measurement measurement) {
+		RandomStream random = new RandomStream(this.seed).split();
+		NeuralNetwork net = this.createNetwork(hiddenLayers, random.split());
+		DataSetTraining training = new DataSetTraining(net,
+				this.trainingDataSets);
+		training.setRandom(random.split());
+
+		measurement.start();
+		while (measurement.samples < this.maximumIterations) {
+			training.startTraining(this.evaluationPeriod, false);
+			measurement.samples += this.evaluationPeriod;
+
+			measurement.pause();
+			measurement.accuracy = this.test(training, net);
+			if (measurement.accuracy >= this.targetAccuracy) {
+				measurement.reached = true;
+				break;
+			}
+			measurement.start();
+		}
+		measurement.pause();
+	}
+
+	/**
+	 * Train a copy of the network on each thread, averaging their weights
+	 * 
+	 * @param hiddenLayers
+	 *            Amount of hidden layers of the network
+	 * @param threads
+	 *            Amount of workers, each training on its own share of the
+	 *            data sets
+	 * @param measurement
+	 *            Measurement to record the run in
+	 * @throws IOException
+	 *             If the workers could not reach their coordinator
+	 * @throws InterruptedException
+	 *             If the thread was interrupted while waiting for the workers
+	 */
+	private void runAveraging(int hiddenLayers, int threads,
+			Measurement measurement) throws IOException, InterruptedException {
+		RandomStream random = new RandomStream(this.seed).split();
+		NeuralNetwork net = this.createNetwork(hiddenLayers, random.split());
+		DataSetTraining testTraining = new DataSetTraining(net,
+				this.testDataSets);
+
+		ParameterAveragingCoordinator coordinator = new ParameterAveragingCoordinator(
+				net, 10000);
+		InetAddress loopback = InetAddress.getByName(null);
+		coordinator.start(new InetSocketAddress(loopback, 0));
+
+		final List<ParameterAveragingWorker> workers = new ArrayList<ParameterAveragingWorker>();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			for (int i = 0; i < threads; i++) {
+				List<TrainingDataSet> share = new ArrayList<TrainingDataSet>();
+				for (int j = i; j < this.trainingDataSets.size(); j += threads) {
+					share.add(this.trainingDataSets.get(j));
+				}
+
+				DataSetTraining training = new DataSetTraining(
+						this.createNetwork(hiddenLayers, random.split()), share);
+				training.setRandom(random.split());
+				ParameterAveragingWorker worker = new ParameterAveragingWorker(
+						training, SYNCHRONIZATION_PERIOD);
+				worker.connect(new InetSocketAddress(loopback, coordinator
+						.getPort()));
+				workers.add(worker);
+			}
+
+			final int iterationsPerWorker = Math.max(1, this.evaluationPeriod
+					/ threads);
+			List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+			for (final ParameterAveragingWorker worker : workers) {
+				tasks.add(new Callable<Void>() {
+					@Override
+					public Void call() throws IOException {
+						worker.startTraining(iterationsPerWorker);
+						return null;
+					}
+				});
+			}
+
+			measurement.start();
+			while (measurement.samples < this.maximumIterations) {
+				for (Future<Void> future : executor.invokeAll(tasks)) {
+					try {
+						future.get();
+					} catch (ExecutionException e) {
+						throw new IOException("A worker failed.", e.getCause());
+					}
+				}
+				measurement.samples += iterationsPerWorker * threads;
+
+				measurement.pause();
+				NeuralNetwork averagedNet = coordinator.getNetwork();
+				measurement.accuracy = this.test(testTraining, averagedNet);
+				if (measurement.accuracy >= this.targetAccuracy) {
+					measurement.reached = true;
+					break;
+				}
+				measurement.start();
+			}
+			measurement.pause();
+		} finally {
+			executor.shutdown();
+			for (ParameterAveragingWorker worker : workers) {
+				worker.close();
+			}
+			coordinator.awaitWorkers(workers.size());
+			coordinator.stop();
+		}
+	}
+
+	/**
+	 * Create a new digit recognition network
+	 * 
+	 * @param hiddenLayers
+	 *            Amount of hidden layers
+	 * @param random
+	 *            Source of the initial weights
+	 * @return A configured network with 256 inputs and 10 outputs
+	 */
+	private NeuralNetwork createNetwork(int hiddenLayers, RandomStream random) {
+		NeuralNetwork net = new NeuralNetwork(256, hiddenLayers, 10, random);
+		net.configure(this.eta, this.alpha);
+
+		return net;
+	}
+
+	/**
+	 * Test a network with all held out data sets
+	 * 
+	 * @param training
+	 *            Any training of this benchmark, only used to categorize data
+	 * @param net
+	 *            Neural network to be tested
+	 * @return The share of correctly categorized data sets
+	 */
+	private double test(Training training, NeuralNetwork net) {
+		int correct = 0;
+		for (TrainingDataSet dataSet : this.testDataSets) {
+			if (training.categorizeData(net, dataSet)) {
+				correct++;
+			}
+		}
+
+		return (double) correct / this.testDataSets.size();
+	}
+
+	/**
+	 * Write results to a file, as JSON if its name ends with .json and as
+	 * comma separated values otherwise
+	 * 
+	 * @param results
+	 *            Results to be written
+	 * @param label
+	 *            Name of the measured version of the code, such as a commit
+	 * @param path
+	 *            Path and file name of the report
+	 */
+	public static void writeReport(List<Result> results, String label,
+			String path) {
+		try {
+			BufferedWriter writer = new BufferedWriter(new FileWriter(path));
+			if (path.endsWith(".json")) {
+				writeJson(results, label, writer);
+			} else {
+				writeCsv(results, label, writer);
+			}
+			writer.close();
+		} catch (Exception e) {
+			System.err.println("Could not write the report to the file '"
+					+ path + "':");
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Write results as a JSON object
+	 * 
+	 * @param results
+	 *            Results to be written
+	 * @param label
+	 *            Name of the measured version of the code
+	 * @param writer
+	 *            Writer to write to
+	 * @throws IOException
+	 *             If the results could not be written
+	 */
+	private static void writeJson(List<Result> results, String label,
+			BufferedWriter writer) throws IOException {
+		writer.write("{\n");
+		writer.write("  \"label\": \"" + escape(label) + "\",\n");
+		writer.write("  \"javaVersion\": \""
+				+ escape(System.getProperty("java.version")) + "\",\n");
+		writer.write("  \"processors\": "
+				+ Runtime.getRuntime().availableProcessors() + ",\n");
+		writer.write("  \"results\": [");
+		for (int i = 0; i < results.size(); i++) {
+			Result result = results.get(i);
+			writer.write(i == 0 ? "\n" : ",\n");
+			writer.write(String.format(Locale.ROOT, "    {\"trainer\": \"%s\", "
+					+ "\"hiddenLayers\": %d, \"threads\": %d, \"seed\": %d, "
+					+ "\"targetAccuracy\": %.4f, \"reached\": %b, "
+					+ "\"accuracy\": %.4f, \"samples\": %d, "
+					+ "\"wallMillis\": %d, \"cpuMillis\": %d, "
+					+ "\"samplesPerSecond\": %.1f, \"peakHeapBytes\": %d}",
+					result.trainer, result.hiddenLayers, result.threads,
+					result.seed, result.targetAccuracy, result.reached,
+					result.accuracy, result.samples, result.wallMillis,
+					result.cpuMillis, result.getSamplesPerSecond(),
+					result.peakHeapBytes));
+		}
+		writer.write("\n  ]\n}\n");
+	}
+
+	/**
+	 * Write results as comma separated values with a header line
+	 * 
+	 * @param results
+	 *            Results to be written
+	 * @param label
+	 *            Name of the measured version of the code
+	 * @param writer
+	 *            Writer to write to
+	 * @throws IOException
+	 *             If the results could not be written
+	 */
+	private static void writeCsv(List<Result> results, String label,
+			BufferedWriter writer) throws IOException {
+		writer.write("label,trainer,hiddenLayers,threads,seed,targetAccuracy,"
+				+ "reached,accuracy,samples,wallMillis,cpuMillis,"
+				+ "samplesPerSecond,peakHeapBytes\n");
+		for (Result result : results) {
+			writer.write(String.format(Locale.ROOT,
+					"%s,%s,%d,%d,%d,%.4f,%b,%.4f,%d,%d,%d,%.1f,%d\n",
+					label.replace(',', ' '), result.trainer,
+					result.hiddenLayers, result.threads, result.seed,
+					result.targetAccuracy, result.reached, result.accuracy,
+					result.samples, result.wallMillis, result.cpuMillis,
+					result.getSamplesPerSecond(), result.peakHeapBytes));
+		}
+	}
+
+	/**
+	 * Escape a string to be used inside a JSON string
+	 * 
+	 * @param value
+	 *            String to be escaped
+	 * @return The escaped string
+	 */
+	private static String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"");
+	}
+
+	/**
+	 * Parse a comma separated list of numbers
+	 * 
+	 * @param list
+	 *            List such as "1,2,4"
+	 * @return The parsed numbers
+	 */
+	private static List<Integer> parseNumbers(String list) {
+		List<Integer> numbers = new ArrayList<Integer>();
+		for (String number : list.split(",")) {
+			numbers.add(Integer.parseInt(number.trim()));
+		}
+
+		return numbers;
+	}
+
+	/**
+	 * Run the benchmark for all combinations of the given configurations and
+	 * write a report
+	 * 
+	 * @param args
+	 *            Path of the report, ending with .json or .csv, and optionally
+	 *            a label for the measured code (defaults to "unlabeled"), the
+	 *            target accuracy (defaults to 0.85), comma separated amounts of
+	 *            hidden layers (defaults to "1,2"), trainers (defaults to
+	 *            "sequential,averaging"), amounts of threads for averaging
+	 *            (defaults to "2,4") and the seed (defaults to 42)
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("Usage: TimeToAccuracy <report file> [label] "
+					+ "[target accuracy] [hidden layers] [trainers] "
+					+ "[threads] [seed]");
+			return;
+		}
+
+		String label = args.length > 1 ? args[1] : "unlabeled";
+		double targetAccuracy = args.length > 2 ? Double.parseDouble(args[2])
+				: 0.85;
+		List<Integer> hiddenLayers = parseNumbers(args.length > 3 ? args[3]
+				: "1,2");
+		String[] trainers = (args.length > 4 ? args[4] : SEQUENTIAL + ","
+				+ AVERAGING).split(",");
+		List<Integer> threadCounts = parseNumbers(args.length > 5 ? args[5]
+				: "2,4");
+		long seed = args.length > 6 ? Long.parseLong(args[6]) : 42;
+
+		TimeToAccuracy benchmark = new TimeToAccuracy(seed, 2000, 500,
+				targetAccuracy, 500, 100000);
+		benchmark.warmUp();
+
+		List<Result> results = new ArrayList<Result>();
+		for (int hidden : hiddenLayers) {
+			for (String trainer : trainers) {
+				trainer = trainer.trim();
+				List<Integer> threads = threadCounts;
+				if (SEQUENTIAL.equals(trainer)) {
+					threads = parseNumbers("1");
+				}
+
+				for (int threadCount : threads) {
+					Result result = benchmark.run(hidden, trainer, threadCount);
+					System.out.println(result);
+					results.add(result);
+				}
+			}
+		}
+
+		writeReport(results, label, args[0]);
+	}
+
+	/**
+	 * Time, samples and memory of a running measurement. The heap usage is
+	 * sampled whenever the measurement is paused and right before every
+	 * garbage collection, when it is the highest.
+	 */
+	private static class Measurement implements NotificationListener {
+		private OperatingSystemMXBean operatingSystemBean;
+		private long wallNanos, cpuNanos, startedWallNanos, startedCpuNanos;
+		private boolean running;
+
+		/**
+		 * Names of the heap memory pools
+		 */
+		private Set<String> heapPools;
+		/**
+		 * Garbage collectors this measurement listens to
+		 */
+		private List<NotificationEmitter> collectors;
+		private long peakHeapBytes;
+
+		private long samples;
+		private double accuracy;
+		private boolean reached;
+
+		private Measurement() {
+			this.operatingSystemBean = (OperatingSystemMXBean) ManagementFactory
+					.getOperatingSystemMXBean();
+
+			System.gc();
+			this.heapPools = new HashSet<String>();
+			for (MemoryPoolMXBean pool : ManagementFactory
+					.getMemoryPoolMXBeans()) {
+				if (pool.getType() == MemoryType.HEAP) {
+					this.heapPools.add(pool.getName());
+				}
+			}
+
+			this.collectors = new ArrayList<NotificationEmitter>();
+			for (GarbageCollectorMXBean collector : ManagementFactory
+					.getGarbageCollectorMXBeans()) {
+				if (collector instanceof NotificationEmitter) {
+					NotificationEmitter emitter = (NotificationEmitter) collector;
+					emitter.addNotificationListener(this, null, null);
+					this.collectors.add(emitter);
+				}
+			}
+			this.sampleHeap();
+		}
+
+		/**
+		 * Start or continue measuring time
+		 */
+		private void start() {
+			this.running = true;
+			this.startedWallNanos = System.nanoTime();
+			this.startedCpuNanos = this.operatingSystemBean
+					.getProcessCpuTime();
+		}
+
+		/**
+		 * Stop measuring time until the measurement is started again
+		 */
+		private void pause() {
+			if (!this.running) {
+				return;
+			}
+
+			this.running = false;
+			this.wallNanos += System.nanoTime() - this.startedWallNanos;
+			this.cpuNanos += this.operatingSystemBean.getProcessCpuTime()
+					- this.startedCpuNanos;
+			this.sampleHeap();
+		}
+
+		/**
+		 * Stop listening to the garbage collectors, the heap usage is not
+		 * sampled anymore afterwards
+		 */
+		private void stop() {
+			this.pause();
+			for (NotificationEmitter collector : this.collectors) {
+				try {
+					collector.removeNotificationListener(this);
+				} catch (ListenerNotFoundException e) {
+					/* Already removed */
+				}
+			}
+			this.collectors.clear();
+		}
+
+		/**
+		 * Record the current heap usage if it is the highest so far
+		 */
+		private void sampleHeap() {
+			this.recordHeapBytes(ManagementFactory.getMemoryMXBean()
+					.getHeapMemoryUsage().getUsed());
+		}
+
+		/**
+		 * Record an amount of used heap memory if it is the highest so far
+		 * 
+		 * @param bytes
+		 *            Heap memory used at a single point in time
+		 */
+		private synchronized void recordHeapBytes(long bytes) {
+			this.peakHeapBytes = Math.max(this.peakHeapBytes, bytes);
+		}
+
+		@Override
+		public void handleNotification(Notification notification,
+				Object handback) {
+			if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION
+					.equals(notification.getType())) {
+				return;
+			}
+
+			GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo
+					.from((CompositeData) notification.getUserData());
+			long bytes = 0;
+			for (String pool : this.heapPools) {
+				MemoryUsage usage = info.getGcInfo().getMemoryUsageBeforeGc()
+						.get(pool);
+				if (usage != null) {
+					bytes += usage.getUsed();
+				}
+			}
+			this.recordHeapBytes(bytes);
+		}
+
+		/**
+		 * Get the highest amount of heap memory used since the measurement
+		 * was created
+		 * 
+		 * @return Highest sampled heap usage in bytes
+		 */
+		private synchronized long getPeakHeapBytes() {
+			return this.peakHeapBytes;
+		}
+	}
+
+	/**
+	 * The measurements of a single run
+	 */
+	public class Result {
+		private String trainer;
+		private int hiddenLayers, threads;
+		private long seed;
+		private double targetAccuracy, accuracy;
+		private boolean reached;
+		private long samples, wallMillis, cpuMillis, peakHeapBytes;
+
+		private Result(String trainer, int hiddenLayers, int threads,
+				Measurement measurement) {
+			this.trainer = trainer;
+			this.hiddenLayers = hiddenLayers;
+			this.threads = threads;
+			this.seed = TimeToAccuracy.this.seed;
+			this.targetAccuracy = TimeToAccuracy.this.targetAccuracy;
+			this.accuracy = measurement.accuracy;
+			this.reached = measurement.reached;
+			this.samples = measurement.samples;
+			this.wallMillis = measurement.wallNanos / 1000000;
+			this.cpuMillis = measurement.cpuNanos / 1000000;
+			this.peakHeapBytes = measurement.getPeakHeapBytes();
+		}
+
+		/**
+		 * Check whether the target accuracy has been reached
+		 * 
+		 * @return True, if the target accuracy has been reached before the
+		 *         maximum amount of training iterations
+		 */
+		public boolean isReached() {
+			return this.reached;
+		}
+
+		/**
+		 * Get the accuracy reached at the end of the run
+		 * 
+		 * @return Share of correctly categorized held out data sets
+		 */
+		public double getAccuracy() {
+			return this.accuracy;
+		}
+
+		/**
+		 * Get the amount of data sets trained with
+		 * 
+		 * @return Training iterations of all threads together
+		 */
+		public long getSamples() {
+			return this.samples;
+		}
+
+		/**
+		 * Get the time spent training
+		 * 
+		 * @return Elapsed milliseconds, not counting the tests
+		 */
+		public long getWallMillis() {
+			return this.wallMillis;
+		}
+
+		/**
+		 * Get the processor time spent training
+		 * 
+		 * @return Milliseconds of processor time of all threads, not counting
+		 *         the tests
+		 */
+		public long getCpuMillis() {
+			return this.cpuMillis;
+		}
+
+		/**
+		 * Get the speed of the training
+		 * 
+		 * @return Data sets trained with per second
+		 */
+		public double getSamplesPerSecond() {
+			return this.wallMillis == 0 ? 0 : this.samples * 1000.0
+					/ this.wallMillis;
+		}
+
+		/**
+		 * Get the highest amount of heap memory used during the run
+		 * 
+		 * @return Peak heap usage in bytes
+		 */
+		public long getPeakHeapBytes() {
+			return this.peakHeapBytes;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.ROOT, "%s, %d hidden layers, %d "
+					+ "threads: %s %.1f%% after %d samples in %dms "
+					+ "(%.0f samples/s, %dms CPU, %dMB peak heap)",
+					this.trainer, this.hiddenLayers, this.threads,
+					this.reached ? "reached" : "only reached",
+					this.accuracy * 100, this.samples, this.wallMillis,
+					this.getSamplesPerSecond(), this.cpuMillis,
+					this.peakHeapBytes / (1024 * 1024));
+		}
+	}
+
+	/**
+	 * Trains with random data sets out of a fixed list
+	 */
+	private static class DataSetTraining extends Training {
+		private List<TrainingDataSet> dataSets;
+
+		private DataSetTraining(NeuralNetwork net,
+				List<TrainingDataSet> dataSets) {
+			super(net);
+			this.dataSets = dataSets;
+		}
+
+		@Override
+		protected TrainingDataSet getDataSet(boolean verbose) {
+			return this.dataSets.get(this.random.nextInt(this.dataSets.size()));
+		}
+
+		@Override
+		protected boolean categorizeData(TrainingDataSet dataSet) {
+			List<Double> output = this.net.input(dataSet.getInput());
+
+			int indexOfMaximumOutput = 0;
+			for (int i = 0; i < output.size(); i++) {
+				if (output.get(i).doubleValue() > output.get(
+						indexOfMaximumOutput).doubleValue()) {
+					indexOfMaximumOutput = i;
+				}
+			}
+
+			return dataSet.getDesiredOutput().get(indexOfMaximumOutput) == 1.0;
+		}
+	}
+}
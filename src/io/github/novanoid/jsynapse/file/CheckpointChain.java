@@ -0,0 +1,441 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+// Copyright 2014 Novanoid
+
+package io.github.novanoid.jsynapse.file;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import io.github.novanoid.jsynapse.network.NeuralNetwork;
+
+/**
+ * Saves the weights and biases of a network during training as a chain of
+ * checkpoints in a single file. Every few checkpoints the full parameters are
+ * saved, all other checkpoints only save how their parameters differ from the
+ * last full checkpoint, so they are written quickly and take little space.
+ * Any checkpoint of the chain can be restored.
+ * 
+ * A difference is the bitwise exclusive or of the bit patterns of the
+ * parameters. Parameters which have not changed give zeros, and parameters
+ * which have changed slightly mostly keep their sign, exponent and leading
+ * digits. The bytes of all parameters are grouped by their position in the
+ * bit pattern before being compressed, so these zeros end up next to each
+ * other. The trailing bits of the mantissa can be dropped before saving to
+ * trade precision for even smaller checkpoints.
+ * 
+ * @author Novanoid
+ */
+public class CheckpointChain {
+	/**
+	 * Marks the beginning of a checkpoint file
+	 */
+	private static final int MAGIC_NUMBER = 0x4A534350;
+	private static final byte FULL = 0;
+	private static final byte DELTA = 1;
+	/**
+	 * Bits of the mantissa of a double
+	 */
+	private static final int MANTISSA_BITS = 52;
+
+	private DataOutputStream out;
+	private int parameters;
+	/**
+	 * Every this many checkpoints the full parameters are saved
+	 */
+	private int fullInterval;
+	private long mantissaMask;
+
+	/**
+	 * Bit patterns of the parameters of the last full checkpoint
+	 */
+	private long[] base;
+	private long[] bits;
+	private byte[] planes;
+	private byte[] compressed;
+	private Deflater deflater = new Deflater();
+
+	private int checkpoints;
+	private long bytesWritten;
+
+	/**
+	 * Create a new checkpoint file, replacing any existing file
+	 * 
+	 * @param net
+	 *            Neural network whose parameters are saved
+	 * @param path
+	 *            Valid path and file name to be saved to
+	 * @param fullInterval
+	 *            Every this many checkpoints the full parameters are saved,
+	 *            starting with the first checkpoint
+	 * @param mantissaBits
+	 *            Leading bits of the mantissa of each parameter that are
+	 *            saved, from 0 to 52, where 52 saves the parameters exactly
+	 * @throws IOException
+	 *             If the file could not be created
+	 */
+	public CheckpointChain(NeuralNetwork net, String path, int fullInterval,
+			int mantissaBits) throws IOException {
+		if (fullInterval < 1) {
+			throw new IllegalArgumentException("The full checkpoint interval ("
+					+ fullInterval + ") must be at least 1.");
+		} else if (mantissaBits < 0 || mantissaBits > MANTISSA_BITS) {
+			throw new IllegalArgumentException("The mantissa bits ("
+					+ mantissaBits + ") must range from 0 to " + MANTISSA_BITS
+					+ ".");
+		}
+
+		this.parameters = net.getAmountOfParameters();
+		this.fullInterval = fullInterval;
+		this.mantissaMask = mantissaMask(mantissaBits);
+		this.base = new long[this.parameters];
+		this.bits = new long[this.parameters];
+		this.planes = new byte[this.parameters * 8];
+		this.compressed = new byte[this.planes.length + 1024];
+
+		this.out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(path)));
+		this.out.writeInt(MAGIC_NUMBER);
+		this.out.writeInt(this.parameters);
+		this.out.writeInt(mantissaBits);
+		this.out.flush();
+		this.bytesWritten = 12;
+	}
+
+	/**
+	 * Get the mask clearing the dropped bits of the mantissa of a bit pattern
+	 * 
+	 * @param mantissaBits
+	 *            Leading bits of the mantissa to be kept
+	 * @return Mask keeping the sign, the exponent and the kept bits
+	 */
+	private static long mantissaMask(int mantissaBits) {
+		return ~((1L << (MANTISSA_BITS - mantissaBits)) - 1);
+	}
+
+	/**
+	 * Save the current parameters of the network as the next checkpoint
+	 * 
+	 * @param net
+	 *            Neural network with the same amount of parameters as the one
+	 *            the chain was created for
+	 * @return Bytes written for the checkpoint
+	 * @throws IOException
+	 *             If the checkpoint could not be written
+	 */
+	public int append(NeuralNetwork net) throws IOException {
+		double[] values = net.getParameters();
+		if (values.length != this.parameters) {
+			throw new IllegalArgumentException("The network has "
+					+ values.length + " parameters, yet the chain saves "
+					+ this.parameters + ".");
+		}
+
+		boolean full = this.checkpoints % this.fullInterval == 0;
+		for (int i = 0; i < this.parameters; i++) {
+			this.bits[i] = Double.doubleToRawLongBits(values[i])
+					& this.mantissaMask;
+		}
+		if (full) {
+			System.arraycopy(this.bits, 0, this.base, 0, this.parameters);
+		} else {
+			for (int i = 0; i < this.parameters; i++) {
+				this.bits[i] ^= this.base[i];
+			}
+		}
+		toPlanes(this.bits, this.planes);
+
+		this.deflater.reset();
+		this.deflater.setInput(this.planes);
+		this.deflater.finish();
+		int length = 0;
+		while (!this.deflater.finished()) {
+			if (length == this.compressed.length) {
+				byte[] larger = new byte[this.compressed.length * 2];
+				System.arraycopy(this.compressed, 0, larger, 0, length);
+				this.compressed = larger;
+			}
+			length += this.deflater.deflate(this.compressed, length,
+					this.compressed.length - length);
+		}
+
+		this.out.writeByte(full ? FULL : DELTA);
+		this.out.writeInt(length);
+		this.out.write(this.compressed, 0, length);
+		this.out.flush();
+
+		this.checkpoints++;
+		this.bytesWritten += 5 + length;
+		return 5 + length;
+	}
+
+	/**
+	 * Group the bytes of bit patterns by their position, starting with the
+	 * most significant bytes of all patterns
+	 * 
+	 * @param bits
+	 *            The bit patterns
+	 * @param planes
+	 *            Array to store the grouped bytes in, 8 for each pattern
+	 */
+	private static void toPlanes(long[] bits, byte[] planes) {
+		for (int plane = 0; plane < 8; plane++) {
+			int shift = 56 - 8 * plane;
+			int offset = plane * bits.length;
+			for (int i = 0; i < bits.length; i++) {
+				planes[offset + i] = (byte) (bits[i] >>> shift);
+			}
+		}
+	}
+
+	/**
+	 * Rebuild bit patterns from their bytes grouped by position
+	 * 
+	 * @param planes
+	 *            The grouped bytes, 8 for each pattern
+	 * @param bits
+	 *            Array to store the bit patterns in
+	 */
+	private static void fromPlanes(byte[] planes, long[] bits) {
+		for (int i = 0; i < bits.length; i++) {
+			bits[i] = 0;
+		}
+		for (int plane = 0; plane < 8; plane++) {
+			int shift = 56 - 8 * plane;
+			int offset = plane * bits.length;
+			for (int i = 0; i < bits.length; i++) {
+				bits[i] |= (planes[offset + i] & 0xFFL) << shift;
+			}
+		}
+	}
+
+	/**
+	 * Get the amount of checkpoints saved so far
+	 * 
+	 * @return Amount of checkpoints in the chain
+	 */
+	public int getCheckpoints() {
+		return this.checkpoints;
+	}
+
+	/**
+	 * Get the size of the checkpoint file
+	 * 
+	 * @return Bytes written to the file so far
+	 */
+	public long getBytesWritten() {
+		return this.bytesWritten;
+	}
+
+	/**
+	 * Close the checkpoint file, after which no checkpoints can be appended
+	 * 
+	 * @throws IOException
+	 *             If the file could not be closed
+	 */
+	public void close() throws IOException {
+		this.out.close();
+		this.deflater.end();
+	}
+
+	/**
+	 * Count the checkpoints of a checkpoint file. A checkpoint which has not
+	 * been written completely, for example because the training was aborted,
+	 * is not counted.
+	 * 
+	 * @param path
+	 *            Path and file name of the checkpoint file
+	 * @return Amount of complete checkpoints
+	 * @throws IOException
+	 *             If the file could not be read
+	 */
+	public static int getAmountOfCheckpoints(String path) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		try {
+			readHeader(file, path);
+			return findCheckpoints(file).size();
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * Give a network the parameters of a checkpoint
+	 * 
+	 * @param net
+	 *            Neural network with the same amount of parameters as the one
+	 *            the checkpoints were saved from
+	 * @param path
+	 *            Path and file name of the checkpoint file
+	 * @param checkpoint
+	 *            Index of the checkpoint, starting at 0 with the first one
+	 * @throws IOException
+	 *             If the file could not be read
+	 */
+	public static void restore(NeuralNetwork net, String path, int checkpoint)
+			throws IOException {
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		try {
+			int[] header = readHeader(file, path);
+			if (header[0] != net.getAmountOfParameters()) {
+				throw new IllegalArgumentException("The network has "
+						+ net.getAmountOfParameters()
+						+ " parameters, yet the checkpoints of the file '"
+						+ path + "' have " + header[0] + ".");
+			}
+
+			List<Long> positions = findCheckpoints(file);
+			if (checkpoint < 0 || checkpoint >= positions.size()) {
+				throw new IllegalArgumentException("The checkpoint ("
+						+ checkpoint + ") must range from 0 to "
+						+ (positions.size() - 1) + ".");
+			}
+
+			/* Find the full checkpoint the requested one is based on */
+			int full = checkpoint;
+			file.seek(positions.get(full));
+			while (file.readByte() != FULL) {
+				if (full == 0) {
+					throw new IOException("The file '" + path
+							+ "' does not start with a full checkpoint.");
+				}
+				full--;
+				file.seek(positions.get(full));
+			}
+
+			long[] bits = readCheckpoint(file, positions.get(full), header[0],
+					path);
+			if (full != checkpoint) {
+				long[] delta = readCheckpoint(file, positions.get(checkpoint),
+						header[0], path);
+				for (int i = 0; i < bits.length; i++) {
+					bits[i] ^= delta[i];
+				}
+			}
+
+			double[] parameters = new double[bits.length];
+			for (int i = 0; i < bits.length; i++) {
+				parameters[i] = Double.longBitsToDouble(bits[i]);
+			}
+			net.setParameters(parameters);
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * Read and check the header of a checkpoint file
+	 * 
+	 * @param file
+	 *            The checkpoint file, positioned at its beginning
+	 * @param path
+	 *            Path of the file, for error messages
+	 * @return The amount of parameters and the kept mantissa bits
+	 * @throws IOException
+	 *             If the file could not be read or is no checkpoint file
+	 */
+	private static int[] readHeader(RandomAccessFile file, String path)
+			throws IOException {
+		if (file.length() < 12 || file.readInt() != MAGIC_NUMBER) {
+			throw new IOException("The file '" + path
+					+ "' is no checkpoint file.");
+		}
+
+		return new int[] { file.readInt(), file.readInt() };
+	}
+
+	/**
+	 * Find the positions of all complete checkpoints
+	 * 
+	 * @param file
+	 *            The checkpoint file, positioned behind its header
+	 * @return Position of each checkpoint in the file
+	 * @throws IOException
+	 *             If the file could not be read
+	 */
+	private static List<Long> findCheckpoints(RandomAccessFile file)
+			throws IOException {
+		List<Long> positions = new ArrayList<Long>();
+		long position = file.getFilePointer();
+		while (position + 5 <= file.length()) {
+			file.seek(position + 1);
+			long end = position + 5 + file.readInt();
+			if (end > file.length()) {
+				break;
+			}
+			positions.add(position);
+			position = end;
+		}
+
+		return positions;
+	}
+
+	/**
+	 * Read and decompress a checkpoint
+	 * 
+	 * @param file
+	 *            The checkpoint file
+	 * @param position
+	 *            Position of the checkpoint in the file
+	 * @param parameters
+	 *            Amount of parameters of each checkpoint
+	 * @param path
+	 *            Path of the file, for error messages
+	 * @return The bit patterns saved by the checkpoint
+	 * @throws IOException
+	 *             If the file could not be read or is damaged
+	 */
+	private static long[] readCheckpoint(RandomAccessFile file, long position,
+			int parameters, String path) throws IOException {
+		file.seek(position + 1);
+		byte[] compressed = new byte[file.readInt()];
+		file.readFully(compressed);
+
+		byte[] planes = new byte[parameters * 8];
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(compressed);
+			int length = 0;
+			while (length < planes.length && !inflater.finished()) {
+				int read = inflater.inflate(planes, length, planes.length
+						- length);
+				if (read == 0 && inflater.needsInput()) {
+					break;
+				}
+				length += read;
+			}
+			if (length != planes.length) {
+				throw new IOException("A checkpoint of the file '" + path
+						+ "' is incomplete.");
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("A checkpoint of the file '" + path
+					+ "' is damaged.", e);
+		} finally {
+			inflater.end();
+		}
+
+		long[] bits = new long[parameters];
+		fromPlanes(planes, bits);
+		return bits;
+	}
+}
@@ -15,12 +15,20 @@
 
 package io.github.novanoid.jsynapse.file;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 import io.github.novanoid.jsynapse.network.NeuralNetwork;
+import io.github.novanoid.jsynapse.network.OffHeapNeuralNetwork;
 
 /**
  * Contains static methods to save and load networks
@@ -77,4 +85,85 @@ public class FileManager {
 
 		return net;
 	}
+
+	/**
+	 * Create a private copy of a neural network or any other serializable
+	 * object by saving it to memory and loading it again, so the copy shares
+	 * no state with the original
+	 * 
+	 * @param object
+	 *            Neural network or other object to be copied
+	 * @return A copy with the same layers, weights and configuration
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T extends Serializable> T copy(T object) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ObjectOutputStream out = new ObjectOutputStream(bytes);
+			out.writeObject(object);
+			out.close();
+
+			ObjectInputStream in = new ObjectInputStream(
+					new ByteArrayInputStream(bytes.toByteArray()));
+			return (T) in.readObject();
+		} catch (IOException | ClassNotFoundException e) {
+			throw new IllegalArgumentException("The "
+					+ object.getClass().getSimpleName()
+					+ " could not be copied.", e);
+		}
+	}
+
+	/**
+	 * Save the weights and biases of a neural network as a new binary file
+	 * which can be mapped into memory
+	 * 
+	 * @param net
+	 *            Neural network to be saved
+	 * @param path
+	 *            Valid path and file name to be saved to
+	 */
+	public static void saveNetworkWeights(NeuralNetwork net, String path) {
+		try {
+			FileOutputStream fileOutputStream = new FileOutputStream(path);
+			FileChannel channel = fileOutputStream.getChannel();
+
+			ByteBuffer buffer = OffHeapNeuralNetwork.encode(net);
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			fileOutputStream.close();
+		} catch (Exception e) {
+			System.err.println("Could not save the weights of the neural "
+					+ "network to the file '" + path + "':");
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Map a binary file of network weights into memory read only. The weights
+	 * stay in the page cache and are shared by all processes mapping the same
+	 * file.
+	 * 
+	 * @param path
+	 *            Path and file name of the saved network weights
+	 * @return Network reading its weights directly from the mapped file
+	 */
+	public static OffHeapNeuralNetwork mapNetworkWeights(String path) {
+		OffHeapNeuralNetwork net = null;
+
+		try {
+			RandomAccessFile file = new RandomAccessFile(path, "r");
+			FileChannel channel = file.getChannel();
+
+			net = new OffHeapNeuralNetwork(channel.map(
+					FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+			file.close();
+		} catch (Exception e) {
+			System.err.println("Could not map the weights of the neural "
+					+ "network from the file '" + path + "':");
+			e.printStackTrace();
+		}
+
+		return net;
+	}
 }
@@ -0,0 +1,657 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+// Copyright 2014 Novanoid
+
+package io.github.novanoid.jsynapse.inference;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.github.novanoid.jsynapse.file.FileManager;
+import io.github.novanoid.jsynapse.network.NeuralNetwork;
+
+/**
+ * Scores all inputs of a file with a neural network and writes the results to
+ * another file in the order of the inputs. Both files are mapped into memory
+ * chunk by chunk, and the chunks are scored by several workers, each with its
+ * own copy of the network and its own buffers, so nothing is allocated per
+ * input.
+ * 
+ * Inputs are either stored in the text format of the Semeion data set, one
+ * input per line optionally followed by its desired output values which are
+ * ignored, or in a binary format of little endian doubles, input after input
+ * without any header. For each input the output file contains its predicted
+ * category as a little endian integer, the index of the highest output value,
+ * followed by all output values as little endian floats.
+ * 
+ * @author Novanoid
+ */
+public class BulkScorer {
+	/**
+	 * Format of files containing the input values as little endian doubles
+	 */
+	public static final String BINARY = "binary";
+	/**
+	 * Format of text files with one input per line, as in the Semeion data
+	 * set
+	 */
+	public static final String SEMEION = "semeion";
+
+	/**
+	 * Amount of bytes of the input file mapped and scored at once
+	 */
+	private static final int CHUNK_SIZE = 16 << 20;
+	/**
+	 * Powers of ten which can be represented exactly as doubles
+	 */
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4,
+			1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+			1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	private int threads;
+	private int inputCount, outputCount;
+	/**
+	 * Private copy of the network, which every worker creates its own copy
+	 * from
+	 */
+	private NeuralNetwork net;
+
+	/**
+	 * Create a new scorer
+	 * 
+	 * @param net
+	 *            Trained neural network, which is copied and never used itself
+	 * @param threads
+	 *            Amount of workers scoring chunks at the same time
+	 */
+	public BulkScorer(NeuralNetwork net, int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("The amount of threads ("
+					+ threads + ") must be at least 1.");
+		}
+
+		this.threads = threads;
+		this.inputCount = net.getAmountOfInputValues();
+		this.outputCount = net.getAmountOfNeuralNodesInOutputLayer();
+		this.net = FileManager.copy(net);
+	}
+
+	/**
+	 * Get the size of the result of a single input in the output file
+	 * 
+	 * @return Bytes per input in the output file
+	 */
+	public int getOutputRecordSize() {
+		return 4 + 4 * this.outputCount;
+	}
+
+	/**
+	 * Score all inputs of a file
+	 * 
+	 * @param inputPath
+	 *            Path and file name of the inputs
+	 * @param format
+	 *            Format of the input file, either {@link #BINARY} or
+	 *            {@link #SEMEION}
+	 * @param outputPath
+	 *            Path and file name of the output file, which is replaced if it
+	 *            exists
+	 * @return Amount of inputs scored
+	 * @throws IOException
+	 *             If a file could not be read or written
+	 */
+	public long score(String inputPath, String format, String outputPath)
+			throws IOException {
+		if (!BINARY.equals(format) && !SEMEION.equals(format)) {
+			throw new IllegalArgumentException("The format '" + format
+					+ "' is not supported, use '" + BINARY + "' or '"
+					+ SEMEION + "'.");
+		}
+
+		RandomAccessFile inputFile = new RandomAccessFile(inputPath, "r");
+		RandomAccessFile outputFile = null;
+		try {
+			FileChannel input = inputFile.getChannel();
+
+			/* Find the first byte and the first input of every chunk */
+			long[] starts;
+			long[] firstInputs;
+			if (BINARY.equals(format)) {
+				long inputBytes = this.inputCount * 8L;
+				if (input.size() % inputBytes != 0) {
+					throw new IllegalArgumentException("The size of the file '"
+							+ inputPath + "' (" + input.size()
+							+ " bytes) is no multiple of the size of an input ("
+							+ inputBytes + " bytes).");
+				}
+
+				long inputsPerChunk = Math.max(1, CHUNK_SIZE / inputBytes);
+				int chunks = (int) ((input.size() / inputBytes
+						+ inputsPerChunk - 1) / inputsPerChunk);
+				starts = new long[chunks + 1];
+				firstInputs = new long[chunks + 1];
+				for (int i = 0; i <= chunks; i++) {
+					firstInputs[i] = Math.min(i * inputsPerChunk, input.size()
+							/ inputBytes);
+					starts[i] = firstInputs[i] * inputBytes;
+				}
+			} else {
+				starts = findLineChunks(input);
+				firstInputs = this.countLines(input, starts);
+			}
+
+			long inputs = firstInputs[firstInputs.length - 1];
+			outputFile = new RandomAccessFile(outputPath, "rw");
+			outputFile.setLength(inputs * this.getOutputRecordSize());
+
+			this.scoreChunks(input, outputFile.getChannel(), format, starts,
+					firstInputs, inputPath);
+
+			return inputs;
+		} finally {
+			inputFile.close();
+			if (outputFile != null) {
+				outputFile.close();
+			}
+		}
+	}
+
+	/**
+	 * Split a text file into chunks of about the same size which start at the
+	 * beginning of a line
+	 * 
+	 * @param input
+	 *            The text file
+	 * @return Position of the first byte of each chunk, followed by the size
+	 *         of the file
+	 * @throws IOException
+	 *             If the file could not be read
+	 */
+	private static long[] findLineChunks(FileChannel input) throws IOException {
+		long size = input.size();
+		int chunks = (int) Math.max(1, (size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+
+		long[] starts = new long[chunks + 1];
+		ByteBuffer probe = ByteBuffer.allocate(4096);
+		for (int i = 1; i < chunks; i++) {
+			/* Move the start behind the next line break */
+			long position = Math.max((long) i * CHUNK_SIZE, starts[i - 1]) - 1;
+			starts[i] = size;
+			search: while (true) {
+				probe.clear();
+				if (input.read(probe, position) <= 0) {
+					break;
+				}
+				probe.flip();
+				while (probe.hasRemaining()) {
+					position++;
+					if (probe.get() == '\n') {
+						starts[i] = position;
+						break search;
+					}
+				}
+			}
+		}
+		starts[chunks] = size;
+
+		return starts;
+	}
+
+	/**
+	 * Count the inputs of each chunk of a text file in parallel, which are all
+	 * lines that are not empty
+	 * 
+	 * @param input
+	 *            The text file
+	 * @param starts
+	 *            Position of the first byte of each chunk, followed by the size
+	 *            of the file
+	 * @return Index of the first input of each chunk, followed by the amount of
+	 *         all inputs
+	 * @throws IOException
+	 *             If the file could not be read
+	 */
+	private long[] countLines(final FileChannel input, final long[] starts)
+			throws IOException {
+		final long[] firstInputs = new long[starts.length];
+
+		this.runWorkers(starts.length - 1, new ChunkTask() {
+			@Override
+			public void process(int chunk, Worker worker) throws IOException {
+				ByteBuffer buffer = input.map(FileChannel.MapMode.READ_ONLY,
+						starts[chunk], starts[chunk + 1] - starts[chunk]);
+
+				long lines = 0;
+				boolean emptyLine = true;
+				while (buffer.hasRemaining()) {
+					byte character = buffer.get();
+					if (character == '\n') {
+						lines += emptyLine ? 0 : 1;
+						emptyLine = true;
+					} else if (!isWhiteSpace(character)) {
+						emptyLine = false;
+					}
+				}
+				firstInputs[chunk + 1] = lines + (emptyLine ? 0 : 1);
+			}
+		}, false);
+
+		for (int i = 1; i < firstInputs.length; i++) {
+			firstInputs[i] += firstInputs[i - 1];
+		}
+
+		return firstInputs;
+	}
+
+	/**
+	 * Score all chunks of the input file in parallel
+	 * 
+	 * @param input
+	 *            The input file
+	 * @param output
+	 *            The output file, already of its final size
+	 * @param format
+	 *            Format of the input file
+	 * @param starts
+	 *            Position of the first byte of each chunk, followed by the size
+	 *            of the file
+	 * @param firstInputs
+	 *            Index of the first input of each chunk, followed by the amount
+	 *            of all inputs
+	 * @param inputPath
+	 *            Path of the input file, for error messages
+	 * @throws IOException
+	 *             If a file could not be read or written
+	 */
+	private void scoreChunks(final FileChannel input,
+			final FileChannel output, final String format,
+			final long[] starts, final long[] firstInputs,
+			final String inputPath) throws IOException {
+		final int recordSize = this.getOutputRecordSize();
+
+		this.runWorkers(starts.length - 1, new ChunkTask() {
+			@Override
+			public void process(int chunk, Worker worker) throws IOException {
+				long inputs = firstInputs[chunk + 1] - firstInputs[chunk];
+				if (inputs == 0) {
+					return;
+				}
+
+				ByteBuffer inputBuffer = input.map(
+						FileChannel.MapMode.READ_ONLY, starts[chunk],
+						starts[chunk + 1] - starts[chunk]).order(
+						ByteOrder.LITTLE_ENDIAN);
+				ByteBuffer outputBuffer = output.map(
+						FileChannel.MapMode.READ_WRITE,
+						firstInputs[chunk] * recordSize, inputs * recordSize)
+						.order(ByteOrder.LITTLE_ENDIAN);
+
+				if (BINARY.equals(format)) {
+					DoubleBuffer values = inputBuffer.asDoubleBuffer();
+					for (long i = 0; i < inputs; i++) {
+						values.get(worker.input);
+						worker.score(outputBuffer);
+					}
+				} else {
+					worker.startText(inputBuffer);
+					for (long i = 0; i < inputs; i++) {
+						worker.readLine(firstInputs[chunk] + i, inputPath);
+						worker.score(outputBuffer);
+					}
+				}
+			}
+		}, true);
+	}
+
+	/**
+	 * Process chunks with all workers until every chunk has been processed
+	 * 
+	 * @param chunks
+	 *            Amount of chunks
+	 * @param task
+	 *            What to do with each chunk
+	 * @param scoring
+	 *            True, if the workers need their own copy of the network
+	 * @throws IOException
+	 *             If a worker could not read or write a file
+	 */
+	private void runWorkers(final int chunks, final ChunkTask task,
+			final boolean scoring) throws IOException {
+		final AtomicInteger nextChunk = new AtomicInteger();
+		final Throwable[] failure = new Throwable[1];
+
+		Thread[] workers = new Thread[Math.min(this.threads, chunks)];
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						Worker worker = scoring ? new Worker() : null;
+						int chunk;
+						while ((chunk = nextChunk.getAndIncrement()) < chunks) {
+							task.process(chunk, worker);
+						}
+					} catch (Throwable e) {
+						/* Let the other workers stop after their chunk */
+						nextChunk.set(chunks);
+						synchronized (failure) {
+							if (failure[0] == null) {
+								failure[0] = e;
+							}
+						}
+					}
+				}
+			}, "bulk-scorer-" + i);
+			workers[i].start();
+		}
+
+		for (Thread worker : workers) {
+			try {
+				worker.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while scoring.", e);
+			}
+		}
+
+		synchronized (failure) {
+			if (failure[0] instanceof IOException) {
+				throw (IOException) failure[0];
+			} else if (failure[0] instanceof RuntimeException) {
+				throw (RuntimeException) failure[0];
+			} else if (failure[0] != null) {
+				throw new IllegalStateException("A worker failed.", failure[0]);
+			}
+		}
+	}
+
+	/**
+	 * Check whether a character separates values on a line
+	 * 
+	 * @param character
+	 *            The character to be checked
+	 * @return True, if the character is a white space other than a line break
+	 */
+	private static boolean isWhiteSpace(int character) {
+		return character == ' ' || character == '\t' || character == '\r';
+	}
+
+	/**
+	 * Something to be done with each chunk of the input file
+	 */
+	private interface ChunkTask {
+		/**
+		 * Process a chunk
+		 * 
+		 * @param chunk
+		 *            Index of the chunk
+		 * @param worker
+		 *            The worker processing the chunk, null if the task does not
+		 *            score
+		 * @throws IOException
+		 *             If a file could not be read or written
+		 */
+		public void process(int chunk, Worker worker) throws IOException;
+	}
+
+	/**
+	 * The network copy and buffers of a single worker
+	 */
+	private class Worker {
+		private NeuralNetwork net;
+		private double[] input;
+		private double[] output;
+
+		/**
+		 * The text chunk being parsed
+		 */
+		private ByteBuffer text;
+		/**
+		 * Position of the next byte to be parsed in the text chunk
+		 */
+		private int position;
+
+		private Worker() {
+			/* The copy of the scorer is never modified, so it may be shared */
+			this.net = FileManager.copy(BulkScorer.this.net);
+			this.input = new double[inputCount];
+			this.output = new double[outputCount];
+		}
+
+		/**
+		 * Score the current input and write its result
+		 * 
+		 * @param outputBuffer
+		 *            Buffer to write the result to at its current position
+		 */
+		private void score(ByteBuffer outputBuffer) {
+			this.net.input(this.input, this.output);
+
+			int category = 0;
+			for (int i = 1; i < this.output.length; i++) {
+				if (this.output[i] > this.output[category]) {
+					category = i;
+				}
+			}
+
+			outputBuffer.putInt(category);
+			for (double value : this.output) {
+				outputBuffer.putFloat((float) value);
+			}
+		}
+
+		/**
+		 * Start parsing a chunk of a text file
+		 * 
+		 * @param text
+		 *            The chunk, starting at the beginning of a line
+		 */
+		private void startText(ByteBuffer text) {
+			this.text = text;
+			this.position = 0;
+		}
+
+		/**
+		 * Parse the next input of the text chunk, skipping empty lines and any
+		 * desired output values following the input values
+		 * 
+		 * @param index
+		 *            Index of the input in the file, for error messages
+		 * @param path
+		 *            Path of the file, for error messages
+		 */
+		private void readLine(long index, String path) {
+			int limit = this.text.limit();
+			int values = 0;
+
+			while (true) {
+				int character = this.position < limit ? this.text
+						.get(this.position) : '\n';
+				if (character == '\n') {
+					this.position++;
+					if (values == 0) {
+						continue;
+					} else if (values != inputCount
+							&& values != inputCount + outputCount) {
+						throw new IllegalArgumentException("Input " + index
+								+ " of the file '" + path + "' contains "
+								+ values + " values, yet " + inputCount
+								+ " or " + (inputCount + outputCount)
+								+ " are needed.");
+					}
+					return;
+				} else if (isWhiteSpace(character)) {
+					this.position++;
+				} else if (values < inputCount) {
+					this.input[values++] = this.parseValue(index, path);
+				} else {
+					/* Desired output values are skipped without parsing */
+					while (this.position < limit
+							&& this.text.get(this.position) != '\n'
+							&& !isWhiteSpace(this.text.get(this.position))) {
+						this.position++;
+					}
+					values++;
+				}
+			}
+		}
+
+		/**
+		 * Parse a decimal number starting at the current position
+		 * 
+		 * @param index
+		 *            Index of the input in the file, for error messages
+		 * @param path
+		 *            Path of the file, for error messages
+		 * @return Value of the number
+		 */
+		private double parseValue(long index, String path) {
+			boolean negative = false;
+			int character = this.next();
+			if (character == '-' || character == '+') {
+				negative = character == '-';
+				this.position++;
+				character = this.next();
+			}
+
+			long mantissa = 0;
+			int digits = 0, exponent = 0;
+			boolean anyDigits = false;
+			while (character >= '0' && character <= '9') {
+				if (digits < 18) {
+					mantissa = mantissa * 10 + (character - '0');
+					digits += mantissa == 0 ? 0 : 1;
+				} else {
+					exponent++;
+				}
+				anyDigits = true;
+				this.position++;
+				character = this.next();
+			}
+
+			if (character == '.') {
+				this.position++;
+				character = this.next();
+				while (character >= '0' && character <= '9') {
+					if (digits < 18) {
+						mantissa = mantissa * 10 + (character - '0');
+						digits += mantissa == 0 ? 0 : 1;
+						exponent--;
+					}
+					anyDigits = true;
+					this.position++;
+					character = this.next();
+				}
+			}
+
+			if (anyDigits && (character == 'e' || character == 'E')) {
+				this.position++;
+				character = this.next();
+				boolean negativeExponent = false;
+				if (character == '-' || character == '+') {
+					negativeExponent = character == '-';
+					this.position++;
+					character = this.next();
+				}
+				int explicitExponent = 0;
+				boolean exponentDigits = false;
+				while (character >= '0' && character <= '9') {
+					if (explicitExponent < 10000) {
+						explicitExponent = explicitExponent * 10
+								+ (character - '0');
+					}
+					exponentDigits = true;
+					this.position++;
+					character = this.next();
+				}
+				anyDigits = exponentDigits;
+				exponent += negativeExponent ? -explicitExponent
+						: explicitExponent;
+			}
+
+			if (!anyDigits || !(character == '\n' || isWhiteSpace(character))) {
+				throw new IllegalArgumentException("Input " + index
+						+ " of the file '" + path
+						+ "' contains a value which is not a number.");
+			}
+
+			double value;
+			if (mantissa == 0) {
+				value = 0.0;
+			} else if (mantissa < (1L << 53) && exponent >= 0
+					&& exponent < POWERS_OF_TEN.length) {
+				/* Both operands are exact, so the result is rounded correctly */
+				value = mantissa * POWERS_OF_TEN[exponent];
+			} else if (mantissa < (1L << 53) && exponent < 0
+					&& -exponent < POWERS_OF_TEN.length) {
+				value = mantissa / POWERS_OF_TEN[-exponent];
+			} else {
+				value = Double.parseDouble(mantissa + "E" + exponent);
+			}
+
+			return negative ? -value : value;
+		}
+
+		/**
+		 * Get the byte at the current position
+		 * 
+		 * @return The byte or a line break at the end of the chunk
+		 */
+		private int next() {
+			return this.position < this.text.limit() ? this.text
+					.get(this.position) : '\n';
+		}
+	}
+
+	/**
+	 * Score all inputs of a file with a saved network
+	 * 
+	 * @param args
+	 *            The saved network, the input file, the output file and
+	 *            optionally the format of the input file (defaults to
+	 *            semeion) and the amount of threads (defaults to the amount of
+	 *            processors)
+	 * @throws IOException
+	 *             If a file could not be read or written
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3) {
+			System.err.println("Usage: BulkScorer <network file> <input file> "
+					+ "<output file> [" + SEMEION + "|" + BINARY
+					+ "] [threads]");
+			return;
+		}
+
+		NeuralNetwork net = FileManager.loadNetwork(args[0]);
+		if (net == null) {
+			return;
+		}
+		String format = args.length > 3 ? args[3] : SEMEION;
+		int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime
+				.getRuntime().availableProcessors();
+
+		BulkScorer scorer = new BulkScorer(net, threads);
+		long start = System.nanoTime();
+		long inputs = scorer.score(args[1], format, args[2]);
+		long millis = Math.max(1, (System.nanoTime() - start) / 1000000);
+
+		System.out.println("Scored " + inputs + " inputs in " + millis
+				+ "ms (" + (inputs * 1000 / millis) + " inputs/s).");
+	}
+}
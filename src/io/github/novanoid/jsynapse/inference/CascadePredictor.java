@@ -0,0 +1,363 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+// Copyright 2014 Novanoid
+
+package io.github.novanoid.jsynapse.inference;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.github.novanoid.jsynapse.network.NeuralNetwork;
+import io.github.novanoid.jsynapse.training.Training;
+import io.github.novanoid.jsynapse.training.TrainingDataSet;
+
+/**
+ * Answers most inputs with a small and cheap neural network and only runs a
+ * large network if the small one is not confident enough, that is if its
+ * highest output is below a threshold or too close to its second highest
+ * output
+ * 
+ * @author Novanoid
+ */
+public class CascadePredictor {
+	private NeuralNetwork smallNet, largeNet;
+
+	/**
+	 * The highest output of the small network must reach this value for its
+	 * answer to be accepted
+	 */
+	private volatile double confidenceThreshold;
+	/**
+	 * The highest output of the small network must exceed the second highest
+	 * output by this value for its answer to be accepted
+	 */
+	private volatile double marginThreshold;
+
+	private AtomicLong smallAnswers, largeAnswers;
+
+	/**
+	 * Create a new cascade of two networks built for the same task
+	 * 
+	 * @param smallNet
+	 *            Neural network asked first
+	 * @param largeNet
+	 *            Neural network asked if the small one is not confident
+	 * @param confidenceThreshold
+	 *            Value the highest output of the small network must reach
+	 * @param marginThreshold
+	 *            Value by which the highest output of the small network must
+	 *            exceed its second highest output
+	 */
+	public CascadePredictor(NeuralNetwork smallNet, NeuralNetwork largeNet,
+			double confidenceThreshold, double marginThreshold) {
+		if (smallNet.getAmountOfInputValues() != largeNet
+				.getAmountOfInputValues()) {
+			throw new IllegalArgumentException("The small network takes "
+					+ smallNet.getAmountOfInputValues()
+					+ " input values, yet the large network takes "
+					+ largeNet.getAmountOfInputValues() + ".");
+		} else if (smallNet.getAmountOfNeuralNodesInOutputLayer() != largeNet
+				.getAmountOfNeuralNodesInOutputLayer()) {
+			throw new IllegalArgumentException("The small network has "
+					+ smallNet.getAmountOfNeuralNodesInOutputLayer()
+					+ " neural nodes in the output layer, yet the large "
+					+ "network has "
+					+ largeNet.getAmountOfNeuralNodesInOutputLayer() + ".");
+		}
+
+		this.smallNet = smallNet;
+		this.largeNet = largeNet;
+		this.confidenceThreshold = confidenceThreshold;
+		this.marginThreshold = marginThreshold;
+		this.smallAnswers = new AtomicLong();
+		this.largeAnswers = new AtomicLong();
+	}
+
+	/**
+	 * Calculate the output for the given input, asking the large network only
+	 * if the small network is not confident enough
+	 * 
+	 * @param inputValues
+	 *            Values for the neurons in the input layer
+	 * @return Values of the neurons in the output layer of the network that
+	 *         answered
+	 */
+	public double[] predict(double[] inputValues) {
+		double[] output = new double[this.smallNet
+				.getAmountOfNeuralNodesInOutputLayer()];
+		synchronized (this.smallNet) {
+			this.smallNet.input(inputValues, output);
+		}
+
+		if (this.isConfident(output)) {
+			this.smallAnswers.incrementAndGet();
+			return output;
+		}
+
+		synchronized (this.largeNet) {
+			this.largeNet.input(inputValues, output);
+		}
+		this.largeAnswers.incrementAndGet();
+
+		return output;
+	}
+
+	/**
+	 * Calculate the output for the given input, asking the large network only
+	 * if the small network is not confident enough
+	 * 
+	 * @param inputValues
+	 *            Values for the neurons in the input layer
+	 * @return Values of the neurons in the output layer of the network that
+	 *         answered
+	 */
+	public List<Double> predict(List<Double> inputValues) {
+		double[] output = this.predict(toArray(inputValues));
+
+		List<Double> outputValues = new ArrayList<Double>();
+		for (double value : output) {
+			outputValues.add(value);
+		}
+
+		return outputValues;
+	}
+
+	/**
+	 * Check whether the output of the small network may be used as the answer
+	 * 
+	 * @param output
+	 *            Output of the small network
+	 * @return True, if both thresholds are kept
+	 */
+	private boolean isConfident(double[] output) {
+		return output[topIndex(output)] >= this.confidenceThreshold
+				&& margin(output) >= this.marginThreshold;
+	}
+
+	/**
+	 * Choose the lowest confidence threshold for which the cascade is at most
+	 * slightly less accurate than the large network alone. The networks are
+	 * compared on test data sets of a training, which decides whether an
+	 * output is correct.
+	 * 
+	 * @param training
+	 *            Training for the task of both networks, ideally holding out
+	 *            data sets that neither network has been trained with
+	 * @param samples
+	 *            Amount of test data sets to calibrate with
+	 * @param maximumAccuracyLoss
+	 *            Accuracy the cascade may lose compared with the large network,
+	 *            ranging from 0 to 1
+	 * @return The chosen confidence threshold, which is used from now on
+	 */
+	public double calibrate(Training training, int samples,
+			double maximumAccuracyLoss) {
+		if (samples < 1) {
+			throw new IllegalArgumentException("The amount of samples ("
+					+ samples + ") must be at least 1.");
+		}
+
+		List<TrainingDataSet> dataSets = training.getTestDataSets(samples);
+		final double[] confidences = new double[samples];
+		boolean[] smallCorrect = new boolean[samples];
+		boolean[] largeCorrect = new boolean[samples];
+		int largeCorrectCount = 0;
+
+		double[] output = new double[this.smallNet
+				.getAmountOfNeuralNodesInOutputLayer()];
+		for (int i = 0; i < samples; i++) {
+			TrainingDataSet dataSet = dataSets.get(i);
+			synchronized (this.smallNet) {
+				this.smallNet.input(toArray(dataSet.getInput()), output);
+				smallCorrect[i] = training.categorizeData(this.smallNet,
+						dataSet);
+			}
+			synchronized (this.largeNet) {
+				largeCorrect[i] = training.categorizeData(this.largeNet,
+						dataSet);
+			}
+
+			/* Answers failing the margin are never accepted */
+			confidences[i] = Double.NEGATIVE_INFINITY;
+			if (margin(output) >= this.marginThreshold) {
+				confidences[i] = output[topIndex(output)];
+			}
+			if (largeCorrect[i]) {
+				largeCorrectCount++;
+			}
+		}
+
+		/*
+		 * Accept the answers of the small network starting with the most
+		 * confident ones, as long as the accuracy stays within the budget
+		 */
+		Integer[] order = new Integer[samples];
+		for (int i = 0; i < samples; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Double.compare(confidences[b], confidences[a]);
+			}
+		});
+
+		double threshold = Double.POSITIVE_INFINITY;
+		int correct = largeCorrectCount;
+		int i = 0;
+		while (i < samples && confidences[order[i]] > Double.NEGATIVE_INFINITY) {
+			/* Samples with the same confidence are accepted together */
+			double confidence = confidences[order[i]];
+			int j = i;
+			while (j < samples && confidences[order[j]] == confidence) {
+				if (smallCorrect[order[j]] != largeCorrect[order[j]]) {
+					correct += smallCorrect[order[j]] ? 1 : -1;
+				}
+				j++;
+			}
+
+			if (largeCorrectCount - correct > maximumAccuracyLoss * samples) {
+				break;
+			}
+			threshold = confidence;
+			i = j;
+		}
+
+		this.confidenceThreshold = threshold;
+
+		return threshold;
+	}
+
+	/**
+	 * Get the value the highest output of the small network must reach
+	 * 
+	 * @return The confidence threshold
+	 */
+	public double getConfidenceThreshold() {
+		return this.confidenceThreshold;
+	}
+
+	/**
+	 * Set the value the highest output of the small network must reach
+	 * 
+	 * @param confidenceThreshold
+	 *            The new confidence threshold
+	 */
+	public void setConfidenceThreshold(double confidenceThreshold) {
+		this.confidenceThreshold = confidenceThreshold;
+	}
+
+	/**
+	 * Get the value by which the highest output of the small network must
+	 * exceed its second highest output
+	 * 
+	 * @return The margin threshold
+	 */
+	public double getMarginThreshold() {
+		return this.marginThreshold;
+	}
+
+	/**
+	 * Get the amount of requests answered by the small network
+	 * 
+	 * @return Amount of answers of the small network
+	 */
+	public long getSmallNetworkAnswerCount() {
+		return this.smallAnswers.get();
+	}
+
+	/**
+	 * Get the amount of requests the large network had to answer
+	 * 
+	 * @return Amount of answers of the large network
+	 */
+	public long getLargeNetworkAnswerCount() {
+		return this.largeAnswers.get();
+	}
+
+	/**
+	 * Get the share of requests the large network had to answer
+	 * 
+	 * @return Fallback rate ranging from 0 to 1
+	 */
+	public double getFallbackRate() {
+		long largeAnswers = this.largeAnswers.get();
+		long requests = largeAnswers + this.smallAnswers.get();
+
+		return requests == 0 ? 0.0 : (largeAnswers * 1.0) / requests;
+	}
+
+	/**
+	 * Get the index of the highest output
+	 * 
+	 * @param output
+	 *            Output values of a network
+	 * @return Index of the highest value
+	 */
+	private static int topIndex(double[] output) {
+		int indexOfMaximumOutput = 0;
+		for (int i = 1; i < output.length; i++) {
+			if (output[i] > output[indexOfMaximumOutput]) {
+				indexOfMaximumOutput = i;
+			}
+		}
+
+		return indexOfMaximumOutput;
+	}
+
+	/**
+	 * Get the difference between the highest and the second highest output
+	 * 
+	 * @param output
+	 *            Output values of a network
+	 * @return The margin of the highest output, or the highest output itself
+	 *         if there is only one
+	 */
+	private static double margin(double[] output) {
+		double highest = Double.NEGATIVE_INFINITY;
+		double secondHighest = 0.0;
+		if (output.length > 1) {
+			secondHighest = Double.NEGATIVE_INFINITY;
+		}
+		for (double value : output) {
+			if (value > highest) {
+				secondHighest = Math.max(secondHighest, highest);
+				highest = value;
+			} else if (value > secondHighest) {
+				secondHighest = value;
+			}
+		}
+
+		return highest - secondHighest;
+	}
+
+	/**
+	 * Convert a list of values into an array
+	 * 
+	 * @param values
+	 *            List of values
+	 * @return Array containing the same values
+	 */
+	private static double[] toArray(List<Double> values) {
+		double[] array = new double[values.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = values.get(i);
+		}
+
+		return array;
+	}
+}
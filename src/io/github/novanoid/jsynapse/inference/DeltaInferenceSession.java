@@ -0,0 +1,336 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+// Copyright 2014 Novanoid
+
+package io.github.novanoid.jsynapse.inference;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.github.novanoid.jsynapse.math.MathHelper;
+import io.github.novanoid.jsynapse.network.Layer;
+import io.github.novanoid.jsynapse.network.NeuralNetwork;
+import io.github.novanoid.jsynapse.network.Node;
+
+/**
+ * Runs a sequence of similar inputs through a neural network, such as the
+ * frames of a pen stroke being drawn. The local inputs of the first layer after
+ * the input layer are kept between two inputs, so only the weights of input
+ * values that changed have to be applied to them.
+ * 
+ * A session is meant to be used by a single thread. It works on its own copy
+ * of the weights, which is refreshed when the network is trained.
+ * 
+ * @author Novanoid
+ */
+public class DeltaInferenceSession {
+	/**
+	 * Amount of incremental updates after which the local inputs are computed
+	 * from scratch again, so rounding errors can not add up
+	 */
+	private static final int FULL_UPDATE_PERIOD = 1000;
+
+	private NeuralNetwork net;
+	private long weightVersion;
+
+	/**
+	 * Weight and bias of each node in the input layer
+	 */
+	private double[] inputWeights, inputBiases;
+	/**
+	 * The weights of the first layer after the input layer, input by input,
+	 * so the weights of one input value are next to each other
+	 */
+	private double[][] firstLayerWeightColumns;
+	/**
+	 * The weights of all other layers, layer by layer and node by node
+	 */
+	private double[][][] weights;
+	/**
+	 * The biases of all layers after the input layer
+	 */
+	private double[][] biases;
+
+	/**
+	 * The previous input values, null if there is no previous input
+	 */
+	private double[] lastInputValues;
+	/**
+	 * The outputs of the input layer for the previous input
+	 */
+	private double[] inputLayerOutputs;
+	/**
+	 * The local inputs of all layers after the input layer
+	 */
+	private double[][] layerInputs;
+	/**
+	 * The local inputs of the first layer after the input layer, kept from the
+	 * previous input
+	 */
+	private double[] firstLayerInputs;
+	/**
+	 * The outputs of all layers after the input layer
+	 */
+	private double[][] layerOutputs;
+	/**
+	 * Output values handed out as a list
+	 */
+	private double[] outputValues;
+
+	private int incrementalUpdates;
+	private int lastChangedInputs;
+
+	/**
+	 * Start a new session for a neural network
+	 * 
+	 * @param net
+	 *            Neural network to compute outputs with, must not have feature
+	 *            layers
+	 */
+	public DeltaInferenceSession(NeuralNetwork net) {
+		if (!net.getFeatureLayers().isEmpty()) {
+			throw new IllegalArgumentException("Only networks without feature "
+					+ "layers can compute outputs incrementally.");
+		}
+
+		this.net = net;
+
+		List<Layer> layers = net.getNodeLayers();
+		this.inputLayerOutputs = new double[layers.get(0).getNodes().size()];
+		this.layerInputs = new double[layers.size() - 1][];
+		this.layerOutputs = new double[layers.size() - 1][];
+		for (int i = 1; i < layers.size(); i++) {
+			int nodes = layers.get(i).getNodes().size();
+			this.layerInputs[i - 1] = new double[nodes];
+			this.layerOutputs[i - 1] = new double[nodes];
+		}
+		this.firstLayerInputs = this.layerInputs[0];
+		this.outputValues = new double[this.layerOutputs[layers.size() - 2].length];
+
+		this.copyWeights();
+	}
+
+	/**
+	 * Copy the weights and biases of the network, so the weights of the first
+	 * layer can be read input by input
+	 */
+	private void copyWeights() {
+		this.weightVersion = this.net.getWeightVersion();
+
+		List<Layer> layers = this.net.getNodeLayers();
+		List<Node> inputNodes = layers.get(0).getNodes();
+		this.inputWeights = new double[inputNodes.size()];
+		this.inputBiases = new double[inputNodes.size()];
+		for (int i = 0; i < inputNodes.size(); i++) {
+			this.inputWeights[i] = inputNodes.get(i).getWeights().get(0)
+					.getValue();
+			this.inputBiases[i] = inputNodes.get(i).getBias();
+		}
+
+		this.weights = new double[layers.size() - 1][][];
+		this.biases = new double[layers.size() - 1][];
+		for (int i = 1; i < layers.size(); i++) {
+			List<Node> nodes = layers.get(i).getNodes();
+			this.weights[i - 1] = new double[nodes.size()][];
+			this.biases[i - 1] = new double[nodes.size()];
+			for (int j = 0; j < nodes.size(); j++) {
+				Node node = nodes.get(j);
+				double[] nodeWeights = new double[node.getWeights().size()];
+				for (int k = 0; k < nodeWeights.length; k++) {
+					nodeWeights[k] = node.getWeights().get(k).getValue();
+				}
+				this.weights[i - 1][j] = nodeWeights;
+				this.biases[i - 1][j] = node.getBias();
+			}
+		}
+
+		double[][] firstLayerWeights = this.weights[0];
+		this.firstLayerWeightColumns = new double[inputNodes.size()][];
+		for (int i = 0; i < inputNodes.size(); i++) {
+			this.firstLayerWeightColumns[i] = new double[firstLayerWeights.length];
+		}
+		for (int j = 0; j < firstLayerWeights.length; j++) {
+			for (int i = 0; i < inputNodes.size(); i++) {
+				this.firstLayerWeightColumns[i][j] = firstLayerWeights[j][i];
+			}
+		}
+
+		this.lastInputValues = null;
+	}
+
+	/**
+	 * Feed the neural network the next input of the sequence and calculate the
+	 * values of the output layer. Only input values differing from the
+	 * previous input are applied to the first layer.
+	 * 
+	 * @param inputValues
+	 *            Values for the network, must match the amount of input values
+	 * @param outputValues
+	 *            Array to store the values of the neurons in the output layer
+	 *            in, must match their number
+	 */
+	public void input(double[] inputValues, double[] outputValues) {
+		if (inputValues.length != this.inputWeights.length) {
+			throw new IllegalArgumentException("The number of input values ("
+					+ inputValues.length
+					+ ") must match the number of input values of the network ("
+					+ this.inputWeights.length + ")");
+		} else if (outputValues.length != this.outputValues.length) {
+			throw new IllegalArgumentException("The number of output values ("
+					+ outputValues.length
+					+ ") must match the number of neural nodes in the output "
+					+ "layer (" + this.outputValues.length + ")");
+		}
+
+		if (this.net.getWeightVersion() != this.weightVersion) {
+			this.copyWeights();
+		}
+
+		if (this.lastInputValues == null
+				|| this.incrementalUpdates >= FULL_UPDATE_PERIOD) {
+			this.computeFirstLayer(inputValues);
+		} else {
+			this.updateFirstLayer(inputValues);
+		}
+
+		/* Compute all following layers from scratch */
+		for (int j = 0; j < this.firstLayerInputs.length; j++) {
+			this.layerOutputs[0][j] = MathHelper
+					.sigmoid(this.firstLayerInputs[j]);
+		}
+		for (int i = 1; i < this.layerOutputs.length; i++) {
+			double[] previousOutputs = this.layerOutputs[i - 1];
+			for (int j = 0; j < this.layerOutputs[i].length; j++) {
+				double[] nodeWeights = this.weights[i][j];
+				double sum = 0;
+				for (int k = 0; k < previousOutputs.length; k++) {
+					sum += previousOutputs[k] * nodeWeights[k];
+				}
+				this.layerInputs[i][j] = sum + this.biases[i][j];
+				this.layerOutputs[i][j] = MathHelper
+						.sigmoid(this.layerInputs[i][j]);
+			}
+		}
+
+		int outputLayer = this.layerOutputs.length - 1;
+		if (this.net.isSoftmaxOutput()) {
+			MathHelper.softmax(this.layerInputs[outputLayer], outputValues);
+		} else {
+			System.arraycopy(this.layerOutputs[outputLayer], 0, outputValues,
+					0, outputValues.length);
+		}
+	}
+
+	/**
+	 * Feed the neural network the next input of the sequence and calculate the
+	 * values of the output layer
+	 * 
+	 * @param inputValues
+	 *            Values for the neurons in the input layer
+	 * @return Values of the neurons in the output layer
+	 */
+	public List<Double> input(List<Double> inputValues) {
+		double[] input = new double[inputValues.size()];
+		for (int i = 0; i < input.length; i++) {
+			input[i] = inputValues.get(i);
+		}
+		this.input(input, this.outputValues);
+
+		List<Double> outputValues = new ArrayList<Double>();
+		for (double value : this.outputValues) {
+			outputValues.add(value);
+		}
+
+		return outputValues;
+	}
+
+	/**
+	 * Compute the local inputs of the first layer from all input values
+	 * 
+	 * @param inputValues
+	 *            Values for the network
+	 */
+	private void computeFirstLayer(double[] inputValues) {
+		if (this.lastInputValues == null) {
+			this.lastInputValues = new double[inputValues.length];
+		}
+		System.arraycopy(inputValues, 0, this.lastInputValues, 0,
+				inputValues.length);
+
+		for (int i = 0; i < inputValues.length; i++) {
+			this.inputLayerOutputs[i] = MathHelper.sigmoid(inputValues[i]
+					* this.inputWeights[i] + this.inputBiases[i]);
+		}
+
+		double[][] firstLayerWeights = this.weights[0];
+		for (int j = 0; j < this.firstLayerInputs.length; j++) {
+			double sum = 0;
+			for (int i = 0; i < this.inputLayerOutputs.length; i++) {
+				sum += this.inputLayerOutputs[i] * firstLayerWeights[j][i];
+			}
+			this.firstLayerInputs[j] = sum + this.biases[0][j];
+		}
+
+		this.incrementalUpdates = 0;
+		this.lastChangedInputs = inputValues.length;
+	}
+
+	/**
+	 * Apply the weights of all input values that changed since the previous
+	 * input to the local inputs of the first layer
+	 * 
+	 * @param inputValues
+	 *            Values for the network
+	 */
+	private void updateFirstLayer(double[] inputValues) {
+		int changedInputs = 0;
+		for (int i = 0; i < inputValues.length; i++) {
+			if (inputValues[i] == this.lastInputValues[i]) {
+				continue;
+			}
+
+			this.lastInputValues[i] = inputValues[i];
+			double output = MathHelper.sigmoid(inputValues[i]
+					* this.inputWeights[i] + this.inputBiases[i]);
+			double difference = output - this.inputLayerOutputs[i];
+			this.inputLayerOutputs[i] = output;
+
+			double[] column = this.firstLayerWeightColumns[i];
+			for (int j = 0; j < this.firstLayerInputs.length; j++) {
+				this.firstLayerInputs[j] += difference * column[j];
+			}
+			changedInputs++;
+		}
+
+		this.incrementalUpdates++;
+		this.lastChangedInputs = changedInputs;
+	}
+
+	/**
+	 * Forget the previous input, so the next input is computed from scratch
+	 */
+	public void reset() {
+		this.lastInputValues = null;
+	}
+
+	/**
+	 * Get the amount of input values whose weights had to be applied for the
+	 * last input
+	 * 
+	 * @return Amount of changed input values
+	 */
+	public int getLastChangedInputs() {
+		return this.lastChangedInputs;
+	}
+}
@@ -0,0 +1,610 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+// Copyright 2014 Novanoid
+
+package io.github.novanoid.jsynapse.inference;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.github.novanoid.jsynapse.math.MathHelper;
+import io.github.novanoid.jsynapse.math.SingularValueDecomposition;
+import io.github.novanoid.jsynapse.network.Layer;
+import io.github.novanoid.jsynapse.network.NeuralNetwork;
+import io.github.novanoid.jsynapse.network.Node;
+import io.github.novanoid.jsynapse.network.Weight;
+import io.github.novanoid.jsynapse.training.Training;
+import io.github.novanoid.jsynapse.training.TrainingDataSet;
+
+/**
+ * A read only copy of a trained neural network whose weight matrices are
+ * replaced by products of two thin matrices where this saves work. A layer of
+ * n nodes with m connections each multiplies its input with an nxm matrix;
+ * factorized to the rank r it multiplies it with an rxm and then with an nxr
+ * matrix instead, which takes fewer multiplications and less memory as long as
+ * r*(n + m) is less than n*m.
+ * 
+ * The factors come from a truncated singular value decomposition, so they are
+ * the closest matrices of their rank to the trained weights. A network is only
+ * read once it has been created, so any number of threads may use it at the
+ * same time.
+ * 
+ * @author Novanoid
+ */
+public class FactorizedNeuralNetwork {
+	/**
+	 * The amount of nodes in each layer
+	 */
+	private int[] layerSizes;
+	/**
+	 * Rank of each layer, the smaller of its amounts of nodes and connections
+	 * for layers which are not factorized
+	 */
+	private int[] ranks;
+	/**
+	 * Weights of the input layer, one for each node
+	 */
+	private double[] inputWeights;
+	/**
+	 * The weights of each layer which is not factorized, node by node, or the
+	 * rankxconnections factor applied first to the input of each factorized
+	 * layer, row by row
+	 */
+	private double[][] firstFactors;
+	/**
+	 * The nodesxrank factor applied second to the input of each factorized
+	 * layer, row by row, null for layers which are not factorized
+	 */
+	private double[][] secondFactors;
+	/**
+	 * The biases of each layer
+	 */
+	private double[][] biases;
+	/**
+	 * True, if the output layer uses the softmax function
+	 */
+	private boolean softmaxOutput;
+
+	/**
+	 * Factorize the layers of a neural network to the given ranks
+	 * 
+	 * @param net
+	 *            Neural network to be factorized, without feature layers
+	 * @param ranks
+	 *            Rank of each layer, starting with the input layer whose rank
+	 *            is ignored. A layer is only factorized if this saves work, so
+	 *            layers of the largest rank keep their weights unchanged.
+	 */
+	public FactorizedNeuralNetwork(NeuralNetwork net, int[] ranks) {
+		this(net, decompose(net), ranks);
+	}
+
+	/**
+	 * Factorize the layers of a neural network to the given ranks, reusing
+	 * their decompositions
+	 * 
+	 * @param net
+	 *            Neural network to be factorized
+	 * @param decompositions
+	 *            Decomposition of the weight matrix of each layer
+	 * @param ranks
+	 *            Rank of each layer
+	 */
+	private FactorizedNeuralNetwork(NeuralNetwork net,
+			SingularValueDecomposition[] decompositions, int[] ranks) {
+		List<Layer> layers = net.getNodeLayers();
+		if (ranks.length != layers.size()) {
+			throw new IllegalArgumentException("The amount of ranks ("
+					+ ranks.length + ") must match the amount of layers ("
+					+ layers.size() + ").");
+		}
+
+		this.layerSizes = new int[layers.size()];
+		this.ranks = new int[layers.size()];
+		this.firstFactors = new double[layers.size()][];
+		this.secondFactors = new double[layers.size()][];
+		this.biases = new double[layers.size()][];
+		this.softmaxOutput = net.isSoftmaxOutput();
+
+		for (int layer = 0; layer < layers.size(); layer++) {
+			List<Node> nodes = layers.get(layer).getNodes();
+			this.layerSizes[layer] = nodes.size();
+			this.biases[layer] = new double[nodes.size()];
+			for (int node = 0; node < nodes.size(); node++) {
+				this.biases[layer][node] = nodes.get(node).getBias();
+			}
+		}
+
+		this.inputWeights = new double[this.layerSizes[0]];
+		for (int node = 0; node < this.layerSizes[0]; node++) {
+			this.inputWeights[node] = layers.get(0).getNodes().get(node)
+					.getWeights().get(0).getValue();
+		}
+		this.ranks[0] = 1;
+
+		for (int layer = 1; layer < layers.size(); layer++) {
+			int nodes = this.layerSizes[layer];
+			int connections = this.layerSizes[layer - 1];
+			int rank = ranks[layer];
+			if (rank < 1 || rank > Math.min(nodes, connections)) {
+				throw new IllegalArgumentException("The rank (" + rank
+						+ ") of layer " + layer + " must range from 1 to "
+						+ Math.min(nodes, connections) + ".");
+			}
+
+			if (!isWorthFactorizing(nodes, connections, rank)) {
+				this.ranks[layer] = Math.min(nodes, connections);
+				this.firstFactors[layer] = flatten(getWeightMatrix(net, layer));
+				continue;
+			}
+
+			this.ranks[layer] = rank;
+			this.firstFactors[layer] = flatten(decompositions[layer]
+					.getRightFactor(rank));
+			this.secondFactors[layer] = flatten(decompositions[layer]
+					.getLeftFactor(rank));
+		}
+	}
+
+	/**
+	 * Factorize the layers of the network of a training to the lowest ranks
+	 * for which it is at most slightly less accurate than before. The layers
+	 * are factorized one after another, starting with the one holding the
+	 * most weights, each to the lowest rank that keeps the accuracy of the
+	 * whole network within the allowed loss. The networks are compared on
+	 * test data sets of the training, which decides whether an output is
+	 * correct.
+	 * 
+	 * The weights of the network are replaced by their approximations while
+	 * testing them and restored afterwards, so the network must not be used
+	 * by other threads meanwhile.
+	 * 
+	 * @param training
+	 *            Training of the network to be factorized, ideally holding out
+	 *            data sets that the network has not been trained with
+	 * @param samples
+	 *            Amount of test data sets to measure the accuracy with
+	 * @param maximumAccuracyLoss
+	 *            Accuracy the factorized network may lose compared with the
+	 *            trained network, ranging from 0 to 1
+	 * @return The factorized network
+	 */
+	public static FactorizedNeuralNetwork compress(Training training,
+			int samples, double maximumAccuracyLoss) {
+		if (samples < 1) {
+			throw new IllegalArgumentException("The amount of samples ("
+					+ samples + ") must be at least 1.");
+		} else if (maximumAccuracyLoss < 0 || maximumAccuracyLoss > 1) {
+			throw new IllegalArgumentException("The maximum accuracy loss ("
+					+ maximumAccuracyLoss + ") must range from 0 to 1.");
+		}
+
+		NeuralNetwork net = training.getNetwork();
+		SingularValueDecomposition[] decompositions = decompose(net);
+		List<TrainingDataSet> dataSets = training.getTestDataSets(samples);
+
+		List<Layer> layers = net.getNodeLayers();
+		int[] ranks = new int[layers.size()];
+		List<Integer> order = new ArrayList<Integer>();
+		for (int layer = 1; layer < layers.size(); layer++) {
+			ranks[layer] = decompositions[layer].getMaximumRank();
+
+			int position = 0;
+			while (position < order.size()
+					&& countWeights(net, order.get(position)) >= countWeights(
+							net, layer)) {
+				position++;
+			}
+			order.add(position, layer);
+		}
+		ranks[0] = 1;
+
+		double[] parameters = net.getParameters();
+		try {
+			double minimumAccuracy = measureAccuracy(training, dataSets)
+					- maximumAccuracyLoss;
+
+			for (int layer : order) {
+				int nodes = layers.get(layer).getNodes().size();
+				int connections = layers.get(layer - 1).getNodes().size();
+
+				/* Search for the lowest rank below the break-even point */
+				int lowest = 1, highest = ranks[layer];
+				while (highest > 1
+						&& !isWorthFactorizing(nodes, connections, highest)) {
+					highest--;
+				}
+				if (!isWorthFactorizing(nodes, connections, highest)
+						|| !isAccurateEnough(training, dataSets, parameters,
+								decompositions, ranks, layer, highest,
+								minimumAccuracy)) {
+					continue;
+				}
+
+				while (lowest < highest) {
+					int middle = (lowest + highest) / 2;
+					if (isAccurateEnough(training, dataSets, parameters,
+							decompositions, ranks, layer, middle,
+							minimumAccuracy)) {
+						highest = middle;
+					} else {
+						lowest = middle + 1;
+					}
+				}
+				ranks[layer] = highest;
+			}
+		} finally {
+			net.setParameters(parameters);
+		}
+
+		return new FactorizedNeuralNetwork(net, decompositions, ranks);
+	}
+
+	/**
+	 * Check whether the network is accurate enough with one of its layers
+	 * factorized to another rank
+	 * 
+	 * @param training
+	 *            Training of the network
+	 * @param dataSets
+	 *            Data sets to measure the accuracy with
+	 * @param parameters
+	 *            The trained weights and biases of the network
+	 * @param decompositions
+	 *            Decomposition of the weight matrix of each layer
+	 * @param ranks
+	 *            Rank of each layer
+	 * @param layer
+	 *            Layer to be factorized to another rank
+	 * @param rank
+	 *            Rank to be tried
+	 * @param minimumAccuracy
+	 *            Accuracy the network must reach
+	 * @return True, if the network reaches the accuracy with the layer
+	 *         factorized to the rank
+	 */
+	private static boolean isAccurateEnough(Training training,
+			List<TrainingDataSet> dataSets, double[] parameters,
+			SingularValueDecomposition[] decompositions, int[] ranks,
+			int layer, int rank, double minimumAccuracy) {
+		NeuralNetwork net = training.getNetwork();
+		List<Layer> layers = net.getNodeLayers();
+		double[] approximated = parameters.clone();
+
+		int index = 0;
+		for (int i = 0; i < layers.size(); i++) {
+			int layerRank = i == layer ? rank : ranks[i];
+			if (i > 0 && layerRank < decompositions[i].getMaximumRank()) {
+				double[][] matrix = decompositions[i].approximate(layerRank);
+				for (double[] row : matrix) {
+					System.arraycopy(row, 0, approximated, index, row.length);
+					index += row.length;
+				}
+			} else {
+				index += countWeights(net, i);
+			}
+			index += layers.get(i).getNodes().size();
+		}
+
+		net.setParameters(approximated);
+		return measureAccuracy(training, dataSets) >= minimumAccuracy;
+	}
+
+	/**
+	 * Measure how many data sets the network of a training categorizes
+	 * correctly
+	 * 
+	 * @param training
+	 *            Training of the network
+	 * @param dataSets
+	 *            Data sets to be categorized
+	 * @return The accuracy, ranging from 0 to 1
+	 */
+	private static double measureAccuracy(Training training,
+			List<TrainingDataSet> dataSets) {
+		int correct = 0;
+		for (TrainingDataSet dataSet : dataSets) {
+			if (training.categorizeData(training.getNetwork(), dataSet)) {
+				correct++;
+			}
+		}
+
+		return (double) correct / dataSets.size();
+	}
+
+	/**
+	 * Check whether factorizing a layer to a rank saves work
+	 * 
+	 * @param nodes
+	 *            Amount of nodes in the layer
+	 * @param connections
+	 *            Amount of connections of each node
+	 * @param rank
+	 *            Rank of the factorization
+	 * @return True, if the factors hold fewer values than the weight matrix
+	 */
+	private static boolean isWorthFactorizing(int nodes, int connections,
+			int rank) {
+		return (long) rank * (nodes + connections) < (long) nodes * connections;
+	}
+
+	/**
+	 * Decompose the weight matrices of all layers of a network
+	 * 
+	 * @param net
+	 *            Neural network without feature layers
+	 * @return Decomposition of each layer, null for the input layer
+	 */
+	private static SingularValueDecomposition[] decompose(NeuralNetwork net) {
+		if (!net.getFeatureLayers().isEmpty()) {
+			throw new IllegalArgumentException(
+					"Networks with feature layers can not be factorized.");
+		}
+
+		int layers = net.getNodeLayers().size();
+		SingularValueDecomposition[] decompositions =
+				new SingularValueDecomposition[layers];
+		for (int layer = 1; layer < layers; layer++) {
+			decompositions[layer] = new SingularValueDecomposition(
+					getWeightMatrix(net, layer));
+		}
+
+		return decompositions;
+	}
+
+	/**
+	 * Get the weights of a layer as a matrix
+	 * 
+	 * @param net
+	 *            Neural network containing the layer
+	 * @param layer
+	 *            Index of the layer
+	 * @return Matrix with a row for each node and a column for each connection
+	 */
+	private static double[][] getWeightMatrix(NeuralNetwork net, int layer) {
+		List<Node> nodes = net.getNodeLayers().get(layer).getNodes();
+		double[][] matrix = new double[nodes.size()][];
+		for (int node = 0; node < nodes.size(); node++) {
+			List<Weight> weights = nodes.get(node).getWeights();
+			matrix[node] = new double[weights.size()];
+			for (int i = 0; i < weights.size(); i++) {
+				matrix[node][i] = weights.get(i).getValue();
+			}
+		}
+
+		return matrix;
+	}
+
+	/**
+	 * Count the weights of a layer
+	 * 
+	 * @param net
+	 *            Neural network containing the layer
+	 * @param layer
+	 *            Index of the layer
+	 * @return Amount of weights of all nodes in the layer
+	 */
+	private static int countWeights(NeuralNetwork net, int layer) {
+		List<Node> nodes = net.getNodeLayers().get(layer).getNodes();
+		return nodes.size() * nodes.get(0).getWeights().size();
+	}
+
+	/**
+	 * Copy a matrix into a single array, row by row
+	 * 
+	 * @param matrix
+	 *            Matrix to be copied
+	 * @return Values of the matrix
+	 */
+	private static double[] flatten(double[][] matrix) {
+		int columns = matrix[0].length;
+		double[] values = new double[matrix.length * columns];
+		for (int row = 0; row < matrix.length; row++) {
+			System.arraycopy(matrix[row], 0, values, row * columns, columns);
+		}
+
+		return values;
+	}
+
+	/**
+	 * Get the rank of a layer
+	 * 
+	 * @param layer
+	 *            Index of the layer
+	 * @return Rank of the layer, the smaller of its amounts of nodes and
+	 *         connections if it is not factorized
+	 */
+	public int getRank(int layer) {
+		return this.ranks[layer];
+	}
+
+	/**
+	 * Check whether a layer is factorized
+	 * 
+	 * @param layer
+	 *            Index of the layer
+	 * @return True, if the layer multiplies its input with two thin matrices
+	 */
+	public boolean isFactorized(int layer) {
+		return this.secondFactors[layer] != null;
+	}
+
+	/**
+	 * Get the amount of weights and biases in this network
+	 * 
+	 * @return Amount of weights, factors and biases
+	 */
+	public int getAmountOfParameters() {
+		int amount = this.inputWeights.length;
+		for (int layer = 0; layer < this.layerSizes.length; layer++) {
+			amount += this.biases[layer].length;
+			if (layer > 0) {
+				amount += this.firstFactors[layer].length;
+			}
+			if (this.isFactorized(layer)) {
+				amount += this.secondFactors[layer].length;
+			}
+		}
+
+		return amount;
+	}
+
+	/**
+	 * Get the amount of memory the weights and biases of this network take
+	 * 
+	 * @return Size of all parameters in bytes
+	 */
+	public long getSizeInBytes() {
+		return this.getAmountOfParameters() * 8L;
+	}
+
+	/**
+	 * Get the amount of multiplications needed to calculate the output for an
+	 * input, not counting the activation functions
+	 * 
+	 * @return Amount of multiplications per input
+	 */
+	public long getMultiplications() {
+		long multiplications = this.inputWeights.length;
+		for (int layer = 1; layer < this.layerSizes.length; layer++) {
+			multiplications += this.firstFactors[layer].length;
+			if (this.isFactorized(layer)) {
+				multiplications += this.secondFactors[layer].length;
+			}
+		}
+
+		return multiplications;
+	}
+
+	/**
+	 * Get the amount of neural nodes in the input layer of this network
+	 * 
+	 * @return Amount of neural nodes in the input layer
+	 */
+	public int getAmountOfNeuralNodesInInputLayer() {
+		return this.layerSizes[0];
+	}
+
+	/**
+	 * Get the amount of neural nodes in the output layer of this network
+	 * 
+	 * @return Amount of neural nodes in the output layer
+	 */
+	public int getAmountOfNeuralNodesInOutputLayer() {
+		return this.layerSizes[this.layerSizes.length - 1];
+	}
+
+	/**
+	 * Feed the neural network a number of input values and calculate the values
+	 * of the output layer
+	 * 
+	 * @param inputValues
+	 *            Values for the neurons in the input layer, must match their
+	 *            number
+	 * @return Values of the neurons in the output layer
+	 */
+	public double[] input(double[] inputValues) {
+		if (this.layerSizes[0] != inputValues.length) {
+			throw new IllegalArgumentException("The number of input values ("
+					+ inputValues.length + ") must match the number of neural "
+					+ "nodes in the input layer (" + this.layerSizes[0] + ")");
+		}
+
+		/* Give values to the input layer */
+		double[] processingInput = new double[this.layerSizes[0]];
+		for (int i = 0; i < processingInput.length; i++) {
+			processingInput[i] = MathHelper.sigmoid(inputValues[i]
+					* this.inputWeights[i] + this.biases[0][i]);
+		}
+
+		/* Multiply with one or two matrices for each further layer */
+		for (int layer = 1; layer < this.layerSizes.length; layer++) {
+			double[] processingOutput;
+			if (this.isFactorized(layer)) {
+				double[] reduced = multiply(this.firstFactors[layer],
+						processingInput, this.ranks[layer]);
+				processingOutput = multiply(this.secondFactors[layer],
+						reduced, this.layerSizes[layer]);
+			} else {
+				processingOutput = multiply(this.firstFactors[layer],
+						processingInput, this.layerSizes[layer]);
+			}
+
+			for (int node = 0; node < processingOutput.length; node++) {
+				processingOutput[node] += this.biases[layer][node];
+			}
+
+			if (!this.softmaxOutput || layer < this.layerSizes.length - 1) {
+				for (int node = 0; node < processingOutput.length; node++) {
+					processingOutput[node] = MathHelper
+							.sigmoid(processingOutput[node]);
+				}
+			} else {
+				processingOutput = MathHelper.softmax(processingOutput);
+			}
+			processingInput = processingOutput;
+		}
+
+		return processingInput;
+	}
+
+	/**
+	 * Feed the neural network a number of input values and calculate the values
+	 * of the output layer
+	 * 
+	 * @param inputValues
+	 *            Values for the neurons in the input layer, must match their
+	 *            number
+	 * @return Values of the neurons in the output layer
+	 */
+	public List<Double> input(List<Double> inputValues) {
+		double[] input = new double[inputValues.size()];
+		for (int i = 0; i < input.length; i++) {
+			input[i] = inputValues.get(i);
+		}
+
+		double[] output = this.input(input);
+		List<Double> outputValues = new ArrayList<Double>(output.length);
+		for (double value : output) {
+			outputValues.add(value);
+		}
+
+		return outputValues;
+	}
+
+	/**
+	 * Multiply a matrix with a vector
+	 * 
+	 * @param matrix
+	 *            Values of the matrix, row by row
+	 * @param vector
+	 *            Vector with a value for each column of the matrix
+	 * @param rows
+	 *            Amount of rows of the matrix
+	 * @return Vector with a value for each row of the matrix
+	 */
+	private static double[] multiply(double[] matrix, double[] vector, int rows) {
+		double[] result = new double[rows];
+		int index = 0;
+		for (int row = 0; row < rows; row++) {
+			double sum = 0;
+			for (int column = 0; column < vector.length; column++) {
+				sum += matrix[index++] * vector[column];
+			}
+			result[row] = sum;
+		}
+
+		return result;
+	}
+}
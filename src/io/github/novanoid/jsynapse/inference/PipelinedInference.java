@@ -0,0 +1,436 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+// Copyright 2014 Novanoid
+
+package io.github.novanoid.jsynapse.inference;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import io.github.novanoid.jsynapse.file.FileManager;
+import io.github.novanoid.jsynapse.math.MathHelper;
+import io.github.novanoid.jsynapse.network.FeatureLayer;
+import io.github.novanoid.jsynapse.network.Layer;
+import io.github.novanoid.jsynapse.network.NeuralNetwork;
+import io.github.novanoid.jsynapse.network.Node;
+
+/**
+ * Runs a stream of inputs through a neural network with one thread per group
+ * of layers, so several inputs are processed at the same time, each in
+ * another group. Neighbouring groups are connected by bounded ring buffers of
+ * preallocated values, each written by one thread and read by one other
+ * thread. Outputs are taken in the order the inputs were submitted.
+ * 
+ * Inputs must be submitted by a single thread and outputs taken by a single
+ * thread. The pipeline works on a copy of the weights, so later changes to the
+ * network are not seen.
+ * 
+ * @author Novanoid
+ */
+public class PipelinedInference {
+	private NeuralNetwork net;
+	private Stage[] stages;
+	/**
+	 * The buffers between the stages, the first one holding the inputs and the
+	 * last one the outputs
+	 */
+	private RingBuffer[] buffers;
+	private Thread[] threads;
+
+	private volatile boolean running;
+	private volatile Throwable failure;
+
+	/**
+	 * Create a new pipeline for a neural network
+	 * 
+	 * @param net
+	 *            Neural network to compute outputs with, whose weights are
+	 *            copied
+	 * @param stageCount
+	 *            Amount of threads to split the layers between, at most the
+	 *            amount of layers of nodes
+	 * @param bufferSize
+	 *            Amount of values each buffer between two stages can hold
+	 */
+	public PipelinedInference(NeuralNetwork net, int stageCount, int bufferSize) {
+		List<Layer> layers = net.getNodeLayers();
+		if (stageCount < 1 || stageCount > layers.size()) {
+			throw new IllegalArgumentException("The amount of stages ("
+					+ stageCount + ") must range from 1 to the amount of "
+					+ "layers (" + layers.size() + ").");
+		} else if (bufferSize < 1) {
+			throw new IllegalArgumentException("The buffer size ("
+					+ bufferSize + ") must be at least 1.");
+		}
+
+		this.net = net;
+
+		/* Split the layers so each stage has about as many weights */
+		long totalWeights = 0;
+		for (Layer layer : layers) {
+			totalWeights += layer.getNodes().size()
+					* (long) layer.getNodes().get(0).getWeights().size();
+		}
+
+		this.stages = new Stage[stageCount];
+		int firstLayer = 0;
+		long weights = 0;
+		for (int i = 0; i < stageCount; i++) {
+			int lastLayer = firstLayer;
+			weights += layers.get(lastLayer).getNodes().size()
+					* (long) layers.get(lastLayer).getNodes().get(0)
+							.getWeights().size();
+			long target = totalWeights * (i + 1) / stageCount;
+			while (layers.size() - (lastLayer + 1) > stageCount - (i + 1)
+					&& (i == stageCount - 1 || weights < target)) {
+				lastLayer++;
+				weights += layers.get(lastLayer).getNodes().size()
+						* (long) layers.get(lastLayer).getNodes().get(0)
+								.getWeights().size();
+			}
+			/*
+			 * Feature layers keep the values of their last input and can thus
+			 * not be shared with the network
+			 */
+			List<FeatureLayer> featureLayers = i == 0 ? FileManager
+					.copy(new ArrayList<FeatureLayer>(net.getFeatureLayers()))
+					: null;
+			this.stages[i] = new Stage(layers, firstLayer, lastLayer,
+					featureLayers, i == stageCount - 1 && net.isSoftmaxOutput());
+			firstLayer = lastLayer + 1;
+		}
+
+		this.buffers = new RingBuffer[stageCount + 1];
+		this.buffers[0] = new RingBuffer(bufferSize,
+				net.getAmountOfInputValues());
+		for (int i = 0; i < stageCount; i++) {
+			this.buffers[i + 1] = new RingBuffer(bufferSize,
+					this.stages[i].getOutputSize());
+		}
+	}
+
+	/**
+	 * Start the threads of all stages
+	 */
+	public synchronized void start() {
+		if (this.threads != null) {
+			throw new IllegalStateException("The pipeline is already running.");
+		}
+
+		this.running = true;
+		this.threads = new Thread[this.stages.length];
+		for (int i = 0; i < this.stages.length; i++) {
+			final Stage stage = this.stages[i];
+			final RingBuffer input = this.buffers[i];
+			final RingBuffer output = this.buffers[i + 1];
+			this.threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						while (running) {
+							double[] inputValues = input.peek();
+							double[] outputValues = output.claim();
+							if (inputValues == null || outputValues == null) {
+								return;
+							}
+
+							stage.compute(inputValues, outputValues);
+							input.release();
+							output.publish();
+						}
+					} catch (Throwable e) {
+						failure = e;
+						running = false;
+					}
+				}
+			}, "pipeline-stage-" + i);
+			this.threads[i].setDaemon(true);
+			this.threads[i].start();
+		}
+	}
+
+	/**
+	 * Stop the threads of all stages, dropping all inputs still in the
+	 * pipeline
+	 * 
+	 * @throws InterruptedException
+	 *             If the thread was interrupted while waiting for the stages
+	 */
+	public synchronized void stop() throws InterruptedException {
+		if (this.threads == null) {
+			return;
+		}
+
+		this.running = false;
+		for (Thread thread : this.threads) {
+			thread.join();
+		}
+		this.threads = null;
+	}
+
+	/**
+	 * Hand the next input to the pipeline, waiting while the pipeline is full
+	 * 
+	 * @param inputValues
+	 *            Values for the network, which are copied
+	 */
+	public void submit(double[] inputValues) {
+		if (inputValues.length != this.net.getAmountOfInputValues()) {
+			throw new IllegalArgumentException("The number of input values ("
+					+ inputValues.length
+					+ ") must match the number of input values of the network ("
+					+ this.net.getAmountOfInputValues() + ")");
+		}
+
+		double[] slot = this.buffers[0].claim();
+		this.checkRunning(slot);
+		System.arraycopy(inputValues, 0, slot, 0, inputValues.length);
+		this.buffers[0].publish();
+	}
+
+	/**
+	 * Take the output of the oldest input still in the pipeline, waiting until
+	 * it has been computed
+	 * 
+	 * @param outputValues
+	 *            Array to store the values of the neurons in the output layer
+	 *            in, must match their number
+	 */
+	public void take(double[] outputValues) {
+		RingBuffer outputs = this.buffers[this.buffers.length - 1];
+		double[] slot = outputs.peek();
+		this.checkRunning(slot);
+		System.arraycopy(slot, 0, outputValues, 0, outputValues.length);
+		outputs.release();
+	}
+
+	/**
+	 * Make sure a buffer slot could be obtained
+	 * 
+	 * @param slot
+	 *            The obtained slot, null if the pipeline stopped while waiting
+	 */
+	private void checkRunning(double[] slot) {
+		if (slot == null) {
+			throw new IllegalStateException("The pipeline is not running.",
+					this.failure);
+		}
+	}
+
+	/**
+	 * Wait a little for another thread, spinning at first and then giving the
+	 * processor to other threads
+	 * 
+	 * @param attempt
+	 *            Amount of times this method has been called while waiting for
+	 *            the same event
+	 */
+	private static void idle(int attempt) {
+		if (attempt < 64) {
+			return;
+		} else if (attempt < 128) {
+			Thread.yield();
+		} else {
+			LockSupport.parkNanos(20000);
+		}
+	}
+
+	/**
+	 * A bounded queue of preallocated arrays, filled by one thread and emptied
+	 * by another one
+	 */
+	private class RingBuffer {
+		private final double[][] slots;
+		private final int mask;
+		/**
+		 * Amount of arrays read and released so far
+		 */
+		private final AtomicLong head = new AtomicLong();
+		/**
+		 * Amount of arrays written and published so far
+		 */
+		private final AtomicLong tail = new AtomicLong();
+
+		private RingBuffer(int capacity, int width) {
+			int size = Integer.highestOneBit(capacity);
+			if (size < capacity) {
+				size <<= 1;
+			}
+
+			this.slots = new double[size][width];
+			this.mask = size - 1;
+		}
+
+		/**
+		 * Get the next array to write to, waiting while the buffer is full
+		 * 
+		 * @return The next free array or null if the pipeline stopped
+		 */
+		private double[] claim() {
+			long written = this.tail.get();
+			int attempt = 0;
+			while (written - this.head.get() >= this.slots.length) {
+				if (!running) {
+					return null;
+				}
+				idle(attempt++);
+			}
+
+			return this.slots[(int) (written & this.mask)];
+		}
+
+		/**
+		 * Hand the array returned by the last claim to the reader
+		 */
+		private void publish() {
+			this.tail.lazySet(this.tail.get() + 1);
+		}
+
+		/**
+		 * Get the next array to read from, waiting while the buffer is empty
+		 * 
+		 * @return The oldest published array or null if the pipeline stopped
+		 */
+		private double[] peek() {
+			long read = this.head.get();
+			int attempt = 0;
+			while (read >= this.tail.get()) {
+				if (!running) {
+					return null;
+				}
+				idle(attempt++);
+			}
+
+			return this.slots[(int) (read & this.mask)];
+		}
+
+		/**
+		 * Hand the array returned by the last peek back to the writer
+		 */
+		private void release() {
+			this.head.lazySet(this.head.get() + 1);
+		}
+	}
+
+	/**
+	 * A group of consecutive layers computed by one thread, working on its own
+	 * copy of their weights
+	 */
+	private static class Stage {
+		/**
+		 * Feature layers computed before the input layer, null for all stages
+		 * but the first one
+		 */
+		private List<FeatureLayer> featureLayers;
+		/**
+		 * The weights of each layer, node by node
+		 */
+		private double[][] weights;
+		private double[][] biases;
+		/**
+		 * The outputs of each layer but the last
+		 */
+		private double[][] layerOutputs;
+		private boolean inputLayer, softmaxOutput;
+
+		private Stage(List<Layer> layers, int firstLayer, int lastLayer,
+				List<FeatureLayer> featureLayers, boolean softmaxOutput) {
+			this.featureLayers = featureLayers;
+			this.inputLayer = firstLayer == 0;
+			this.softmaxOutput = softmaxOutput;
+
+			int layerCount = lastLayer - firstLayer + 1;
+			this.weights = new double[layerCount][];
+			this.biases = new double[layerCount][];
+			this.layerOutputs = new double[layerCount - 1][];
+			for (int i = 0; i < layerCount; i++) {
+				List<Node> nodes = layers.get(firstLayer + i).getNodes();
+				int connections = nodes.get(0).getWeights().size();
+				this.weights[i] = new double[nodes.size() * connections];
+				this.biases[i] = new double[nodes.size()];
+				for (int j = 0; j < nodes.size(); j++) {
+					for (int k = 0; k < connections; k++) {
+						this.weights[i][j * connections + k] = nodes.get(j)
+								.getWeights().get(k).getValue();
+					}
+					this.biases[i][j] = nodes.get(j).getBias();
+				}
+				if (i < layerCount - 1) {
+					this.layerOutputs[i] = new double[nodes.size()];
+				}
+			}
+		}
+
+		/**
+		 * Get the amount of values this stage outputs
+		 * 
+		 * @return Amount of nodes in the last layer of this stage
+		 */
+		private int getOutputSize() {
+			return this.biases[this.biases.length - 1].length;
+		}
+
+		/**
+		 * Compute the output of all layers of this stage
+		 * 
+		 * @param input
+		 *            Output of the previous stage or the input of the network
+		 * @param output
+		 *            Array to store the output of the last layer in
+		 */
+		private void compute(double[] input, double[] output) {
+			double[] values = input;
+			if (this.inputLayer) {
+				for (FeatureLayer featureLayer : this.featureLayers) {
+					values = featureLayer.input(values);
+				}
+			}
+
+			int lastLayer = this.weights.length - 1;
+			for (int layer = 0; layer <= lastLayer; layer++) {
+				double[] layerWeights = this.weights[layer];
+				double[] layerBiases = this.biases[layer];
+				double[] layerOutput = layer == lastLayer ? output
+						: this.layerOutputs[layer];
+				boolean activation = layer < lastLayer || !this.softmaxOutput;
+
+				if (layer == 0 && this.inputLayer) {
+					/* Each node of the input layer takes a single value */
+					for (int j = 0; j < layerOutput.length; j++) {
+						layerOutput[j] = MathHelper.sigmoid(values[j]
+								* layerWeights[j] + layerBiases[j]);
+					}
+				} else {
+					int connections = values.length;
+					for (int j = 0, w = 0; j < layerOutput.length; j++) {
+						double sum = 0;
+						for (int k = 0; k < connections; k++, w++) {
+							sum += values[k] * layerWeights[w];
+						}
+						sum += layerBiases[j];
+						layerOutput[j] = activation ? MathHelper.sigmoid(sum)
+								: sum;
+					}
+				}
+				values = layerOutput;
+			}
+
+			if (this.softmaxOutput) {
+				MathHelper.softmax(output, output);
+			}
+		}
+	}
+}
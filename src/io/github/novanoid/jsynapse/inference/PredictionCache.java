@@ -0,0 +1,305 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+// Copyright 2014 Novanoid
+
+package io.github.novanoid.jsynapse.inference;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.github.novanoid.jsynapse.network.NeuralNetwork;
+
+/**
+ * A bounded cache of network outputs in front of a neural network, so inputs
+ * that occur again are not run through the whole network. Entries are evicted
+ * in least recently used order and dropped as soon as the weights of the
+ * network are changed by training.
+ * 
+ * @author Novanoid
+ */
+public class PredictionCache {
+	/**
+	 * Amount of independently locked parts of the cache
+	 */
+	private static final int STRIPES = 16;
+
+	private NeuralNetwork net;
+	private Stripe[] stripes;
+
+	/**
+	 * Version of the network weights the cached outputs were computed with
+	 */
+	private AtomicLong cachedWeightVersion;
+
+	private AtomicLong hits, misses, evictions, invalidations;
+
+	/**
+	 * Create a new prediction cache for a neural network
+	 * 
+	 * @param net
+	 *            Neural network to compute outputs with
+	 * @param capacity
+	 *            Maximum amount of outputs to keep, spread evenly across the
+	 *            independently locked parts of the cache
+	 */
+	public PredictionCache(NeuralNetwork net, int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException(
+					"The capacity of the prediction cache (" + capacity
+							+ ") must be at least 1.");
+		}
+
+		this.net = net;
+		this.cachedWeightVersion = new AtomicLong(net.getWeightVersion());
+		this.hits = new AtomicLong();
+		this.misses = new AtomicLong();
+		this.evictions = new AtomicLong();
+		this.invalidations = new AtomicLong();
+
+		this.stripes = new Stripe[STRIPES];
+		for (int i = 0; i < STRIPES; i++) {
+			int stripeCapacity = capacity / STRIPES
+					+ (i < capacity % STRIPES ? 1 : 0);
+			this.stripes[i] = new Stripe(Math.max(stripeCapacity, 1));
+		}
+	}
+
+	/**
+	 * Get the output of the neural network for the given input, either from
+	 * the cache or by running the input through the network
+	 * 
+	 * @param inputValues
+	 *            Values for the neurons in the input layer
+	 * @return Values of the neurons in the output layer, must not be modified
+	 */
+	public List<Double> predict(List<Double> inputValues) {
+		long weightVersion = this.net.getWeightVersion();
+		long previousWeightVersion = this.cachedWeightVersion.get();
+		if (weightVersion != previousWeightVersion
+				&& this.cachedWeightVersion.compareAndSet(
+						previousWeightVersion, weightVersion)) {
+			this.invalidate();
+		}
+
+		InputKey key = new InputKey(inputValues);
+		int spreadHash = key.hashCode() * 0x9e3779b9;
+		Stripe stripe = this.stripes[(spreadHash >>> 28) % STRIPES];
+
+		CachedOutput entry = stripe.get(key);
+		if (entry != null && entry.weightVersion == weightVersion) {
+			this.hits.incrementAndGet();
+			return entry.output;
+		}
+
+		this.misses.incrementAndGet();
+
+		List<Double> output;
+		synchronized (this.net) {
+			weightVersion = this.net.getWeightVersion();
+			output = Collections.unmodifiableList(new ArrayList<Double>(
+					this.net.input(inputValues)));
+		}
+
+		stripe.put(key, new CachedOutput(output, weightVersion));
+
+		return output;
+	}
+
+	/**
+	 * Remove all cached outputs
+	 */
+	public void invalidate() {
+		for (Stripe stripe : this.stripes) {
+			stripe.clear();
+		}
+		this.invalidations.incrementAndGet();
+	}
+
+	/**
+	 * Get the amount of outputs currently cached
+	 * 
+	 * @return Amount of cached outputs
+	 */
+	public int size() {
+		int size = 0;
+		for (Stripe stripe : this.stripes) {
+			size += stripe.size();
+		}
+
+		return size;
+	}
+
+	/**
+	 * Get the amount of requests answered from the cache
+	 * 
+	 * @return Amount of cache hits
+	 */
+	public long getHitCount() {
+		return this.hits.get();
+	}
+
+	/**
+	 * Get the amount of requests that had to be computed by the network
+	 * 
+	 * @return Amount of cache misses
+	 */
+	public long getMissCount() {
+		return this.misses.get();
+	}
+
+	/**
+	 * Get the amount of outputs removed to make room for new ones
+	 * 
+	 * @return Amount of evicted outputs
+	 */
+	public long getEvictionCount() {
+		return this.evictions.get();
+	}
+
+	/**
+	 * Get the amount of times the whole cache has been cleared, usually
+	 * because the weights of the network changed
+	 * 
+	 * @return Amount of invalidations
+	 */
+	public long getInvalidationCount() {
+		return this.invalidations.get();
+	}
+
+	/**
+	 * Get the share of requests answered from the cache
+	 * 
+	 * @return Hit rate ranging from 0 to 1
+	 */
+	public double getHitRate() {
+		long hits = this.hits.get();
+		long requests = hits + this.misses.get();
+
+		return requests == 0 ? 0.0 : (hits * 1.0) / requests;
+	}
+
+	/**
+	 * A cached output together with the weight version it was computed with
+	 */
+	private static class CachedOutput {
+		private final List<Double> output;
+		private final long weightVersion;
+
+		private CachedOutput(List<Double> output, long weightVersion) {
+			this.output = output;
+			this.weightVersion = weightVersion;
+		}
+	}
+
+	/**
+	 * A part of the cache guarded by its own lock, keeping its entries in
+	 * access order
+	 */
+	private class Stripe {
+		private LinkedHashMap<InputKey, CachedOutput> entries;
+
+		private Stripe(final int capacity) {
+			this.entries = new LinkedHashMap<InputKey, CachedOutput>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(
+						Map.Entry<InputKey, CachedOutput> eldest) {
+					if (this.size() > capacity) {
+						evictions.incrementAndGet();
+						return true;
+					}
+
+					return false;
+				}
+			};
+		}
+
+		private synchronized CachedOutput get(InputKey key) {
+			return this.entries.get(key);
+		}
+
+		private synchronized void put(InputKey key, CachedOutput entry) {
+			this.entries.put(key, entry);
+		}
+
+		private synchronized void clear() {
+			this.entries.clear();
+		}
+
+		private synchronized int size() {
+			return this.entries.size();
+		}
+	}
+
+	/**
+	 * Compact representation of a set of input values. Inputs consisting only
+	 * of zeros and ones are packed into single bits, all other inputs keep the
+	 * bit patterns of their values.
+	 */
+	private static class InputKey {
+		private final boolean binary;
+		private final int length;
+		private final long[] bits;
+		private final int hash;
+
+		private InputKey(List<Double> inputValues) {
+			boolean binary = true;
+			for (int i = 0; i < inputValues.size() && binary; i++) {
+				double value = inputValues.get(i);
+				binary = value == 0.0 || value == 1.0;
+			}
+
+			this.binary = binary;
+			this.length = inputValues.size();
+			if (binary) {
+				this.bits = new long[(this.length + 63) / 64];
+				for (int i = 0; i < this.length; i++) {
+					if (inputValues.get(i) == 1.0) {
+						this.bits[i / 64] |= 1L << (i % 64);
+					}
+				}
+			} else {
+				this.bits = new long[this.length];
+				for (int i = 0; i < this.length; i++) {
+					this.bits[i] = Double.doubleToLongBits(inputValues.get(i));
+				}
+			}
+
+			this.hash = 31 * Arrays.hashCode(this.bits) + this.length;
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			if (!(object instanceof InputKey)) {
+				return false;
+			}
+
+			InputKey other = (InputKey) object;
+			return this.hash == other.hash && this.binary == other.binary
+					&& this.length == other.length
+					&& Arrays.equals(this.bits, other.bits);
+		}
+	}
+}
@@ -19,6 +19,7 @@ import java.text.DecimalFormat;
 
 import io.github.novanoid.jsynapse.file.FileManager;
 import io.github.novanoid.jsynapse.network.NeuralNetwork;
+import io.github.novanoid.jsynapse.training.ValidationMonitor;
 import io.github.novanoid.jsynapse.training.digitrecognition.DigitRecognitionTraining;
 
 /**
@@ -41,16 +42,20 @@ public class ArtificialNeuralNetwork {
 		System.out.println();
 
 		DigitRecognitionTraining training = new DigitRecognitionTraining(net);
-
-		for (int i = 0; i < 1000; i++) {
-			training.startTraining(100, false);
-			System.out.println((i * 100) + " training iterations performed");
-			double accuracy = training.startTesting(100, false);
-
-			DecimalFormat decimalFormat = new DecimalFormat("###");
-			System.out.println("Accuracy: "
-					+ decimalFormat.format(accuracy * 100) + "\u0025");
-		}
+		training.holdOutDataSets(0.2);
+
+		/* Validate in the background and stop once the accuracy stalls */
+		ValidationMonitor monitor = new ValidationMonitor(training,
+				training.getHeldOutDataSets(), 50);
+		long iterations = monitor.train(100, 1000, true);
+		monitor.restoreBest();
+
+		DecimalFormat decimalFormat = new DecimalFormat("###");
+		System.out.println(iterations + " training iterations performed");
+		System.out.println("Best accuracy: "
+				+ decimalFormat.format(monitor.getBestAccuracy() * 100)
+				+ "\u0025 after " + monitor.getBestIterations()
+				+ " training iterations");
 
 		FileManager.saveNetwork(net, "trained-digit-recognition-net.ser");
 	}
@@ -51,4 +51,59 @@ public class MathHelper {
 	public static double sigmoidDifferential(double input) {
 		return MathHelper.sigmoid(input) * (1 - MathHelper.sigmoid(input));
 	}
+
+	/**
+	 * Calculate the logarithm of the sum of the exponentials of some values
+	 * without overflowing for large values
+	 * 
+	 * @param input
+	 *            Values to be summed up
+	 * @return Logarithm of the sum of the exponentials of the values
+	 */
+	public static double logSumExp(double[] input) {
+		double maximum = Double.NEGATIVE_INFINITY;
+		for (double value : input) {
+			maximum = Math.max(maximum, value);
+		}
+
+		double sum = 0.0;
+		for (double value : input) {
+			sum += Math.exp(value - maximum);
+		}
+
+		return maximum + Math.log(sum);
+	}
+
+	/**
+	 * Calculate the softmax function, turning values into probabilities which
+	 * add up to one
+	 * 
+	 * @param input
+	 *            Values at which the function should be calculated
+	 * @return Value of the function for each input value
+	 */
+	public static double[] softmax(double[] input) {
+		double[] output = new double[input.length];
+		MathHelper.softmax(input, output);
+
+		return output;
+	}
+
+	/**
+	 * Calculate the softmax function, turning values into probabilities which
+	 * add up to one, without allocating any memory
+	 * 
+	 * @param input
+	 *            Values at which the function should be calculated
+	 * @param output
+	 *            Array to store the value of the function for each input value
+	 *            in, may be the input array itself
+	 */
+	public static void softmax(double[] input, double[] output) {
+		double logSum = MathHelper.logSumExp(input);
+
+		for (int i = 0; i < input.length; i++) {
+			output[i] = Math.exp(input[i] - logSum);
+		}
+	}
 }
@@ -0,0 +1,180 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+// Copyright 2014 Novanoid
+
+package io.github.novanoid.jsynapse.math;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fast generator of random numbers which can be split into independent
+ * streams, one for each thread, so threads never compete for a shared
+ * generator. Streams created with the same seed produce the same numbers.
+ * 
+ * Implements the SplitMix64 algorithm by Steele, Lea and Flood. A stream must
+ * only be used by one thread at a time.
+ * 
+ * @author Novanoid
+ */
+public class RandomStream {
+	/**
+	 * The odd constant added to the state by default, derived from the golden
+	 * ratio
+	 */
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	/**
+	 * The state streams without a given seed are derived from
+	 */
+	private static final AtomicLong SEEDER = new AtomicLong(
+			mix64(System.currentTimeMillis()) ^ mix64(System.nanoTime()));
+
+	private long seed;
+	/**
+	 * The odd value added to the state for each number
+	 */
+	private final long gamma;
+
+	/**
+	 * Create a new stream producing the same numbers for the same seed
+	 * 
+	 * @param seed
+	 *            Initial state of the stream
+	 */
+	public RandomStream(long seed) {
+		this(seed, GOLDEN_GAMMA);
+	}
+
+	private RandomStream(long seed, long gamma) {
+		this.seed = seed;
+		this.gamma = gamma;
+	}
+
+	/**
+	 * Create a new stream with a seed that differs from all other streams
+	 * created this way
+	 * 
+	 * @return A new unpredictable stream
+	 */
+	public static RandomStream create() {
+		long seed = SEEDER.getAndAdd(2 * GOLDEN_GAMMA);
+		return new RandomStream(mix64(seed), mixGamma(seed + GOLDEN_GAMMA));
+	}
+
+	/**
+	 * Create a new stream whose numbers are independent of the numbers of this
+	 * stream, for example for another thread. Splitting is deterministic, so
+	 * the new stream is the same every time for the same seed.
+	 * 
+	 * @return A new independent stream
+	 */
+	public RandomStream split() {
+		return new RandomStream(this.nextLong(), mixGamma(this.nextSeed()));
+	}
+
+	/**
+	 * Get a random long value
+	 * 
+	 * @return A random value out of all possible long values
+	 */
+	public long nextLong() {
+		return mix64(this.nextSeed());
+	}
+
+	/**
+	 * Get a random double value
+	 * 
+	 * @return A random value ranging from 0 inclusive to 1 exclusive
+	 */
+	public double nextDouble() {
+		return (this.nextLong() >>> 11) * 0x1.0p-53;
+	}
+
+	/**
+	 * Get a random int value below a bound, every value being equally likely
+	 * 
+	 * @param bound
+	 *            Upper bound of the value, must be positive
+	 * @return A random value ranging from 0 inclusive to the bound exclusive
+	 */
+	public int nextInt(int bound) {
+		if (bound <= 0) {
+			throw new IllegalArgumentException("The bound (" + bound
+					+ ") must be positive.");
+		}
+
+		int value = (int) (this.nextLong() >>> 33);
+		int mask = bound - 1;
+		if ((bound & mask) == 0) {
+			return value & mask;
+		}
+
+		/* Reject values of the incomplete last range to avoid a bias */
+		int result = value % bound;
+		while (value - result + mask < 0) {
+			value = (int) (this.nextLong() >>> 33);
+			result = value % bound;
+		}
+
+		return result;
+	}
+
+	/**
+	 * Get a random boolean value
+	 * 
+	 * @return True or false, both equally likely
+	 */
+	public boolean nextBoolean() {
+		return this.nextLong() < 0;
+	}
+
+	/**
+	 * Advance the state of this stream
+	 * 
+	 * @return The new state
+	 */
+	private long nextSeed() {
+		return this.seed += this.gamma;
+	}
+
+	/**
+	 * Scramble the bits of a value
+	 * 
+	 * @param z
+	 *            Value to scramble
+	 * @return The scrambled value
+	 */
+	private static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Derive an odd value to add to the state of a stream, making sure its
+	 * bits are not too regular
+	 * 
+	 * @param z
+	 *            Value to derive from
+	 * @return An odd value
+	 */
+	private static long mixGamma(long z) {
+		z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+		z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		z = (z ^ (z >>> 33)) | 1L;
+
+		int transitions = Long.bitCount(z ^ (z >>> 1));
+		return transitions < 24 ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+	}
+}
@@ -0,0 +1,313 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+// Copyright 2014 Novanoid
+
+package io.github.novanoid.jsynapse.math;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * The singular value decomposition of a matrix A into U*S*V^T, where the
+ * columns of U and V are orthonormal and S holds the singular values on its
+ * diagonal, sorted from the largest to the smallest. Keeping only the first
+ * singular values gives the closest matrix of a lower rank.
+ * 
+ * The decomposition is computed with one-sided Jacobi rotations, which
+ * orthogonalize the columns of the matrix pair by pair until they are
+ * orthogonal to each other.
+ * 
+ * @author Novanoid
+ */
+public class SingularValueDecomposition {
+	/**
+	 * Two columns count as orthogonal once their dot product is this small
+	 * compared with their lengths
+	 */
+	private static final double TOLERANCE = 1e-12;
+	/**
+	 * The most sweeps over all pairs of columns, which is never reached in
+	 * practice
+	 */
+	private static final int MAXIMUM_SWEEPS = 60;
+
+	private int rows, columns;
+	/**
+	 * The columns of U, each with one value per row of the matrix
+	 */
+	private double[][] u;
+	/**
+	 * The columns of V, each with one value per column of the matrix
+	 */
+	private double[][] v;
+	private double[] singularValues;
+
+	/**
+	 * Decompose a matrix
+	 * 
+	 * @param matrix
+	 *            The matrix row by row, all rows must have the same length
+	 */
+	public SingularValueDecomposition(double[][] matrix) {
+		this.rows = matrix.length;
+		this.columns = this.rows == 0 ? 0 : matrix[0].length;
+		if (this.rows == 0 || this.columns == 0) {
+			throw new IllegalArgumentException("The matrix must not be empty.");
+		}
+
+		/*
+		 * Work on the shorter side, so fewer pairs of longer columns have to be
+		 * rotated. The columns of the transposed matrix are its rows.
+		 */
+		boolean transposed = this.rows < this.columns;
+		int length = transposed ? this.columns : this.rows;
+		int count = transposed ? this.rows : this.columns;
+
+		double[][] b = new double[count][length];
+		for (int i = 0; i < this.rows; i++) {
+			if (matrix[i].length != this.columns) {
+				throw new IllegalArgumentException("Row " + i + " has "
+						+ matrix[i].length + " values, yet the first row has "
+						+ this.columns + ".");
+			}
+			for (int j = 0; j < this.columns; j++) {
+				if (transposed) {
+					b[i][j] = matrix[i][j];
+				} else {
+					b[j][i] = matrix[i][j];
+				}
+			}
+		}
+
+		double[][] rotations = new double[count][count];
+		for (int i = 0; i < count; i++) {
+			rotations[i][i] = 1.0;
+		}
+
+		orthogonalize(b, rotations);
+
+		/* The lengths of the columns are the singular values */
+		final double[] lengths = new double[count];
+		for (int i = 0; i < count; i++) {
+			lengths[i] = Math.sqrt(dot(b[i], b[i]));
+		}
+		Integer[] order = new Integer[count];
+		for (int i = 0; i < count; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer first, Integer second) {
+				return Double.compare(lengths[second], lengths[first]);
+			}
+		});
+
+		this.singularValues = new double[count];
+		double[][] left = new double[count][];
+		double[][] right = new double[count][];
+		for (int i = 0; i < count; i++) {
+			int column = order[i];
+			double value = lengths[column];
+			this.singularValues[i] = value;
+
+			left[i] = b[column];
+			for (int j = 0; j < left[i].length; j++) {
+				left[i][j] = value == 0 ? 0 : left[i][j] / value;
+			}
+			right[i] = rotations[column];
+		}
+
+		/* A = B*R^T, so for a transposed matrix U and V swap places */
+		this.u = transposed ? right : left;
+		this.v = transposed ? left : right;
+	}
+
+	/**
+	 * Rotate pairs of columns until all columns are orthogonal to each other,
+	 * applying the same rotations to a second set of columns
+	 * 
+	 * @param b
+	 *            Columns to be orthogonalized
+	 * @param rotations
+	 *            Columns receiving the same rotations
+	 */
+	private static void orthogonalize(double[][] b, double[][] rotations) {
+		int count = b.length;
+		for (int sweep = 0; sweep < MAXIMUM_SWEEPS; sweep++) {
+			boolean rotated = false;
+			for (int p = 0; p < count - 1; p++) {
+				for (int q = p + 1; q < count; q++) {
+					double alpha = dot(b[p], b[p]);
+					double beta = dot(b[q], b[q]);
+					double gamma = dot(b[p], b[q]);
+					if (Math.abs(gamma) <= TOLERANCE * Math.sqrt(alpha * beta)) {
+						continue;
+					}
+					rotated = true;
+
+					double zeta = (beta - alpha) / (2 * gamma);
+					double t = Math.signum(zeta)
+							/ (Math.abs(zeta) + Math.sqrt(1 + zeta * zeta));
+					if (zeta == 0) {
+						t = 1;
+					}
+					double c = 1 / Math.sqrt(1 + t * t);
+					double s = c * t;
+
+					rotate(b[p], b[q], c, s);
+					rotate(rotations[p], rotations[q], c, s);
+				}
+			}
+
+			if (!rotated) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Rotate two columns by the same angle
+	 * 
+	 * @param p
+	 *            First column
+	 * @param q
+	 *            Second column
+	 * @param c
+	 *            Cosine of the angle
+	 * @param s
+	 *            Sine of the angle
+	 */
+	private static void rotate(double[] p, double[] q, double c, double s) {
+		for (int i = 0; i < p.length; i++) {
+			double first = p[i], second = q[i];
+			p[i] = c * first - s * second;
+			q[i] = s * first + c * second;
+		}
+	}
+
+	/**
+	 * Calculate the dot product of two vectors of the same length
+	 * 
+	 * @param first
+	 *            First vector
+	 * @param second
+	 *            Second vector
+	 * @return The dot product
+	 */
+	private static double dot(double[] first, double[] second) {
+		double sum = 0;
+		for (int i = 0; i < first.length; i++) {
+			sum += first[i] * second[i];
+		}
+
+		return sum;
+	}
+
+	/**
+	 * Get the singular values of the matrix
+	 * 
+	 * @return The singular values from the largest to the smallest, as many
+	 *         as the matrix has rows or columns, whichever is less
+	 */
+	public double[] getSingularValues() {
+		return this.singularValues.clone();
+	}
+
+	/**
+	 * Get the largest rank the decomposition can be truncated to
+	 * 
+	 * @return The amount of rows or columns of the matrix, whichever is less
+	 */
+	public int getMaximumRank() {
+		return this.singularValues.length;
+	}
+
+	/**
+	 * Get the first factor of the closest matrix of a lower rank, U*S
+	 * truncated to the given rank
+	 * 
+	 * @param rank
+	 *            Rank of the approximation
+	 * @return Matrix with a row for each row of the matrix and a column for
+	 *         each kept singular value
+	 */
+	public double[][] getLeftFactor(int rank) {
+		this.checkRank(rank);
+
+		double[][] factor = new double[this.rows][rank];
+		for (int k = 0; k < rank; k++) {
+			for (int i = 0; i < this.rows; i++) {
+				factor[i][k] = this.u[k][i] * this.singularValues[k];
+			}
+		}
+
+		return factor;
+	}
+
+	/**
+	 * Get the second factor of the closest matrix of a lower rank, V^T
+	 * truncated to the given rank
+	 * 
+	 * @param rank
+	 *            Rank of the approximation
+	 * @return Matrix with a row for each kept singular value and a column for
+	 *         each column of the matrix
+	 */
+	public double[][] getRightFactor(int rank) {
+		this.checkRank(rank);
+
+		double[][] factor = new double[rank][];
+		for (int k = 0; k < rank; k++) {
+			factor[k] = this.v[k].clone();
+		}
+
+		return factor;
+	}
+
+	/**
+	 * Calculate the closest matrix of a lower rank
+	 * 
+	 * @param rank
+	 *            Rank of the approximation
+	 * @return The approximated matrix row by row
+	 */
+	public double[][] approximate(int rank) {
+		this.checkRank(rank);
+
+		double[][] matrix = new double[this.rows][this.columns];
+		for (int k = 0; k < rank; k++) {
+			for (int i = 0; i < this.rows; i++) {
+				double factor = this.u[k][i] * this.singularValues[k];
+				for (int j = 0; j < this.columns; j++) {
+					matrix[i][j] += factor * this.v[k][j];
+				}
+			}
+		}
+
+		return matrix;
+	}
+
+	/**
+	 * Check that the decomposition can be truncated to a rank
+	 * 
+	 * @param rank
+	 *            Rank to be checked
+	 */
+	private void checkRank(int rank) {
+		if (rank < 1 || rank > this.getMaximumRank()) {
+			throw new IllegalArgumentException("The rank (" + rank
+					+ ") must range from 1 to " + this.getMaximumRank() + ".");
+		}
+	}
+}
@@ -0,0 +1,59 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+// Copyright 2014 Novanoid
+
+package io.github.novanoid.jsynapse.network;
+
+/**
+ * A trained neural network compiled into a class of its own by the
+ * {@link NeuralNetworkCompiler}. An instance keeps the values of its layers
+ * between calls, so it must only be used by one thread at a time.
+ * 
+ * @author Novanoid
+ */
+public interface CompiledNeuralNetwork {
+	/**
+	 * Feed the neural network a number of input values and calculate the values
+	 * of the output layer
+	 * 
+	 * @param inputValues
+	 *            Values for the network, must match the amount of input values
+	 * @param outputValues
+	 *            Array to store the values of the neurons in the output layer
+	 *            in, must match their number
+	 */
+	public void input(double[] inputValues, double[] outputValues);
+
+	/**
+	 * Get the amount of values the network takes
+	 * 
+	 * @return Amount of input values
+	 */
+	public int getAmountOfInputValues();
+
+	/**
+	 * Get the amount of neural nodes in the output layer
+	 * 
+	 * @return Amount of output nodes
+	 */
+	public int getAmountOfNeuralNodesInOutputLayer();
+
+	/**
+	 * Create another instance of the same network for another thread, sharing
+	 * the weights of this one
+	 * 
+	 * @return A new instance of the compiled network
+	 */
+	public CompiledNeuralNetwork newInstance();
+}
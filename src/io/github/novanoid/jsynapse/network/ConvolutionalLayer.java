@@ -0,0 +1,369 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+// Copyright 2014 Novanoid
+
+package io.github.novanoid.jsynapse.network;
+
+import io.github.novanoid.jsynapse.math.MathHelper;
+import io.github.novanoid.jsynapse.math.RandomStream;
+
+/**
+ * A layer of filters which are moved across the input image, each producing
+ * one output channel. The image patches are first copied into the columns of
+ * a matrix, so the convolution of all filters becomes a single matrix product.
+ * 
+ * @author Novanoid
+ */
+public class ConvolutionalLayer implements FeatureLayer {
+	private static final long serialVersionUID = 2811364416427384371L;
+
+	private int inputChannels, inputHeight, inputWidth;
+	private int filters, kernelSize, stride;
+	private int outputHeight, outputWidth;
+
+	/**
+	 * The weights of all filters, filter by filter, each channel by channel and
+	 * row by row
+	 */
+	private double[] weights;
+	/**
+	 * The bias of each filter
+	 */
+	private double[] biases;
+
+	private double[] previousWeightDeltas, previousBiasDeltas;
+
+	/**
+	 * The image patches of the last input, one column per output position
+	 */
+	private transient double[] columns;
+	/**
+	 * The last output of this layer
+	 */
+	private transient double[] lastOutput;
+
+	/**
+	 * Initialize a new convolutional layer with random weights
+	 * 
+	 * @param inputChannels
+	 *            Amount of channels of the input image
+	 * @param inputHeight
+	 *            Height of the input image
+	 * @param inputWidth
+	 *            Width of the input image
+	 * @param filters
+	 *            Amount of filters, which is the amount of output channels
+	 * @param kernelSize
+	 *            Width and height of each filter
+	 * @param stride
+	 *            Distance between two positions of the filters
+	 */
+	public ConvolutionalLayer(int inputChannels, int inputHeight,
+			int inputWidth, int filters, int kernelSize, int stride) {
+		this(inputChannels, inputHeight, inputWidth, filters, kernelSize,
+				stride, RandomStream.create());
+	}
+
+	/**
+	 * Initialize a new convolutional layer with reproducible random weights
+	 * 
+	 * @param inputChannels
+	 *            Amount of channels of the input image
+	 * @param inputHeight
+	 *            Height of the input image
+	 * @param inputWidth
+	 *            Width of the input image
+	 * @param filters
+	 *            Amount of filters, which is the amount of output channels
+	 * @param kernelSize
+	 *            Width and height of each filter
+	 * @param stride
+	 *            Distance between two positions of the filters
+	 * @param random
+	 *            Source of the random initial weights
+	 */
+	public ConvolutionalLayer(int inputChannels, int inputHeight,
+			int inputWidth, int filters, int kernelSize, int stride,
+			RandomStream random) {
+		if (inputChannels < 1) {
+			throw new IllegalArgumentException("The amount of input channels ("
+					+ inputChannels + ") must be at least 1.");
+		} else if (filters < 1) {
+			throw new IllegalArgumentException("The amount of filters ("
+					+ filters + ") must be at least 1.");
+		} else if (kernelSize < 1) {
+			throw new IllegalArgumentException("The kernel size ("
+					+ kernelSize + ") must be at least 1.");
+		} else if (stride < 1) {
+			throw new IllegalArgumentException("The stride (" + stride
+					+ ") must be at least 1.");
+		} else if (kernelSize > inputHeight || kernelSize > inputWidth) {
+			throw new IllegalArgumentException("The kernel size ("
+					+ kernelSize + ") must not exceed the size of the input ("
+					+ inputWidth + "x" + inputHeight + ")");
+		}
+
+		this.inputChannels = inputChannels;
+		this.inputHeight = inputHeight;
+		this.inputWidth = inputWidth;
+		this.filters = filters;
+		this.kernelSize = kernelSize;
+		this.stride = stride;
+		this.outputHeight = (inputHeight - kernelSize) / stride + 1;
+		this.outputWidth = (inputWidth - kernelSize) / stride + 1;
+
+		int patchSize = inputChannels * kernelSize * kernelSize;
+		this.weights = new double[filters * patchSize];
+		this.biases = new double[filters];
+		this.previousWeightDeltas = new double[this.weights.length];
+		this.previousBiasDeltas = new double[filters];
+
+		double range = 1.0 / Math.sqrt(patchSize);
+		for (int i = 0; i < this.weights.length; i++) {
+			this.weights[i] = (random.nextDouble() * 2 - 1) * range;
+		}
+	}
+
+	/**
+	 * Initialize a new convolutional layer with random weights after a pooling
+	 * layer
+	 * 
+	 * @param previous
+	 *            The pooling layer whose output is the input of this layer
+	 * @param filters
+	 *            Amount of filters, which is the amount of output channels
+	 * @param kernelSize
+	 *            Width and height of each filter
+	 * @param stride
+	 *            Distance between two positions of the filters
+	 */
+	public ConvolutionalLayer(PoolingLayer previous, int filters,
+			int kernelSize, int stride) {
+		this(previous, filters, kernelSize, stride, RandomStream.create());
+	}
+
+	/**
+	 * Initialize a new convolutional layer with reproducible random weights
+	 * after a pooling layer
+	 * 
+	 * @param previous
+	 *            The pooling layer whose output is the input of this layer
+	 * @param filters
+	 *            Amount of filters, which is the amount of output channels
+	 * @param kernelSize
+	 *            Width and height of each filter
+	 * @param stride
+	 *            Distance between two positions of the filters
+	 * @param random
+	 *            Source of the random initial weights
+	 */
+	public ConvolutionalLayer(PoolingLayer previous, int filters,
+			int kernelSize, int stride, RandomStream random) {
+		this(previous.getOutputChannels(), previous.getOutputHeight(),
+				previous.getOutputWidth(), filters, kernelSize, stride, random);
+	}
+
+	/**
+	 * Get the amount of output channels
+	 * 
+	 * @return Amount of filters in this layer
+	 */
+	public int getOutputChannels() {
+		return this.filters;
+	}
+
+	/**
+	 * Get the height of the output image
+	 * 
+	 * @return Height of each output channel
+	 */
+	public int getOutputHeight() {
+		return this.outputHeight;
+	}
+
+	/**
+	 * Get the width of the output image
+	 * 
+	 * @return Width of each output channel
+	 */
+	public int getOutputWidth() {
+		return this.outputWidth;
+	}
+
+	@Override
+	public int getInputSize() {
+		return this.inputChannels * this.inputHeight * this.inputWidth;
+	}
+
+	@Override
+	public int getOutputSize() {
+		return this.filters * this.outputHeight * this.outputWidth;
+	}
+
+	@Override
+	public double[] input(double[] input) {
+		if (input.length != this.getInputSize()) {
+			throw new IllegalArgumentException("The number of input values ("
+					+ input.length + ") must match the input size of this "
+					+ "layer (" + this.getInputSize() + ")");
+		}
+
+		int positions = this.outputHeight * this.outputWidth;
+		int patchSize = this.inputChannels * this.kernelSize * this.kernelSize;
+		if (this.columns == null) {
+			this.columns = new double[patchSize * positions];
+		}
+
+		/* Copy every image patch into a column */
+		int row = 0;
+		for (int channel = 0; channel < this.inputChannels; channel++) {
+			for (int ky = 0; ky < this.kernelSize; ky++) {
+				for (int kx = 0; kx < this.kernelSize; kx++) {
+					int column = row * positions;
+					for (int y = 0; y < this.outputHeight; y++) {
+						int inputIndex = (channel * this.inputHeight + y
+								* this.stride + ky)
+								* this.inputWidth + kx;
+						for (int x = 0; x < this.outputWidth; x++) {
+							this.columns[column++] = input[inputIndex];
+							inputIndex += this.stride;
+						}
+					}
+					row++;
+				}
+			}
+		}
+
+		/* Multiply the filters with the columns */
+		double[] output = new double[this.filters * positions];
+		for (int filter = 0; filter < this.filters; filter++) {
+			int outputOffset = filter * positions;
+			for (int k = 0; k < patchSize; k++) {
+				double weight = this.weights[filter * patchSize + k];
+				int columnOffset = k * positions;
+				for (int p = 0; p < positions; p++) {
+					output[outputOffset + p] += weight
+							* this.columns[columnOffset + p];
+				}
+			}
+			for (int p = 0; p < positions; p++) {
+				output[outputOffset + p] = MathHelper
+						.sigmoid(output[outputOffset + p]
+								+ this.biases[filter]);
+			}
+		}
+
+		this.lastOutput = output;
+		return output;
+	}
+
+	@Override
+	public double[] backpropagate(double[] outputError, double eta,
+			double alpha) {
+		int positions = this.outputHeight * this.outputWidth;
+		int patchSize = this.inputChannels * this.kernelSize * this.kernelSize;
+
+		/* Error before the sigmoid function */
+		double[] delta = new double[outputError.length];
+		for (int i = 0; i < delta.length; i++) {
+			delta[i] = outputError[i] * this.lastOutput[i]
+					* (1 - this.lastOutput[i]);
+		}
+
+		/* Error of each column entry, using the weights before the update */
+		double[] columnError = new double[patchSize * positions];
+		for (int filter = 0; filter < this.filters; filter++) {
+			int deltaOffset = filter * positions;
+			for (int k = 0; k < patchSize; k++) {
+				double weight = this.weights[filter * patchSize + k];
+				int columnOffset = k * positions;
+				for (int p = 0; p < positions; p++) {
+					columnError[columnOffset + p] += weight
+							* delta[deltaOffset + p];
+				}
+			}
+		}
+
+		/* Update the weights and biases with momentum */
+		for (int filter = 0; filter < this.filters; filter++) {
+			int deltaOffset = filter * positions;
+			for (int k = 0; k < patchSize; k++) {
+				int columnOffset = k * positions;
+				double gradient = 0.0;
+				for (int p = 0; p < positions; p++) {
+					gradient += delta[deltaOffset + p]
+							* this.columns[columnOffset + p];
+				}
+				int index = filter * patchSize + k;
+				double weightDelta = eta * gradient + alpha
+						* this.previousWeightDeltas[index];
+				this.weights[index] += weightDelta;
+				this.previousWeightDeltas[index] = weightDelta;
+			}
+
+			double gradient = 0.0;
+			for (int p = 0; p < positions; p++) {
+				gradient += delta[deltaOffset + p];
+			}
+			double biasDelta = eta * gradient + alpha
+					* this.previousBiasDeltas[filter];
+			this.biases[filter] += biasDelta;
+			this.previousBiasDeltas[filter] = biasDelta;
+		}
+
+		/* Add the column errors back onto the pixels they were copied from */
+		double[] inputError = new double[this.getInputSize()];
+		int row = 0;
+		for (int channel = 0; channel < this.inputChannels; channel++) {
+			for (int ky = 0; ky < this.kernelSize; ky++) {
+				for (int kx = 0; kx < this.kernelSize; kx++) {
+					int column = row * positions;
+					for (int y = 0; y < this.outputHeight; y++) {
+						int inputIndex = (channel * this.inputHeight + y
+								* this.stride + ky)
+								* this.inputWidth + kx;
+						for (int x = 0; x < this.outputWidth; x++) {
+							inputError[inputIndex] += columnError[column++];
+							inputIndex += this.stride;
+						}
+					}
+					row++;
+				}
+			}
+		}
+
+		return inputError;
+	}
+
+	@Override
+	public int getAmountOfParameters() {
+		return this.weights.length + this.biases.length;
+	}
+
+	@Override
+	public void getParameters(double[] parameters, int offset) {
+		System.arraycopy(this.weights, 0, parameters, offset,
+				this.weights.length);
+		System.arraycopy(this.biases, 0, parameters, offset
+				+ this.weights.length, this.biases.length);
+	}
+
+	@Override
+	public void setParameters(double[] parameters, int offset) {
+		System.arraycopy(parameters, offset, this.weights, 0,
+				this.weights.length);
+		System.arraycopy(parameters, offset + this.weights.length,
+				this.biases, 0, this.biases.length);
+	}
+}
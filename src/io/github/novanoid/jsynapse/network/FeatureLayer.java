@@ -0,0 +1,94 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+// Copyright 2014 Novanoid
+
+package io.github.novanoid.jsynapse.network;
+
+import java.io.Serializable;
+
+/**
+ * A layer working on images which extracts features before the values are
+ * handed to the input layer of the nodes of a network. Images are stored
+ * channel by channel, each channel row by row.
+ * 
+ * @author Novanoid
+ */
+public interface FeatureLayer extends Serializable {
+	/**
+	 * Get the amount of values this layer expects as input
+	 * 
+	 * @return Amount of input values
+	 */
+	public int getInputSize();
+
+	/**
+	 * Get the amount of values this layer outputs
+	 * 
+	 * @return Amount of output values
+	 */
+	public int getOutputSize();
+
+	/**
+	 * Calculate the output of this layer, remembering everything needed to
+	 * train it afterwards
+	 * 
+	 * @param input
+	 *            Input values of this layer
+	 * @return Output values of this layer
+	 */
+	public double[] input(double[] input);
+
+	/**
+	 * Train this layer using the error of its last output and calculate the
+	 * error of its last input
+	 * 
+	 * @param outputError
+	 *            Error of each output value, pointing in the direction the
+	 *            output should change
+	 * @param eta
+	 *            Learning rate
+	 * @param alpha
+	 *            Momentum
+	 * @return Error of each input value
+	 */
+	public double[] backpropagate(double[] outputError, double eta,
+			double alpha);
+
+	/**
+	 * Get the amount of weights and biases of this layer
+	 * 
+	 * @return Amount of weights and biases
+	 */
+	public int getAmountOfParameters();
+
+	/**
+	 * Copy the weights and biases of this layer into an array
+	 * 
+	 * @param parameters
+	 *            Array to copy into
+	 * @param offset
+	 *            Index of the first weight in the array
+	 */
+	public void getParameters(double[] parameters, int offset);
+
+	/**
+	 * Replace the weights and biases of this layer
+	 * 
+	 * @param parameters
+	 *            Array to copy from
+	 * @param offset
+	 *            Index of the first weight in the array
+	 */
+	public void setParameters(double[] parameters, int offset);
+}
@@ -19,6 +19,8 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
+import io.github.novanoid.jsynapse.math.RandomStream;
+
 /**
  * Represents a layer of neural nodes
  * 
@@ -41,10 +43,24 @@ public class Layer implements Serializable {
 	 *            Amount of nodes in the previous layer
 	 */
 	public Layer(int amountOfNodes, int connections) {
+		this(amountOfNodes, connections, RandomStream.create());
+	}
+
+	/**
+	 * Initialize a new layer of nodes
+	 * 
+	 * @param amountOfNodes
+	 *            Amount of nodes in this layer
+	 * @param connections
+	 *            Amount of nodes in the previous layer
+	 * @param random
+	 *            Source of the random initial weights
+	 */
+	public Layer(int amountOfNodes, int connections, RandomStream random) {
 		this.nodes = new ArrayList<Node>();
 
 		for (int i = 0; i < amountOfNodes; i++) {
-			Node node = new Node(connections);
+			Node node = new Node(connections, random);
 			this.nodes.add(node);
 		}
 	}
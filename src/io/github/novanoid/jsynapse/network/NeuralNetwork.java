@@ -15,6 +15,9 @@
 
 package io.github.novanoid.jsynapse.network;
 
+import io.github.novanoid.jsynapse.math.MathHelper;
+import io.github.novanoid.jsynapse.math.RandomStream;
+
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
@@ -41,6 +44,26 @@ public class NeuralNetwork implements Serializable {
 	 * The layers in this network
 	 */
 	private List<Layer> layers;
+	/**
+	 * Layers extracting features from images before the values are handed to
+	 * the input layer, may be null for networks without feature layers
+	 */
+	private List<FeatureLayer> featureLayers;
+	/**
+	 * True, if the output layer uses the softmax function instead of the
+	 * sigmoid function and is trained with the cross entropy error
+	 */
+	private boolean softmaxOutput;
+	/**
+	 * The output of each layer, reused by every call of the input method
+	 * working on arrays
+	 */
+	private transient double[][] layerOutputs;
+
+	/**
+	 * Amount of times the weights of this network have been changed
+	 */
+	private transient volatile long weightVersion;
 
 	/**
 	 * Initialize a new neural network
@@ -53,6 +76,23 @@ public class NeuralNetwork implements Serializable {
 	 *            Amount of output nodes in the output layer
 	 */
 	public NeuralNetwork(int inputNodes, int hiddenLayers, int outputNodes) {
+		this(inputNodes, hiddenLayers, outputNodes, RandomStream.create());
+	}
+
+	/**
+	 * Initialize a new neural network whose initial weights are reproducible
+	 * 
+	 * @param inputNodes
+	 *            Amount of input nodes in the input layer
+	 * @param hiddenLayers
+	 *            Amount of hidden layers
+	 * @param outputNodes
+	 *            Amount of output nodes in the output layer
+	 * @param random
+	 *            Source of the random initial weights
+	 */
+	public NeuralNetwork(int inputNodes, int hiddenLayers, int outputNodes,
+			RandomStream random) {
 		this.layers = new ArrayList<Layer>();
 
 		double divisor = Math.pow((1.0 * outputNodes / inputNodes),
@@ -61,7 +101,8 @@ public class NeuralNetwork implements Serializable {
 		double nodeNumber = inputNodes;
 		int connections = 1;
 		for (int i = 0; i < hiddenLayers + 2; i++) {
-			Layer layer = new Layer((int) Math.round(nodeNumber), connections);
+			Layer layer = new Layer((int) Math.round(nodeNumber), connections,
+					random);
 			this.layers.add(layer);
 			connections = (int) Math.round(nodeNumber);
 
@@ -69,6 +110,115 @@ public class NeuralNetwork implements Serializable {
 		}
 	}
 
+	/**
+	 * Initialize a new neural network
+	 * 
+	 * @param inputNodes
+	 *            Amount of input nodes in the input layer
+	 * @param hiddenLayers
+	 *            Amount of hidden layers
+	 * @param outputNodes
+	 *            Amount of output nodes in the output layer
+	 * @param softmaxOutput
+	 *            True, if the output layer should use the softmax function,
+	 *            false for the sigmoid function
+	 */
+	public NeuralNetwork(int inputNodes, int hiddenLayers, int outputNodes,
+			boolean softmaxOutput) {
+		this(inputNodes, hiddenLayers, outputNodes, softmaxOutput,
+				RandomStream.create());
+	}
+
+	/**
+	 * Initialize a new neural network whose initial weights are reproducible
+	 * 
+	 * @param inputNodes
+	 *            Amount of input nodes in the input layer
+	 * @param hiddenLayers
+	 *            Amount of hidden layers
+	 * @param outputNodes
+	 *            Amount of output nodes in the output layer
+	 * @param softmaxOutput
+	 *            True, if the output layer should use the softmax function,
+	 *            false for the sigmoid function
+	 * @param random
+	 *            Source of the random initial weights
+	 */
+	public NeuralNetwork(int inputNodes, int hiddenLayers, int outputNodes,
+			boolean softmaxOutput, RandomStream random) {
+		this(inputNodes, hiddenLayers, outputNodes, random);
+		this.setSoftmaxOutput(softmaxOutput);
+	}
+
+	/**
+	 * Initialize a new neural network which extracts features from images
+	 * before handing them to its layers of nodes
+	 * 
+	 * @param featureLayers
+	 *            Convolutional and pooling layers in the order the input
+	 *            passes them, the input size of each must match the output
+	 *            size of the previous one
+	 * @param hiddenLayers
+	 *            Amount of hidden layers
+	 * @param outputNodes
+	 *            Amount of output nodes in the output layer
+	 */
+	public NeuralNetwork(List<FeatureLayer> featureLayers, int hiddenLayers,
+			int outputNodes) {
+		this(featureLayers, hiddenLayers, outputNodes, RandomStream.create());
+	}
+
+	/**
+	 * Initialize a new neural network which extracts features from images
+	 * before handing them to its layers of nodes, whose initial weights are
+	 * reproducible
+	 * 
+	 * @param featureLayers
+	 *            Convolutional and pooling layers in the order the input
+	 *            passes them, the input size of each must match the output
+	 *            size of the previous one
+	 * @param hiddenLayers
+	 *            Amount of hidden layers
+	 * @param outputNodes
+	 *            Amount of output nodes in the output layer
+	 * @param random
+	 *            Source of the random initial weights of the layers of nodes
+	 */
+	public NeuralNetwork(List<FeatureLayer> featureLayers, int hiddenLayers,
+			int outputNodes, RandomStream random) {
+		this(getFeatureOutputSize(featureLayers), hiddenLayers, outputNodes,
+				random);
+		this.featureLayers = new ArrayList<FeatureLayer>(featureLayers);
+	}
+
+	/**
+	 * Check that a list of feature layers fit together
+	 * 
+	 * @param featureLayers
+	 *            Feature layers in the order the input passes them
+	 * @return Amount of values the last feature layer outputs
+	 */
+	private static int getFeatureOutputSize(List<FeatureLayer> featureLayers) {
+		if (featureLayers.isEmpty()) {
+			throw new IllegalArgumentException(
+					"At least one feature layer is needed.");
+		}
+
+		for (int i = 1; i < featureLayers.size(); i++) {
+			if (featureLayers.get(i).getInputSize() != featureLayers.get(i - 1)
+					.getOutputSize()) {
+				throw new IllegalArgumentException("The input size ("
+						+ featureLayers.get(i).getInputSize()
+						+ ") of feature layer " + i
+						+ " must match the output size ("
+						+ featureLayers.get(i - 1).getOutputSize()
+						+ ") of the previous feature layer");
+			}
+		}
+
+		return featureLayers.get(featureLayers.size() - 1).getOutputSize();
+	}
+
 	/**
 	 * Get the list of layers of nodes in the network
 	 * 
@@ -78,6 +228,64 @@ public class NeuralNetwork implements Serializable {
 		return this.layers;
 	}
 
+	/**
+	 * Check whether the output layer uses the softmax function
+	 * 
+	 * @return True, if the output layer uses the softmax function and is
+	 *         trained with the cross entropy error, false if it uses the
+	 *         sigmoid function and the squared error
+	 */
+	public boolean isSoftmaxOutput() {
+		return this.softmaxOutput;
+	}
+
+	/**
+	 * Choose the function of the output layer. The softmax function turns the
+	 * outputs into probabilities of each category and is trained with the
+	 * cross entropy error.
+	 * 
+	 * @param softmaxOutput
+	 *            True for the softmax function, false for the sigmoid function
+	 */
+	public void setSoftmaxOutput(boolean softmaxOutput) {
+		if (softmaxOutput && this.getAmountOfNeuralNodesInOutputLayer() < 2) {
+			throw new IllegalArgumentException(
+					"The softmax function needs at least two neural nodes in "
+							+ "the output layer, yet there are "
+							+ this.getAmountOfNeuralNodesInOutputLayer() + ".");
+		}
+
+		this.softmaxOutput = softmaxOutput;
+	}
+
+	/**
+	 * Get the layers extracting features before the input layer
+	 * 
+	 * @return List of feature layers, empty if there are none
+	 */
+	public List<FeatureLayer> getFeatureLayers() {
+		if (this.featureLayers == null) {
+			return new ArrayList<FeatureLayer>();
+		}
+
+		return this.featureLayers;
+	}
+
+	/**
+	 * Get the amount of values this network expects as input, which is the
+	 * input size of the first feature layer if there is one and the amount of
+	 * neural nodes in the input layer otherwise
+	 * 
+	 * @return Amount of input values
+	 */
+	public int getAmountOfInputValues() {
+		if (this.featureLayers != null) {
+			return this.featureLayers.get(0).getInputSize();
+		}
+
+		return this.getAmountOfNeuralNodesInInputLayer();
+	}
+
 	/**
 	 * Get the total amount of neural nodes in this network
 	 * 
@@ -110,6 +318,114 @@ public class NeuralNetwork implements Serializable {
 		return this.layers.get(this.layers.size() - 1).getNodes().size();
 	}
 
+	/**
+	 * Run input values through all feature layers
+	 * 
+	 * @param inputValues
+	 *            Values for the first feature layer
+	 * @return Values for the neurons in the input layer
+	 */
+	private List<Double> extractFeatures(List<Double> inputValues) {
+		double[] values = new double[inputValues.size()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = inputValues.get(i);
+		}
+
+		for (FeatureLayer featureLayer : this.featureLayers) {
+			values = featureLayer.input(values);
+		}
+
+		List<Double> features = new ArrayList<Double>(values.length);
+		for (double value : values) {
+			features.add(value);
+		}
+
+		return features;
+	}
+
+	/**
+	 * Get the total amount of weights and biases in this network
+	 * 
+	 * @return Amount of weights and biases in this network
+	 */
+	public int getAmountOfParameters() {
+		int amount = 0;
+		for (FeatureLayer featureLayer : this.getFeatureLayers()) {
+			amount += featureLayer.getAmountOfParameters();
+		}
+		for (Layer layer : this.layers) {
+			for (Node node : layer.getNodes()) {
+				amount += node.getWeights().size() + 1;
+			}
+		}
+
+		return amount;
+	}
+
+	/**
+	 * Copy all weights and biases of this network into a single array. It
+	 * starts with the parameters of all feature layers, then for each layer
+	 * it contains the weights of all nodes, node by node, followed by the
+	 * biases of all nodes.
+	 * 
+	 * @return Weights and biases of this network
+	 */
+	public double[] getParameters() {
+		double[] parameters = new double[this.getAmountOfParameters()];
+
+		int index = 0;
+		for (FeatureLayer featureLayer : this.getFeatureLayers()) {
+			featureLayer.getParameters(parameters, index);
+			index += featureLayer.getAmountOfParameters();
+		}
+		for (Layer layer : this.layers) {
+			for (Node node : layer.getNodes()) {
+				for (Weight weight : node.getWeights()) {
+					parameters[index++] = weight.getValue();
+				}
+			}
+			for (Node node : layer.getNodes()) {
+				parameters[index++] = node.getBias();
+			}
+		}
+
+		return parameters;
+	}
+
+	/**
+	 * Replace all weights and biases of this network
+	 * 
+	 * @param parameters
+	 *            Weights and biases in the order used by
+	 *            {@link #getParameters()}
+	 */
+	public void setParameters(double[] parameters) {
+		if (parameters.length != this.getAmountOfParameters()) {
+			throw new IllegalArgumentException("The number of parameters ("
+					+ parameters.length
+					+ ") must match the number of weights and biases in "
+					+ "this network (" + this.getAmountOfParameters() + ")");
+		}
+
+		int index = 0;
+		for (FeatureLayer featureLayer : this.getFeatureLayers()) {
+			featureLayer.setParameters(parameters, index);
+			index += featureLayer.getAmountOfParameters();
+		}
+		for (Layer layer : this.layers) {
+			for (Node node : layer.getNodes()) {
+				for (Weight weight : node.getWeights()) {
+					weight.setValue(parameters[index++]);
+				}
+			}
+			for (Node node : layer.getNodes()) {
+				node.setBias(parameters[index++]);
+			}
+		}
+
+		this.notifyWeightsChanged();
+	}
+
 	/**
 	 * Feed the neural network a number of input values and calculate the values
 	 * of the output layer
@@ -120,6 +436,10 @@ public class NeuralNetwork implements Serializable {
 	 * @return Values of the neurons in the output layer
 	 */
 	public List<Double> input(List<Double> inputValues) {
+		if (this.featureLayers != null) {
+			inputValues = this.extractFeatures(inputValues);
+		}
+
 		if (this.layers.get(0).getNodes().size() != inputValues.size()) {
 			throw new IllegalArgumentException(
 					"The number of input values ("
@@ -150,9 +470,177 @@ public class NeuralNetwork implements Serializable {
 			processingInput = new ArrayList<Double>(processingOutput);
 		}
 
+		if (this.softmaxOutput) {
+			List<Node> outputNodes = this.layers.get(this.layers.size() - 1)
+					.getNodes();
+			double[] outputInputs = new double[outputNodes.size()];
+			for (int i = 0; i < outputInputs.length; i++) {
+				outputInputs[i] = outputNodes.get(i).getLastLocalInput();
+			}
+
+			processingOutput.clear();
+			for (double value : MathHelper.softmax(outputInputs)) {
+				processingOutput.add(value);
+			}
+		}
+
 		return processingOutput;
 	}
 
+	/**
+	 * Feed the neural network a number of input values and calculate the values
+	 * of the output layer. Unless the network has feature layers, this does
+	 * not allocate any memory once it has been called for the first time.
+	 * 
+	 * @param inputValues
+	 *            Values for the network, must match the amount of input values
+	 * @param outputValues
+	 *            Array to store the values of the neurons in the output layer
+	 *            in, must match their number
+	 */
+	public void input(double[] inputValues, double[] outputValues) {
+		if (inputValues.length != this.getAmountOfInputValues()) {
+			throw new IllegalArgumentException("The number of input values ("
+					+ inputValues.length
+					+ ") must match the number of input values of the network ("
+					+ this.getAmountOfInputValues() + ")");
+		} else if (outputValues.length != this
+				.getAmountOfNeuralNodesInOutputLayer()) {
+			throw new IllegalArgumentException(
+					"The number of output values ("
+							+ outputValues.length
+							+ ") must match the number of neural nodes in the output layer ("
+							+ this.getAmountOfNeuralNodesInOutputLayer() + ")");
+		}
+
+		if (this.layerOutputs == null) {
+			this.layerOutputs = new double[this.layers.size()][];
+			for (int i = 0; i < this.layers.size(); i++) {
+				this.layerOutputs[i] = new double[this.layers.get(i).getNodes()
+						.size()];
+			}
+		}
+
+		double[] values = inputValues;
+		if (this.featureLayers != null) {
+			for (FeatureLayer featureLayer : this.featureLayers) {
+				values = featureLayer.input(values);
+			}
+		}
+
+		/* Give values to the input layer */
+		List<Node> inputNodes = this.layers.get(0).getNodes();
+		for (int i = 0; i < values.length; i++) {
+			this.layerOutputs[0][i] = inputNodes.get(i).input(values[i]);
+		}
+
+		/* Continue giving all values to all nodes in the next layer */
+		for (int i = 1; i < this.layers.size(); i++) {
+			List<Node> nodes = this.layers.get(i).getNodes();
+			for (int j = 0; j < nodes.size(); j++) {
+				this.layerOutputs[i][j] = nodes.get(j).input(
+						this.layerOutputs[i - 1]);
+			}
+		}
+
+		List<Node> outputNodes = this.layers.get(this.layers.size() - 1)
+				.getNodes();
+		if (this.softmaxOutput) {
+			for (int i = 0; i < outputValues.length; i++) {
+				outputValues[i] = outputNodes.get(i).getLastLocalInput();
+			}
+			MathHelper.softmax(outputValues, outputValues);
+		} else {
+			System.arraycopy(this.layerOutputs[this.layers.size() - 1], 0,
+					outputValues, 0, outputValues.length);
+		}
+	}
+
+	/**
+	 * Continue calculating the values of the output layer from the weighted
+	 * sums of the nodes in one layer, computed earlier for the same input. The
+	 * layers up to this one are skipped, so their weights must not have
+	 * changed since.
+	 * 
+	 * @param layer
+	 *            Index of the layer of nodes the sums belong to, not the
+	 *            output layer
+	 * @param localInputs
+	 *            Weighted sums of all nodes in this layer, as returned by
+	 *            their last local input
+	 * @return Values of the neurons in the output layer
+	 */
+	public List<Double> inputFromLayer(int layer, double[] localInputs) {
+		if (layer < 0 || layer >= this.layers.size() - 1) {
+			throw new IllegalArgumentException("The layer (" + layer
+					+ ") must range from 0 to " + (this.layers.size() - 2)
+					+ ".");
+		} else if (localInputs.length != this.layers.get(layer).getNodes()
+				.size()) {
+			throw new IllegalArgumentException("The number of sums ("
+					+ localInputs.length
+					+ ") must match the number of neural nodes in the layer ("
+					+ this.layers.get(layer).getNodes().size() + ")");
+		}
+
+		if (this.layerOutputs == null) {
+			this.layerOutputs = new double[this.layers.size()][];
+			for (int i = 0; i < this.layers.size(); i++) {
+				this.layerOutputs[i] = new double[this.layers.get(i).getNodes()
+						.size()];
+			}
+		}
+
+		List<Node> nodes = this.layers.get(layer).getNodes();
+		for (int i = 0; i < localInputs.length; i++) {
+			this.layerOutputs[layer][i] = nodes.get(i).activate(localInputs[i]);
+		}
+
+		/* Continue giving all values to all nodes in the next layer */
+		for (int i = layer + 1; i < this.layers.size(); i++) {
+			nodes = this.layers.get(i).getNodes();
+			for (int j = 0; j < nodes.size(); j++) {
+				this.layerOutputs[i][j] = nodes.get(j).input(
+						this.layerOutputs[i - 1]);
+			}
+		}
+
+		List<Double> outputValues = new ArrayList<Double>();
+		if (this.softmaxOutput) {
+			double[] outputInputs = new double[nodes.size()];
+			for (int i = 0; i < outputInputs.length; i++) {
+				outputInputs[i] = nodes.get(i).getLastLocalInput();
+			}
+			for (double value : MathHelper.softmax(outputInputs)) {
+				outputValues.add(value);
+			}
+		} else {
+			for (double value : this.layerOutputs[this.layers.size() - 1]) {
+				outputValues.add(value);
+			}
+		}
+
+		return outputValues;
+	}
+
+	/**
+	 * Get a number that changes every time the weights of this network are
+	 * changed, used to detect outdated results computed with previous weights
+	 * 
+	 * @return Current version of the weights in this network
+	 */
+	public long getWeightVersion() {
+		return this.weightVersion;
+	}
+
+	/**
+	 * Signal that the weights or biases of nodes in this network have been
+	 * changed
+	 */
+	public void notifyWeightsChanged() {
+		this.weightVersion++;
+	}
+
 	/**
 	 * Specify the variables for error backpropagation in this network
 	 * 
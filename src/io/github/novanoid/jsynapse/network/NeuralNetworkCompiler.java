@@ -0,0 +1,393 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+// Copyright 2014 Novanoid
+
+package io.github.novanoid.jsynapse.network;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.JavaFileObject.Kind;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Turns a trained neural network into a class of its own, in which the sizes
+ * of all layers are constants and the weights are held in static final arrays.
+ * The source of the class is generated, compiled in memory and loaded by a
+ * class loader of its own, so the class can be unloaded once it is no longer
+ * used.
+ * 
+ * @author Novanoid
+ */
+public class NeuralNetworkCompiler {
+	/**
+	 * The package of all generated classes
+	 */
+	private static final String PACKAGE = "io.github.novanoid.jsynapse.network.generated";
+
+	/**
+	 * Amount of products summed up separately in the innermost loop, so they
+	 * do not have to wait for each other
+	 */
+	private static final int UNROLLING = 4;
+
+	private static final AtomicInteger CLASS_NUMBER = new AtomicInteger();
+
+	/**
+	 * Weights and biases waiting to be taken over by their generated class
+	 * when it is initialized
+	 */
+	private static final Map<String, double[][]> PENDING_PARAMETERS =
+			new ConcurrentHashMap<String, double[][]>();
+
+	/**
+	 * Compile a neural network into a class of its own. Later changes to the
+	 * weights of the network do not affect the compiled network.
+	 * 
+	 * @param net
+	 *            Neural network to be compiled, must not have feature layers
+	 * @return An instance of the compiled network, equal to the network up to
+	 *         rounding errors
+	 */
+	public static CompiledNeuralNetwork compile(NeuralNetwork net) {
+		if (!net.getFeatureLayers().isEmpty()) {
+			throw new IllegalArgumentException(
+					"Networks with feature layers can not be compiled.");
+		}
+
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		if (compiler == null) {
+			throw new IllegalStateException("Compiling a network needs a "
+					+ "Java compiler, which this runtime does not provide.");
+		}
+
+		List<Layer> layers = net.getNodeLayers();
+		int[] layerSizes = new int[layers.size()];
+		double[][] parameters = new double[layers.size() * 2][];
+		for (int i = 0; i < layers.size(); i++) {
+			List<Node> nodes = layers.get(i).getNodes();
+			layerSizes[i] = nodes.size();
+
+			int connections = nodes.get(0).getWeights().size();
+			double[] weights = new double[nodes.size() * connections];
+			double[] biases = new double[nodes.size()];
+			for (int j = 0; j < nodes.size(); j++) {
+				List<Weight> nodeWeights = nodes.get(j).getWeights();
+				for (int k = 0; k < connections; k++) {
+					weights[j * connections + k] = nodeWeights.get(k)
+							.getValue();
+				}
+				biases[j] = nodes.get(j).getBias();
+			}
+			parameters[2 * i] = weights;
+			parameters[2 * i + 1] = biases;
+		}
+
+		String simpleName = "CompiledNetwork" + CLASS_NUMBER.incrementAndGet();
+		String className = PACKAGE + "." + simpleName;
+		String source = generateSource(simpleName, layerSizes,
+				net.isSoftmaxOutput());
+
+		byte[] classFile = compileSource(compiler, className, source);
+
+		PENDING_PARAMETERS.put(className, parameters);
+		try {
+			Class<?> compiledClass = new GeneratedClassLoader(
+					NeuralNetworkCompiler.class.getClassLoader()).define(
+					className, classFile);
+			return (CompiledNeuralNetwork) compiledClass.getConstructor()
+					.newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(
+					"Could not load the compiled network.", e);
+		} finally {
+			PENDING_PARAMETERS.remove(className);
+		}
+	}
+
+	/**
+	 * Hand the weights and biases of a network to its generated class. Only
+	 * meant to be called by generated classes while they are initialized.
+	 * 
+	 * @param className
+	 *            Fully qualified name of the generated class
+	 * @return The weights and then the biases of each layer
+	 */
+	public static double[][] takeParameters(String className) {
+		double[][] parameters = PENDING_PARAMETERS.remove(className);
+		if (parameters == null) {
+			throw new IllegalStateException("There are no weights waiting "
+					+ "for the class " + className + ".");
+		}
+
+		return parameters;
+	}
+
+	/**
+	 * Generate the source of a class computing the output of a network
+	 * 
+	 * @param simpleName
+	 *            Name of the class without its package
+	 * @param layerSizes
+	 *            Amount of nodes in each layer
+	 * @param softmaxOutput
+	 *            True, if the output layer uses the softmax function
+	 * @return The source of the class
+	 */
+	static String generateSource(String simpleName, int[] layerSizes,
+			boolean softmaxOutput) {
+		int lastLayer = layerSizes.length - 1;
+		StringBuilder source = new StringBuilder();
+
+		source.append("package ").append(PACKAGE).append(";\n\n");
+		source.append("import io.github.novanoid.jsynapse.math.MathHelper;\n");
+		source.append("import io.github.novanoid.jsynapse.network.CompiledNeuralNetwork;\n");
+		source.append("import io.github.novanoid.jsynapse.network.NeuralNetworkCompiler;\n\n");
+		source.append("public final class ").append(simpleName)
+				.append(" implements CompiledNeuralNetwork {\n");
+
+		/* Weights and biases as static final arrays */
+		source.append("\tprivate static final double[][] PARAMETERS = ")
+				.append("NeuralNetworkCompiler.takeParameters(\"")
+				.append(PACKAGE).append('.').append(simpleName)
+				.append("\");\n");
+		for (int layer = 0; layer <= lastLayer; layer++) {
+			source.append("\tprivate static final double[] W").append(layer)
+					.append(" = PARAMETERS[").append(2 * layer)
+					.append("], B").append(layer).append(" = PARAMETERS[")
+					.append(2 * layer + 1).append("];\n");
+		}
+		source.append('\n');
+
+		/* Values of all layers but the output layer */
+		for (int layer = 0; layer < lastLayer; layer++) {
+			source.append("\tprivate final double[] a").append(layer)
+					.append(" = new double[").append(layerSizes[layer])
+					.append("];\n");
+		}
+		source.append('\n');
+
+		source.append("\tpublic void input(double[] in, double[] out) {\n");
+		source.append("\t\tif (in.length != ").append(layerSizes[0])
+				.append(" || out.length != ").append(layerSizes[lastLayer])
+				.append(") {\n");
+		source.append("\t\t\tthrow new IllegalArgumentException(\"The network ")
+				.append("takes ").append(layerSizes[0])
+				.append(" input values and has ")
+				.append(layerSizes[lastLayer])
+				.append(" output values, yet \" + in.length + \" and \" ")
+				.append("+ out.length + \" were given.\");\n");
+		source.append("\t\t}\n\n");
+		source.append("\t\tfor (int i = 0; i < ").append(layerSizes[0])
+				.append("; i++) {\n");
+		source.append("\t\t\ta0[i] = MathHelper.sigmoid(in[i] * W0[i] + B0[i]);\n");
+		source.append("\t\t}\n");
+		for (int layer = 1; layer <= lastLayer; layer++) {
+			source.append("\t\tlayer").append(layer).append("(a")
+					.append(layer - 1).append(", ")
+					.append(layer == lastLayer ? "out" : "a" + layer)
+					.append(");\n");
+		}
+		if (softmaxOutput) {
+			source.append("\t\tMathHelper.softmax(out, out);\n");
+		}
+		source.append("\t}\n");
+
+		for (int layer = 1; layer <= lastLayer; layer++) {
+			boolean activation = !softmaxOutput || layer < lastLayer;
+			appendLayer(source, layer, layerSizes[layer - 1],
+					layerSizes[layer], activation);
+		}
+
+		source.append("\n\tpublic int getAmountOfInputValues() {\n");
+		source.append("\t\treturn ").append(layerSizes[0]).append(";\n");
+		source.append("\t}\n");
+		source.append("\n\tpublic int getAmountOfNeuralNodesInOutputLayer() {\n");
+		source.append("\t\treturn ").append(layerSizes[lastLayer])
+				.append(";\n");
+		source.append("\t}\n");
+		source.append("\n\tpublic CompiledNeuralNetwork newInstance() {\n");
+		source.append("\t\treturn new ").append(simpleName).append("();\n");
+		source.append("\t}\n");
+		source.append("}\n");
+
+		return source.toString();
+	}
+
+	/**
+	 * Generate the method computing the values of one layer, summing up the
+	 * products of several inputs at once in a loop of constant length
+	 * 
+	 * @param source
+	 *            Source to append the method to
+	 * @param layer
+	 *            Index of the layer
+	 * @param inputs
+	 *            Amount of nodes in the previous layer
+	 * @param nodes
+	 *            Amount of nodes in this layer
+	 * @param activation
+	 *            True, if the sigmoid function should be applied, false to
+	 *            output the local inputs
+	 */
+	private static void appendLayer(StringBuilder source, int layer,
+			int inputs, int nodes, boolean activation) {
+		int unrolledInputs = inputs / UNROLLING * UNROLLING;
+		String weights = "W" + layer;
+
+		source.append("\n\tprivate static void layer").append(layer)
+				.append("(double[] input, double[] output) {\n");
+		source.append("\t\tfor (int j = 0, w = 0; j < ").append(nodes)
+				.append("; j++, w += ").append(inputs).append(") {\n");
+		for (int k = 0; k < UNROLLING; k++) {
+			source.append("\t\t\tdouble s").append(k).append(" = 0.0;\n");
+		}
+		if (unrolledInputs > 0) {
+			source.append("\t\t\tfor (int i = 0; i < ").append(unrolledInputs)
+					.append("; i += ").append(UNROLLING).append(") {\n");
+			for (int k = 0; k < UNROLLING; k++) {
+				source.append("\t\t\t\ts").append(k).append(" += input[i + ")
+						.append(k).append("] * ").append(weights)
+						.append("[w + i + ").append(k).append("];\n");
+			}
+			source.append("\t\t\t}\n");
+		}
+		for (int i = unrolledInputs; i < inputs; i++) {
+			source.append("\t\t\ts").append(i - unrolledInputs)
+					.append(" += input[").append(i).append("] * ")
+					.append(weights).append("[w + ").append(i).append("];\n");
+		}
+
+		String sum = "(s0 + s1) + (s2 + s3) + B" + layer + "[j]";
+		source.append("\t\t\toutput[j] = ")
+				.append(activation ? "MathHelper.sigmoid(" + sum + ")" : sum)
+				.append(";\n");
+		source.append("\t\t}\n");
+		source.append("\t}\n");
+	}
+
+	/**
+	 * Compile the source of a class in memory
+	 * 
+	 * @param compiler
+	 *            Java compiler to use
+	 * @param className
+	 *            Fully qualified name of the class
+	 * @param source
+	 *            Source of the class
+	 * @return The compiled class file
+	 */
+	private static byte[] compileSource(JavaCompiler compiler,
+			String className, final String source) {
+		final Map<String, ByteArrayOutputStream> classFiles =
+				new HashMap<String, ByteArrayOutputStream>();
+		StandardJavaFileManager standardFileManager = compiler
+				.getStandardFileManager(null, null, null);
+		JavaFileManager fileManager =
+				new ForwardingJavaFileManager<StandardJavaFileManager>(
+						standardFileManager) {
+			@Override
+			public JavaFileObject getJavaFileForOutput(Location location,
+					final String name, Kind kind, FileObject sibling) {
+				return new SimpleJavaFileObject(URI.create("bytes:///"
+						+ name.replace('.', '/') + kind.extension), kind) {
+					@Override
+					public OutputStream openOutputStream() {
+						ByteArrayOutputStream classFile =
+								new ByteArrayOutputStream();
+						classFiles.put(name, classFile);
+						return classFile;
+					}
+				};
+			}
+		};
+
+		JavaFileObject sourceFile = new SimpleJavaFileObject(
+				URI.create("string:///" + className.replace('.', '/')
+						+ Kind.SOURCE.extension), Kind.SOURCE) {
+			@Override
+			public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+				return source;
+			}
+		};
+
+		/* The generated class needs the classes of this library */
+		String classPath = System.getProperty("java.class.path");
+		try {
+			classPath += File.pathSeparator
+					+ new File(NeuralNetworkCompiler.class
+							.getProtectionDomain().getCodeSource()
+							.getLocation().toURI()).getPath();
+		} catch (Exception e) {
+			/* The location is unknown, rely on the class path alone */
+		}
+		List<String> options = new ArrayList<String>(Arrays.asList(
+				"-classpath", classPath, "-g:none"));
+
+		DiagnosticCollector<JavaFileObject> diagnostics =
+				new DiagnosticCollector<JavaFileObject>();
+		boolean compiled;
+		try {
+			compiled = compiler.getTask(null, fileManager, diagnostics,
+					options, null, Collections.singletonList(sourceFile))
+					.call();
+		} finally {
+			try {
+				/* Also closes the standard file manager it forwards to */
+				fileManager.close();
+			} catch (IOException e) {
+				/* The class file has been written to memory already */
+			}
+		}
+		if (!compiled || !classFiles.containsKey(className)) {
+			throw new IllegalStateException("Could not compile the network: "
+					+ diagnostics.getDiagnostics());
+		}
+
+		return classFiles.get(className).toByteArray();
+	}
+
+	/**
+	 * Loads a single generated class, which can be unloaded together with its
+	 * class loader
+	 */
+	private static class GeneratedClassLoader extends ClassLoader {
+		private GeneratedClassLoader(ClassLoader parent) {
+			super(parent);
+		}
+
+		private Class<?> define(String name, byte[] classFile) {
+			return this.defineClass(name, classFile, 0, classFile.length);
+		}
+	}
+}
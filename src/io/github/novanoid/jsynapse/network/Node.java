@@ -16,6 +16,7 @@
 package io.github.novanoid.jsynapse.network;
 
 import io.github.novanoid.jsynapse.math.MathHelper;
+import io.github.novanoid.jsynapse.math.RandomStream;
 
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -66,15 +67,27 @@ public class Node implements Serializable {
 	 *            Number of connections from previous nodes
 	 */
 	public Node(int connections) {
+		this(connections, RandomStream.create());
+	}
+
+	/**
+	 * Initiate a new node with random values
+	 * 
+	 * @param connections
+	 *            Number of connections from previous nodes
+	 * @param random
+	 *            Source of the random values
+	 */
+	public Node(int connections, RandomStream random) {
 		this.weights = new ArrayList<Weight>();
 		this.previousWeightDeltas = new ArrayList<Double>();
 
 		for (int i = 0; i < connections; i++) {
-			this.weights.add(new Weight(Math.random() * 6 - 3));
+			this.weights.add(new Weight(random.nextDouble() * 6 - 3));
 			this.previousWeightDeltas.add(0.0);
 		}
 
-		this.bias = Math.random() * 6 - 3;
+		this.bias = random.nextDouble() * 6 - 3;
 		this.bias = 0.0;
 	}
 
@@ -107,6 +120,74 @@ public class Node implements Serializable {
 		return this.lastOutput;
 	}
 
+	/**
+	 * Input a set of values from previous nodes and calculate the output of
+	 * this node using the sigmoid function, without allocating any memory
+	 * 
+	 * @param inputValues
+	 *            Output values of all previous nodes
+	 * @return Output value of this node
+	 */
+	public double input(double[] inputValues) {
+		if (inputValues.length != this.weights.size()) {
+			throw new IllegalArgumentException("The number of input values ("
+					+ inputValues.length
+					+ ") must match the number of connections to this node ("
+					+ this.weights.size() + ")");
+		}
+
+		double sum = 0;
+		for (int i = 0; i < inputValues.length; i++) {
+			sum += inputValues[i] * this.weights.get(i).getValue();
+		}
+
+		sum += this.bias;
+
+		this.lastInput = sum;
+		this.lastOutput = MathHelper.sigmoid(sum);
+
+		return this.lastOutput;
+	}
+
+	/**
+	 * Input a single value and calculate the output of this node using the
+	 * sigmoid function, used by nodes in the input layer
+	 * 
+	 * @param inputValue
+	 *            The input value of this node
+	 * @return Output value of this node
+	 */
+	public double input(double inputValue) {
+		if (this.weights.size() != 1) {
+			throw new IllegalArgumentException("The number of input values (1)"
+					+ " must match the number of connections to this node ("
+					+ this.weights.size() + ")");
+		}
+
+		double sum = inputValue * this.weights.get(0).getValue() + this.bias;
+
+		this.lastInput = sum;
+		this.lastOutput = MathHelper.sigmoid(sum);
+
+		return this.lastOutput;
+	}
+
+	/**
+	 * Use a weighted sum computed earlier as the input of this node, for
+	 * example one taken from a cache, and calculate the output of this node
+	 * using the sigmoid function
+	 * 
+	 * @param sum
+	 *            Weighted sum of the input values plus the bias
+	 * @return Output value of this node
+	 */
+	public double activate(double sum) {
+		this.lastInput = sum;
+		this.lastOutput = MathHelper.sigmoid(sum);
+
+		return this.lastOutput;
+	}
+
 	/**
 	 * Get a list of previously computed weight deltas of the connections to
 	 * this node
@@ -145,6 +226,25 @@ public class Node implements Serializable {
 		return previousBiasDelta;
 	}
 
+	/**
+	 * Get the bias of this node
+	 * 
+	 * @return Bias of this node
+	 */
+	public double getBias() {
+		return this.bias;
+	}
+
+	/**
+	 * Set the bias of this node
+	 * 
+	 * @param bias
+	 *            New bias of this node
+	 */
+	public void setBias(double bias) {
+		this.bias = bias;
+	}
+
 	/**
 	 * Get the value this neural node has last output
 	 * 
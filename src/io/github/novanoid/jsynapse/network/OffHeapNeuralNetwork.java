@@ -0,0 +1,351 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+// Copyright 2014 Novanoid
+
+package io.github.novanoid.jsynapse.network;
+
+import io.github.novanoid.jsynapse.math.MathHelper;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A read only neural network whose weights and biases are stored outside of
+ * the Java heap. The buffer may be a file mapped into memory, in which case
+ * several processes mapping the same file share a single copy of the weights,
+ * or a heap buffer for short lived copies.
+ * 
+ * The buffer starts with a header of little endian integers: a magic number,
+ * the format version, the amount of layers, the amount of nodes in each layer
+ * and, since version 2, a set of flags, padded to a multiple of eight bytes.
+ * For each layer it is followed by the weights of all nodes, node by node, and
+ * then the biases of all nodes as little endian doubles.
+ * 
+ * @author Novanoid
+ */
+public class OffHeapNeuralNetwork {
+	/**
+	 * The magic number every buffer starts with, reads "JSYN"
+	 */
+	private static final int MAGIC_NUMBER = 0x4a53594e;
+	/**
+	 * The version of the buffer layout
+	 */
+	private static final int FORMAT_VERSION = 2;
+	/**
+	 * The flag set if the output layer uses the softmax function
+	 */
+	private static final int SOFTMAX_OUTPUT_FLAG = 1;
+
+	/**
+	 * All weights and biases of this network
+	 */
+	private DoubleBuffer parameters;
+	/**
+	 * The amount of nodes in each layer
+	 */
+	private int[] layerSizes;
+	/**
+	 * Index of the first weight of each layer in the parameters
+	 */
+	private int[] weightOffsets;
+	/**
+	 * Index of the first bias of each layer in the parameters
+	 */
+	private int[] biasOffsets;
+	/**
+	 * True, if the output layer uses the softmax function
+	 */
+	private boolean softmaxOutput;
+
+	/**
+	 * Initialize a network reading its weights directly from a buffer
+	 * 
+	 * @param buffer
+	 *            Buffer containing a network in the layout written by
+	 *            {@link #encode(NeuralNetwork)}
+	 */
+	public OffHeapNeuralNetwork(ByteBuffer buffer) {
+		ByteBuffer data = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		data.position(0);
+
+		if (data.getInt() != MAGIC_NUMBER) {
+			throw new IllegalArgumentException(
+					"The buffer does not contain a neural network.");
+		}
+		int version = data.getInt();
+		if (version < 1 || version > FORMAT_VERSION) {
+			throw new IllegalArgumentException("The format version ("
+					+ version + ") of the buffer is not supported.");
+		}
+
+		this.layerSizes = new int[data.getInt()];
+		for (int i = 0; i < this.layerSizes.length; i++) {
+			this.layerSizes[i] = data.getInt();
+		}
+		if (version >= 2) {
+			this.softmaxOutput = (data.getInt() & SOFTMAX_OUTPUT_FLAG) != 0;
+		}
+		data.position(headerSize(this.layerSizes.length, version));
+
+		this.parameters = data.slice().order(ByteOrder.LITTLE_ENDIAN)
+				.asDoubleBuffer();
+		this.weightOffsets = new int[this.layerSizes.length];
+		this.biasOffsets = new int[this.layerSizes.length];
+
+		int offset = 0;
+		for (int i = 0; i < this.layerSizes.length; i++) {
+			this.weightOffsets[i] = offset;
+			offset += this.layerSizes[i] * this.getConnections(i);
+			this.biasOffsets[i] = offset;
+			offset += this.layerSizes[i];
+		}
+
+		if (offset > this.parameters.limit()) {
+			throw new IllegalArgumentException("The buffer contains "
+					+ this.parameters.limit() + " parameters, yet " + offset
+					+ " are needed for its layers.");
+		}
+	}
+
+	/**
+	 * Copy the weights and biases of a neural network into a new buffer
+	 * outside of the Java heap
+	 * 
+	 * @param net
+	 *            Neural network to be copied
+	 * @return A new network reading from the copied weights
+	 */
+	public static OffHeapNeuralNetwork copyOf(NeuralNetwork net) {
+		return copyOf(net, true);
+	}
+
+	/**
+	 * Copy the weights and biases of a neural network into a new buffer
+	 * 
+	 * @param net
+	 *            Neural network to be copied
+	 * @param direct
+	 *            True to copy them outside of the Java heap, false to copy
+	 *            them into a heap buffer, which is freed like any other object
+	 *            and thus suits short lived copies
+	 * @return A new network reading from the copied weights
+	 */
+	public static OffHeapNeuralNetwork copyOf(NeuralNetwork net,
+			boolean direct) {
+		return new OffHeapNeuralNetwork(encode(net, direct));
+	}
+
+	/**
+	 * Write the weights and biases of a neural network into a new direct
+	 * buffer
+	 * 
+	 * @param net
+	 *            Neural network to be written
+	 * @return A buffer containing the network, ready to be read or written to
+	 *         a file
+	 */
+	public static ByteBuffer encode(NeuralNetwork net) {
+		return encode(net, true);
+	}
+
+	/**
+	 * Write the weights and biases of a neural network into a new buffer
+	 * 
+	 * @param net
+	 *            Neural network to be written
+	 * @param direct
+	 *            True to allocate a direct buffer, false for a heap buffer
+	 * @return A buffer containing the network, ready to be read or written to
+	 *         a file
+	 */
+	private static ByteBuffer encode(NeuralNetwork net, boolean direct) {
+		if (!net.getFeatureLayers().isEmpty()) {
+			throw new IllegalArgumentException(
+					"Networks with feature layers can not be stored off heap.");
+		}
+
+		List<Layer> layers = net.getNodeLayers();
+
+		int parameterCount = 0;
+		for (Layer layer : layers) {
+			for (Node node : layer.getNodes()) {
+				parameterCount += node.getWeights().size() + 1;
+			}
+		}
+
+		int headerSize = headerSize(layers.size(), FORMAT_VERSION);
+		int size = headerSize + parameterCount * 8;
+		ByteBuffer buffer = (direct ? ByteBuffer.allocateDirect(size)
+				: ByteBuffer.allocate(size)).order(ByteOrder.LITTLE_ENDIAN);
+
+		buffer.putInt(MAGIC_NUMBER);
+		buffer.putInt(FORMAT_VERSION);
+		buffer.putInt(layers.size());
+		for (Layer layer : layers) {
+			buffer.putInt(layer.getNodes().size());
+		}
+		buffer.putInt(net.isSoftmaxOutput() ? SOFTMAX_OUTPUT_FLAG : 0);
+		buffer.position(headerSize);
+
+		for (Layer layer : layers) {
+			for (Node node : layer.getNodes()) {
+				for (Weight weight : node.getWeights()) {
+					buffer.putDouble(weight.getValue());
+				}
+			}
+			for (Node node : layer.getNodes()) {
+				buffer.putDouble(node.getBias());
+			}
+		}
+
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Calculate the size of the header in bytes
+	 * 
+	 * @param layerCount
+	 *            Amount of layers in the network
+	 * @param version
+	 *            Format version of the buffer
+	 * @return Size of the header, a multiple of eight
+	 */
+	private static int headerSize(int layerCount, int version) {
+		int integers = 3 + layerCount + (version >= 2 ? 1 : 0);
+		return (integers * 4 + 7) / 8 * 8;
+	}
+
+	/**
+	 * Get the amount of connections each node of a layer has
+	 * 
+	 * @param layer
+	 *            Index of the layer
+	 * @return Amount of connections of each node in the layer
+	 */
+	private int getConnections(int layer) {
+		return layer == 0 ? 1 : this.layerSizes[layer - 1];
+	}
+
+	/**
+	 * Get the amount of neural nodes in the input layer of this network
+	 * 
+	 * @return Amount of neural nodes in the input layer
+	 */
+	public int getAmountOfNeuralNodesInInputLayer() {
+		return this.layerSizes[0];
+	}
+
+	/**
+	 * Get the amount of neural nodes in the output layer of this network
+	 * 
+	 * @return Amount of neural nodes in the output layer
+	 */
+	public int getAmountOfNeuralNodesInOutputLayer() {
+		return this.layerSizes[this.layerSizes.length - 1];
+	}
+
+	/**
+	 * Get the amount of memory the weights and biases of this network take
+	 * 
+	 * @return Size of all parameters in bytes
+	 */
+	public long getSizeInBytes() {
+		return this.parameters.capacity() * 8L;
+	}
+
+	/**
+	 * Feed the neural network a number of input values and calculate the values
+	 * of the output layer. The weights are read directly from the buffer, so
+	 * any number of threads may use this network at the same time.
+	 * 
+	 * @param inputValues
+	 *            Values for the neurons in the input layer, must match their
+	 *            number
+	 * @return Values of the neurons in the output layer
+	 */
+	public double[] input(double[] inputValues) {
+		if (this.layerSizes[0] != inputValues.length) {
+			throw new IllegalArgumentException(
+					"The number of input values ("
+							+ inputValues.length
+							+ ") must match the number of neural nodes in the input layer ("
+							+ this.layerSizes[0] + ")");
+		}
+
+		/* Give values to the input layer */
+		double[] processingInput = new double[this.layerSizes[0]];
+		for (int i = 0; i < processingInput.length; i++) {
+			processingInput[i] = MathHelper.sigmoid(inputValues[i]
+					* this.parameters.get(this.weightOffsets[0] + i)
+					+ this.parameters.get(this.biasOffsets[0] + i));
+		}
+
+		/* Continue giving all values to all nodes in the next layer */
+		for (int layer = 1; layer < this.layerSizes.length; layer++) {
+			double[] processingOutput = new double[this.layerSizes[layer]];
+			int weightIndex = this.weightOffsets[layer];
+			for (int node = 0; node < processingOutput.length; node++) {
+				double sum = 0;
+				for (int i = 0; i < processingInput.length; i++) {
+					sum += processingInput[i]
+							* this.parameters.get(weightIndex++);
+				}
+				sum += this.parameters.get(this.biasOffsets[layer] + node);
+
+				processingOutput[node] = sum;
+			}
+
+			if (!this.softmaxOutput || layer < this.layerSizes.length - 1) {
+				for (int node = 0; node < processingOutput.length; node++) {
+					processingOutput[node] = MathHelper
+							.sigmoid(processingOutput[node]);
+				}
+			} else {
+				processingOutput = MathHelper.softmax(processingOutput);
+			}
+			processingInput = processingOutput;
+		}
+
+		return processingInput;
+	}
+
+	/**
+	 * Feed the neural network a number of input values and calculate the values
+	 * of the output layer
+	 * 
+	 * @param inputValues
+	 *            Values for the neurons in the input layer, must match their
+	 *            number
+	 * @return Values of the neurons in the output layer
+	 */
+	public List<Double> input(List<Double> inputValues) {
+		double[] input = new double[inputValues.size()];
+		for (int i = 0; i < input.length; i++) {
+			input[i] = inputValues.get(i);
+		}
+
+		double[] output = this.input(input);
+		List<Double> outputValues = new ArrayList<Double>(output.length);
+		for (double value : output) {
+			outputValues.add(value);
+		}
+
+		return outputValues;
+	}
+}
@@ -0,0 +1,222 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+// Copyright 2014 Novanoid
+
+package io.github.novanoid.jsynapse.network;
+
+/**
+ * A layer reducing the size of each channel of an image by combining
+ * non-overlapping squares of pixels into one, either by taking their maximum
+ * or their average
+ * 
+ * @author Novanoid
+ */
+public class PoolingLayer implements FeatureLayer {
+	private static final long serialVersionUID = -1527390166813924846L;
+
+	private int channels, inputHeight, inputWidth, poolSize;
+	private int outputHeight, outputWidth;
+	/**
+	 * True for max pooling, false for average pooling
+	 */
+	private boolean max;
+
+	/**
+	 * For max pooling, the index of the input value each output was taken from
+	 */
+	private transient int[] maximumIndices;
+
+	/**
+	 * Initialize a new pooling layer
+	 * 
+	 * @param channels
+	 *            Amount of channels of the input image
+	 * @param inputHeight
+	 *            Height of the input image
+	 * @param inputWidth
+	 *            Width of the input image
+	 * @param poolSize
+	 *            Width and height of the squares to combine
+	 * @param max
+	 *            True to take the maximum of each square, false to take the
+	 *            average
+	 */
+	public PoolingLayer(int channels, int inputHeight, int inputWidth,
+			int poolSize, boolean max) {
+		if (channels < 1) {
+			throw new IllegalArgumentException("The amount of channels ("
+					+ channels + ") must be at least 1.");
+		} else if (poolSize < 1) {
+			throw new IllegalArgumentException("The pool size (" + poolSize
+					+ ") must be at least 1.");
+		} else if (poolSize > inputHeight || poolSize > inputWidth) {
+			throw new IllegalArgumentException("The pool size (" + poolSize
+					+ ") must not exceed the size of the input (" + inputWidth
+					+ "x" + inputHeight + ")");
+		}
+
+		this.channels = channels;
+		this.inputHeight = inputHeight;
+		this.inputWidth = inputWidth;
+		this.poolSize = poolSize;
+		this.max = max;
+		this.outputHeight = inputHeight / poolSize;
+		this.outputWidth = inputWidth / poolSize;
+	}
+
+	/**
+	 * Initialize a new pooling layer after a convolutional layer
+	 * 
+	 * @param previous
+	 *            The convolutional layer whose output is pooled
+	 * @param poolSize
+	 *            Width and height of the squares to combine
+	 * @param max
+	 *            True to take the maximum of each square, false to take the
+	 *            average
+	 */
+	public PoolingLayer(ConvolutionalLayer previous, int poolSize, boolean max) {
+		this(previous.getOutputChannels(), previous.getOutputHeight(),
+				previous.getOutputWidth(), poolSize, max);
+	}
+
+	/**
+	 * Get the amount of output channels
+	 * 
+	 * @return Amount of channels of the output image
+	 */
+	public int getOutputChannels() {
+		return this.channels;
+	}
+
+	/**
+	 * Get the height of the output image
+	 * 
+	 * @return Height of each output channel
+	 */
+	public int getOutputHeight() {
+		return this.outputHeight;
+	}
+
+	/**
+	 * Get the width of the output image
+	 * 
+	 * @return Width of each output channel
+	 */
+	public int getOutputWidth() {
+		return this.outputWidth;
+	}
+
+	@Override
+	public int getInputSize() {
+		return this.channels * this.inputHeight * this.inputWidth;
+	}
+
+	@Override
+	public int getOutputSize() {
+		return this.channels * this.outputHeight * this.outputWidth;
+	}
+
+	@Override
+	public double[] input(double[] input) {
+		if (input.length != this.getInputSize()) {
+			throw new IllegalArgumentException("The number of input values ("
+					+ input.length + ") must match the input size of this "
+					+ "layer (" + this.getInputSize() + ")");
+		}
+
+		double[] output = new double[this.getOutputSize()];
+		if (this.max && this.maximumIndices == null) {
+			this.maximumIndices = new int[output.length];
+		}
+
+		int outputIndex = 0;
+		for (int channel = 0; channel < this.channels; channel++) {
+			for (int y = 0; y < this.outputHeight; y++) {
+				for (int x = 0; x < this.outputWidth; x++) {
+					int maximumIndex = -1;
+					double sum = 0.0;
+					for (int py = 0; py < this.poolSize; py++) {
+						int inputIndex = (channel * this.inputHeight + y
+								* this.poolSize + py)
+								* this.inputWidth + x * this.poolSize;
+						for (int px = 0; px < this.poolSize; px++) {
+							if (maximumIndex == -1
+									|| input[inputIndex] > input[maximumIndex]) {
+								maximumIndex = inputIndex;
+							}
+							sum += input[inputIndex++];
+						}
+					}
+
+					if (this.max) {
+						this.maximumIndices[outputIndex] = maximumIndex;
+						output[outputIndex++] = input[maximumIndex];
+					} else {
+						output[outputIndex++] = sum
+								/ (this.poolSize * this.poolSize);
+					}
+				}
+			}
+		}
+
+		return output;
+	}
+
+	@Override
+	public double[] backpropagate(double[] outputError, double eta,
+			double alpha) {
+		double[] inputError = new double[this.getInputSize()];
+
+		if (this.max) {
+			for (int i = 0; i < outputError.length; i++) {
+				inputError[this.maximumIndices[i]] += outputError[i];
+			}
+			return inputError;
+		}
+
+		double share = 1.0 / (this.poolSize * this.poolSize);
+		int outputIndex = 0;
+		for (int channel = 0; channel < this.channels; channel++) {
+			for (int y = 0; y < this.outputHeight; y++) {
+				for (int x = 0; x < this.outputWidth; x++) {
+					double error = outputError[outputIndex++] * share;
+					for (int py = 0; py < this.poolSize; py++) {
+						int inputIndex = (channel * this.inputHeight + y
+								* this.poolSize + py)
+								* this.inputWidth + x * this.poolSize;
+						for (int px = 0; px < this.poolSize; px++) {
+							inputError[inputIndex++] += error;
+						}
+					}
+				}
+			}
+		}
+
+		return inputError;
+	}
+
+	@Override
+	public int getAmountOfParameters() {
+		return 0;
+	}
+
+	@Override
+	public void getParameters(double[] parameters, int offset) {
+	}
+
+	@Override
+	public void setParameters(double[] parameters, int offset) {
+	}
+}
@@ -47,6 +47,16 @@ public class Weight implements Serializable {
 		return this.value;
 	}
 
+	/**
+	 * Set the value of this weight
+	 * 
+	 * @param value
+	 *            New value for this weight
+	 */
+	public void setValue(double value) {
+		this.value = value;
+	}
+
 	/**
 	 * Add a value to this weight
 	 * 
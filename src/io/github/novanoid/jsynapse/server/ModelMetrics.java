@@ -0,0 +1,130 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+// Copyright 2014 Novanoid
+
+package io.github.novanoid.jsynapse.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts how often a single model of a {@link ModelRegistry} has been used,
+ * loaded and evicted. The counters are kept while the model is evicted and
+ * may be read at any time.
+ * 
+ * @author Novanoid
+ */
+public class ModelMetrics {
+	private AtomicLong hits, loads, failedLoads, loadNanos, evictions;
+
+	/**
+	 * Create new metrics with all counters at zero
+	 */
+	ModelMetrics() {
+		this.hits = new AtomicLong();
+		this.loads = new AtomicLong();
+		this.failedLoads = new AtomicLong();
+		this.loadNanos = new AtomicLong();
+		this.evictions = new AtomicLong();
+	}
+
+	/**
+	 * Count a request served by the model while it was loaded
+	 */
+	void recordHit() {
+		this.hits.incrementAndGet();
+	}
+
+	/**
+	 * Count a load of the model
+	 * 
+	 * @param nanos
+	 *            Nanoseconds the load took
+	 * @param successful
+	 *            True, if the model could be loaded
+	 */
+	void recordLoad(long nanos, boolean successful) {
+		(successful ? this.loads : this.failedLoads).incrementAndGet();
+		this.loadNanos.addAndGet(nanos);
+	}
+
+	/**
+	 * Count an eviction of the model
+	 */
+	void recordEviction() {
+		this.evictions.incrementAndGet();
+	}
+
+	/**
+	 * Get the amount of requests served without loading the model
+	 * 
+	 * @return Amount of requests finding the model loaded
+	 */
+	public long getHits() {
+		return this.hits.get();
+	}
+
+	/**
+	 * Get the amount of times the model has been loaded
+	 * 
+	 * @return Amount of successful loads
+	 */
+	public long getLoads() {
+		return this.loads.get();
+	}
+
+	/**
+	 * Get the amount of times the model could not be loaded
+	 * 
+	 * @return Amount of failed loads
+	 */
+	public long getFailedLoads() {
+		return this.failedLoads.get();
+	}
+
+	/**
+	 * Get the time spent loading the model
+	 * 
+	 * @return Milliseconds of all loads together
+	 */
+	public double getTotalLoadMillis() {
+		return this.loadNanos.get() / 1000000.0;
+	}
+
+	/**
+	 * Get the average time a load of the model took
+	 * 
+	 * @return Milliseconds per load, 0 if the model has never been loaded
+	 */
+	public double getAverageLoadMillis() {
+		long attempts = this.loads.get() + this.failedLoads.get();
+		return attempts == 0 ? 0 : this.getTotalLoadMillis() / attempts;
+	}
+
+	/**
+	 * Get the amount of times the model has been evicted
+	 * 
+	 * @return Amount of evictions
+	 */
+	public long getEvictions() {
+		return this.evictions.get();
+	}
+
+	@Override
+	public String toString() {
+		return this.getHits() + " hits, " + this.getLoads() + " loads ("
+				+ this.getFailedLoads() + " failed, "
+				+ String.format("%.2f", this.getAverageLoadMillis())
+				+ "ms on average), " + this.getEvictions() + " evictions";
+	}
+}
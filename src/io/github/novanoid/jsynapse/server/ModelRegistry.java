@@ -0,0 +1,356 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+// Copyright 2014 Novanoid
+
+package io.github.novanoid.jsynapse.server;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.github.novanoid.jsynapse.file.FileManager;
+import io.github.novanoid.jsynapse.network.NeuralNetwork;
+import io.github.novanoid.jsynapse.network.OffHeapNeuralNetwork;
+
+/**
+ * Keeps many models available by id without keeping all of them loaded. A
+ * model is loaded when it is first requested, and the least recently used
+ * models are evicted as soon as the loaded models take more memory than
+ * allowed. Models are read only, so any number of threads may use them at the
+ * same time.
+ * 
+ * Only requests for a model which is being loaded wait for it, and threads
+ * requesting the same model at the same time share a single load. Requests
+ * for other models never wait for loads or evictions.
+ * 
+ * @author Novanoid
+ */
+public class ModelRegistry {
+	private String directory;
+	private long memoryBudget;
+
+	private ConcurrentHashMap<String, Entry> entries;
+	private ConcurrentHashMap<String, ModelMetrics> metrics;
+	/**
+	 * Memory taken by all loaded models in bytes
+	 */
+	private AtomicLong loadedBytes;
+	/**
+	 * Counts requests, so entries can remember when they were last used
+	 */
+	private AtomicLong clock;
+	private final Object evictionLock = new Object();
+
+	/**
+	 * Create a new registry reading models from a directory. A model with the
+	 * id "a" is mapped from the weights file "a.weights", as written by
+	 * {@link FileManager#saveNetworkWeights(NeuralNetwork, String)}, or
+	 * otherwise deserialized from the network file "a.ser".
+	 * 
+	 * @param directory
+	 *            Directory containing the models
+	 * @param memoryBudget
+	 *            Bytes all loaded models may take together
+	 */
+	public ModelRegistry(String directory, long memoryBudget) {
+		if (memoryBudget < 1) {
+			throw new IllegalArgumentException("The memory budget ("
+					+ memoryBudget + ") must be at least 1 byte.");
+		}
+
+		this.directory = directory;
+		this.memoryBudget = memoryBudget;
+		this.entries = new ConcurrentHashMap<String, Entry>();
+		this.metrics = new ConcurrentHashMap<String, ModelMetrics>();
+		this.loadedBytes = new AtomicLong();
+		this.clock = new AtomicLong();
+	}
+
+	/**
+	 * Load a model, called by the first thread requesting a model that is not
+	 * loaded. Mapping weights files is preferred since it is much faster than
+	 * deserializing a whole network.
+	 * 
+	 * @param id
+	 *            Id of the model
+	 * @return The loaded model or null if it could not be loaded
+	 */
+	protected OffHeapNeuralNetwork loadModel(String id) {
+		File weightsFile = new File(this.directory, id + ".weights");
+		if (weightsFile.exists()) {
+			return FileManager.mapNetworkWeights(weightsFile.getPath());
+		}
+
+		NeuralNetwork net = FileManager.loadNetwork(new File(this.directory,
+				id + ".ser").getPath());
+		return net == null ? null : OffHeapNeuralNetwork.copyOf(net);
+	}
+
+	/**
+	 * Get a model, loading it first if it is not loaded yet
+	 * 
+	 * @param id
+	 *            Id of the model
+	 * @return The model or null if it could not be loaded
+	 */
+	public OffHeapNeuralNetwork getModel(String id) {
+		ModelMetrics modelMetrics = this.getMetrics(id);
+
+		Entry entry = this.entries.get(id);
+		boolean loading = false;
+		if (entry == null) {
+			Entry newEntry = new Entry(id, modelMetrics);
+			entry = this.entries.putIfAbsent(id, newEntry);
+			if (entry == null) {
+				entry = newEntry;
+				loading = true;
+			}
+		}
+
+		if (loading) {
+			entry.task.run();
+		}
+
+		OffHeapNeuralNetwork model;
+		try {
+			model = entry.task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for "
+					+ "the model '" + id + "' to be loaded.", e);
+		} catch (ExecutionException e) {
+			/* Forget the failed load, so the next request tries again */
+			this.entries.remove(id, entry);
+			throw new IllegalStateException("Could not load the model '" + id
+					+ "'.", e.getCause());
+		}
+
+		entry.lastUse = this.clock.incrementAndGet();
+		if (model == null) {
+			this.entries.remove(id, entry);
+			return null;
+		}
+
+		if (loading) {
+			this.loadedBytes.addAndGet(entry.size);
+			this.evict(entry);
+		} else {
+			modelMetrics.recordHit();
+		}
+
+		return model;
+	}
+
+	/**
+	 * Calculate the output of a model
+	 * 
+	 * @param id
+	 *            Id of the model
+	 * @param inputValues
+	 *            Values for the neurons in the input layer
+	 * @return Values of the neurons in the output layer or null if the model
+	 *         could not be loaded
+	 */
+	public double[] predict(String id, double[] inputValues) {
+		OffHeapNeuralNetwork model = this.getModel(id);
+		return model == null ? null : model.input(inputValues);
+	}
+
+	/**
+	 * Evict the least recently used models until the loaded models fit into
+	 * the memory budget
+	 * 
+	 * @param keep
+	 *            Entry of the model that has just been loaded, which is never
+	 *            evicted, even if it does not fit into the budget on its own
+	 */
+	private void evict(Entry keep) {
+		synchronized (this.evictionLock) {
+			while (this.loadedBytes.get() > this.memoryBudget) {
+				Entry leastRecentlyUsed = null;
+				for (Entry entry : this.entries.values()) {
+					if (entry == keep || !entry.isLoaded()) {
+						continue;
+					}
+					if (leastRecentlyUsed == null
+							|| entry.lastUse < leastRecentlyUsed.lastUse) {
+						leastRecentlyUsed = entry;
+					}
+				}
+
+				if (leastRecentlyUsed == null) {
+					return;
+				}
+				this.remove(leastRecentlyUsed);
+			}
+		}
+	}
+
+	/**
+	 * Evict a model, so it is loaded again when it is requested next
+	 * 
+	 * @param id
+	 *            Id of the model
+	 * @return True, if the model was loaded, false otherwise
+	 */
+	public boolean evict(String id) {
+		Entry entry = this.entries.get(id);
+		if (entry == null || !entry.isLoaded()) {
+			return false;
+		}
+
+		synchronized (this.evictionLock) {
+			return this.remove(entry);
+		}
+	}
+
+	/**
+	 * Remove a loaded model from the registry. Threads still using it may
+	 * continue to do so, its memory is freed once they are done.
+	 * 
+	 * @param entry
+	 *            Entry of the model
+	 * @return True, if the entry was still in the registry
+	 */
+	private boolean remove(Entry entry) {
+		if (!this.entries.remove(entry.id, entry)) {
+			return false;
+		}
+
+		this.loadedBytes.addAndGet(-entry.size);
+		entry.metrics.recordEviction();
+		return true;
+	}
+
+	/**
+	 * Get the metrics of a model, which are kept while it is not loaded
+	 * 
+	 * @param id
+	 *            Id of the model
+	 * @return Metrics of the model
+	 */
+	public ModelMetrics getMetrics(String id) {
+		ModelMetrics modelMetrics = this.metrics.get(id);
+		if (modelMetrics == null) {
+			ModelMetrics newMetrics = new ModelMetrics();
+			modelMetrics = this.metrics.putIfAbsent(id, newMetrics);
+			if (modelMetrics == null) {
+				modelMetrics = newMetrics;
+			}
+		}
+
+		return modelMetrics;
+	}
+
+	/**
+	 * Get the metrics of all models requested so far
+	 * 
+	 * @return Metrics by the id of their model
+	 */
+	public Map<String, ModelMetrics> getAllMetrics() {
+		return Collections.unmodifiableMap(this.metrics);
+	}
+
+	/**
+	 * Get the ids of all loaded models
+	 * 
+	 * @return Ids of the models which are currently loaded
+	 */
+	public List<String> getLoadedModels() {
+		List<String> ids = new ArrayList<String>();
+		for (Entry entry : this.entries.values()) {
+			if (entry.isLoaded()) {
+				ids.add(entry.id);
+			}
+		}
+
+		return ids;
+	}
+
+	/**
+	 * Get the memory taken by all loaded models
+	 * 
+	 * @return Estimated size of all loaded models in bytes
+	 */
+	public long getLoadedBytes() {
+		return this.loadedBytes.get();
+	}
+
+	/**
+	 * Get the memory all loaded models may take together
+	 * 
+	 * @return Memory budget in bytes
+	 */
+	public long getMemoryBudget() {
+		return this.memoryBudget;
+	}
+
+	/**
+	 * A model which is loaded or being loaded
+	 */
+	private class Entry {
+		private final String id;
+		private final ModelMetrics metrics;
+		private final FutureTask<OffHeapNeuralNetwork> task;
+		/**
+		 * Estimated memory taken by the model, set once it has been loaded
+		 */
+		private volatile long size;
+		/**
+		 * Value of the clock when the model was last requested
+		 */
+		private volatile long lastUse;
+
+		private Entry(final String id, final ModelMetrics metrics) {
+			this.id = id;
+			this.metrics = metrics;
+			this.task = new FutureTask<OffHeapNeuralNetwork>(
+					new Callable<OffHeapNeuralNetwork>() {
+						@Override
+						public OffHeapNeuralNetwork call() {
+							long start = System.nanoTime();
+							OffHeapNeuralNetwork model = null;
+							try {
+								model = loadModel(id);
+								if (model != null) {
+									size = model.getSizeInBytes();
+								}
+							} finally {
+								/* Loads throwing an exception count as failed */
+								metrics.recordLoad(System.nanoTime() - start,
+										model != null);
+							}
+
+							return model;
+						}
+					});
+		}
+
+		/**
+		 * Check whether the model has been loaded successfully
+		 * 
+		 * @return True, if the model is ready to be used
+		 */
+		private boolean isLoaded() {
+			return this.task.isDone() && this.size > 0;
+		}
+	}
+}
@@ -0,0 +1,458 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+// Copyright 2014 Novanoid
+
+package io.github.novanoid.jsynapse.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import io.github.novanoid.jsynapse.file.FileManager;
+import io.github.novanoid.jsynapse.network.NeuralNetwork;
+
+/**
+ * A lightweight HTTP server answering prediction requests with a loaded neural
+ * network. The served network can be replaced at any time, requests which are
+ * already being processed finish on the network they started with. Requests
+ * are answered by private copies of the served network, so any number of them
+ * can be processed at the same time.
+ * 
+ * Endpoints:
+ * <ul>
+ * <li><code>POST /predict</code> with the input values separated by white
+ * spaces or commas as the request body</li>
+ * <li><code>GET /status</code> to get information about the served network</li>
+ * </ul>
+ * 
+ * @author Novanoid
+ */
+public class PredictionServer {
+	/**
+	 * The network currently used to answer requests, together with its
+	 * version and copies
+	 */
+	private AtomicReference<ServedModel> model;
+
+	private HttpServer httpServer;
+	private ExecutorService executor;
+
+	/**
+	 * Create a new prediction server serving the given network
+	 * 
+	 * @param net
+	 *            Neural network to answer requests with
+	 */
+	public PredictionServer(NeuralNetwork net) {
+		if (net == null) {
+			throw new IllegalArgumentException(
+					"The prediction server needs a neural network to serve.");
+		}
+
+		this.model = new AtomicReference<ServedModel>(new ServedModel(net, 0));
+	}
+
+	/**
+	 * Start listening for requests
+	 * 
+	 * @param address
+	 *            Address and port to listen on, the port may be 0 to pick any
+	 *            free port
+	 * @throws IOException
+	 *             If the server could not be bound to the address
+	 */
+	public synchronized void start(InetSocketAddress address)
+			throws IOException {
+		if (this.httpServer != null) {
+			throw new IllegalStateException(
+					"The prediction server is already running.");
+		}
+
+		this.executor = Executors.newCachedThreadPool(new ThreadFactory() {
+			private AtomicInteger threadNumber = new AtomicInteger(0);
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "prediction-server-"
+						+ this.threadNumber.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		this.httpServer = HttpServer.create(address, 0);
+		this.httpServer.createContext("/predict", new PredictionHandler());
+		this.httpServer.createContext("/status", new StatusHandler());
+		this.httpServer.setExecutor(this.executor);
+		this.httpServer.start();
+	}
+
+	/**
+	 * Stop the server, waiting at most the given amount of seconds for
+	 * requests being processed to finish
+	 * 
+	 * @param delay
+	 *            Maximum seconds to wait for running requests
+	 */
+	public synchronized void stop(int delay) {
+		if (this.httpServer == null) {
+			return;
+		}
+
+		this.httpServer.stop(delay);
+		this.executor.shutdown();
+		try {
+			this.executor.awaitTermination(delay, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		this.httpServer = null;
+		this.executor = null;
+	}
+
+	/**
+	 * Get the port this server is listening on
+	 * 
+	 * @return The port of this server
+	 */
+	public int getPort() {
+		if (this.httpServer == null) {
+			throw new IllegalStateException(
+					"The prediction server is not running.");
+		}
+
+		return this.httpServer.getAddress().getPort();
+	}
+
+	/**
+	 * Load a neural network from a file and serve it instead of the current
+	 * one. Loading happens on the calling thread, requests keep being answered
+	 * by the current network until the new one is ready.
+	 * 
+	 * @param path
+	 *            Path and file name of the saved neural network
+	 * @return True, if the network was replaced, false if the file could not
+	 *         be loaded and the current network is still served
+	 */
+	public boolean reloadModel(String path) {
+		NeuralNetwork net = FileManager.loadNetwork(path);
+		if (net == null) {
+			return false;
+		}
+
+		this.swapModel(net);
+		return true;
+	}
+
+	/**
+	 * Serve the given neural network instead of the current one. The copies
+	 * answering requests are made before the network is published, so later
+	 * changes to the given network are not served.
+	 * 
+	 * @param net
+	 *            New neural network to be served
+	 * @return The neural network that was served before
+	 */
+	public NeuralNetwork swapModel(NeuralNetwork net) {
+		if (net == null) {
+			throw new IllegalArgumentException(
+					"The prediction server needs a neural network to serve.");
+		}
+
+		/* The version is decided on publishing, the copies only once */
+		ServedModel copied = new ServedModel(net, 0);
+		ServedModel previous;
+		do {
+			previous = this.model.get();
+		} while (!this.model.compareAndSet(previous, new ServedModel(copied,
+				previous.version + 1)));
+
+		return previous.net;
+	}
+
+	/**
+	 * Get the neural network currently being served
+	 * 
+	 * @return Currently served neural network
+	 */
+	public NeuralNetwork getModel() {
+		return this.model.get().net;
+	}
+
+	/**
+	 * Get the amount of times the served network has been replaced
+	 * 
+	 * @return Version of the currently served network
+	 */
+	public int getModelVersion() {
+		return this.model.get().version;
+	}
+
+	/**
+	 * Calculate the output of the currently served network
+	 * 
+	 * @param inputValues
+	 *            Values for the neurons in the input layer
+	 * @return Values of the neurons in the output layer
+	 */
+	public List<Double> predict(List<Double> inputValues) {
+		ServedModel served = this.model.get();
+
+		/* Nodes store their last input, so one copy serves one request */
+		NeuralNetwork copy = served.copies.poll();
+		if (copy == null) {
+			copy = FileManager.copy(served.template);
+		}
+		try {
+			return copy.input(inputValues);
+		} finally {
+			served.copies.offer(copy);
+		}
+	}
+
+	/**
+	 * Read the whole body of a request
+	 * 
+	 * @param inputStream
+	 *            Stream of the request body
+	 * @return The request body
+	 * @throws IOException
+	 *             If the request body could not be read
+	 */
+	private static String readBody(InputStream inputStream) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int read;
+		while ((read = inputStream.read(buffer)) != -1) {
+			body.write(buffer, 0, read);
+		}
+		inputStream.close();
+
+		return body.toString("UTF-8");
+	}
+
+	/**
+	 * Send a response and close the exchange
+	 * 
+	 * @param exchange
+	 *            The exchange to respond to
+	 * @param status
+	 *            HTTP status code of the response
+	 * @param contentType
+	 *            Content type of the response
+	 * @param body
+	 *            Body of the response
+	 * @throws IOException
+	 *             If the response could not be sent
+	 */
+	private static void respond(HttpExchange exchange, int status,
+			String contentType, String body) throws IOException {
+		byte[] bytes = body.getBytes("UTF-8");
+		exchange.getResponseHeaders().set("Content-Type",
+				contentType + "; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+
+		OutputStream outputStream = exchange.getResponseBody();
+		outputStream.write(bytes);
+		outputStream.close();
+	}
+
+	/**
+	 * Answers prediction requests
+	 */
+	private class PredictionHandler implements HttpHandler {
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			try {
+				if (!"POST".equals(exchange.getRequestMethod())) {
+					respond(exchange, 405, "text/plain",
+							"Only POST requests are supported.\n");
+					return;
+				}
+
+				List<Double> inputValues = new ArrayList<Double>();
+				try {
+					for (String value : readBody(exchange.getRequestBody())
+							.trim().split("[\\s,]+")) {
+						if (!value.isEmpty()) {
+							inputValues.add(Double.parseDouble(value));
+						}
+					}
+				} catch (NumberFormatException e) {
+					respond(exchange, 400, "text/plain",
+							"The input values could not be parsed: "
+									+ e.getMessage() + "\n");
+					return;
+				}
+
+				List<Double> output;
+				try {
+					output = predict(inputValues);
+				} catch (IllegalArgumentException e) {
+					respond(exchange, 400, "text/plain", e.getMessage() + "\n");
+					return;
+				}
+
+				int indexOfMaximumOutput = 0;
+				StringBuilder outputJson = new StringBuilder();
+				for (int i = 0; i < output.size(); i++) {
+					if (output.get(i) > output.get(indexOfMaximumOutput)) {
+						indexOfMaximumOutput = i;
+					}
+					if (i > 0) {
+						outputJson.append(',');
+					}
+					outputJson.append(output.get(i));
+				}
+
+				respond(exchange, 200, "application/json", "{\"category\":"
+						+ indexOfMaximumOutput + ",\"output\":[" + outputJson
+						+ "]}\n");
+			} finally {
+				exchange.close();
+			}
+		}
+	}
+
+	/**
+	 * Answers requests for information about the served network
+	 */
+	private class StatusHandler implements HttpHandler {
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			try {
+				ServedModel served = model.get();
+				NeuralNetwork net = served.net;
+				respond(exchange, 200, "application/json", "{\"modelVersion\":"
+						+ served.version + ",\"inputValues\":"
+						+ net.getAmountOfInputValues()
+						+ ",\"outputNodes\":"
+						+ net.getAmountOfNeuralNodesInOutputLayer()
+						+ ",\"neuralNodes\":" + net.getAmountOfNeuralNodes()
+						+ "}\n");
+			} finally {
+				exchange.close();
+			}
+		}
+	}
+
+	/**
+	 * A served network together with its version and the copies answering
+	 * requests, replaced as a whole so they always belong together
+	 */
+	private static class ServedModel {
+		/**
+		 * The network as it was handed to the server
+		 */
+		private final NeuralNetwork net;
+		/**
+		 * Amount of times the served network had been replaced before
+		 */
+		private final int version;
+		/**
+		 * Copy of the network taken when it was handed over, never used to
+		 * answer requests and copied whenever all other copies are busy
+		 */
+		private final NeuralNetwork template;
+		/**
+		 * Copies of the network which are not answering a request right now
+		 */
+		private final Queue<NeuralNetwork> copies;
+
+		/**
+		 * Copy a network once for each processor, so requests do not need to
+		 * copy it themselves unless more of them arrive at the same time
+		 * 
+		 * @param net
+		 *            Network to be served
+		 * @param version
+		 *            Version of the network
+		 */
+		private ServedModel(NeuralNetwork net, int version) {
+			this.net = net;
+			this.version = version;
+			this.template = FileManager.copy(net);
+			this.copies = new ConcurrentLinkedQueue<NeuralNetwork>();
+
+			/*
+			 * Run a single input through each copy before publishing it so
+			 * the first requests do not pay for any lazy initialization
+			 */
+			List<Double> warmUpInput = new ArrayList<Double>(
+					Collections.nCopies(net.getAmountOfInputValues(), 0.0));
+			int processors = Runtime.getRuntime().availableProcessors();
+			for (int i = 0; i < processors; i++) {
+				NeuralNetwork copy = FileManager.copy(this.template);
+				copy.input(warmUpInput);
+				this.copies.add(copy);
+			}
+		}
+
+		/**
+		 * Share the network and its copies under a different version
+		 * 
+		 * @param served
+		 *            Served network to take the network and copies from
+		 * @param version
+		 *            Version of the network
+		 */
+		private ServedModel(ServedModel served, int version) {
+			this.net = served.net;
+			this.version = version;
+			this.template = served.template;
+			this.copies = served.copies;
+		}
+	}
+
+	/**
+	 * Serve a saved neural network
+	 * 
+	 * @param args
+	 *            Path of the saved neural network and the port to listen on
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("Usage: PredictionServer <network file> <port>");
+			return;
+		}
+
+		NeuralNetwork net = FileManager.loadNetwork(args[0]);
+		if (net == null) {
+			return;
+		}
+
+		PredictionServer server = new PredictionServer(net);
+		server.start(new InetSocketAddress(Integer.parseInt(args[1])));
+		System.out.println("Serving " + net.getAmountOfNeuralNodes()
+				+ " neural nodes on port " + server.getPort() + "...");
+	}
+}
@@ -0,0 +1,233 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+// Copyright 2014 Novanoid
+
+package io.github.novanoid.jsynapse.training;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.github.novanoid.jsynapse.math.MathHelper;
+import io.github.novanoid.jsynapse.network.Node;
+import io.github.novanoid.jsynapse.network.NeuralNetwork;
+
+/**
+ * Trains a small student network to imitate a large trained teacher network.
+ * Instead of only the desired output of a data set, the student learns a
+ * blend of it and the soft output of the teacher, which also tells it how
+ * similar the wrong answers are to the right one. The teacher network is
+ * never modified.
+ * 
+ * The soft output of the teacher is its output calculated with all weighted
+ * sums divided by a temperature, so higher temperatures give softer outputs.
+ * It is calculated once for each data set, a batch of data sets at a time when
+ * the first of them is needed, and kept for all further iterations.
+ * 
+ * @author Novanoid
+ */
+public class DistillationTraining extends Training {
+	/**
+	 * Amount of data sets the soft outputs of the teacher are calculated for
+	 * at once
+	 */
+	private static final int BATCH_SIZE = 256;
+
+	private NeuralNetwork teacher;
+	private List<TrainingDataSet> dataSets;
+	private double temperature;
+	/**
+	 * Share of the soft output of the teacher in the desired output of the
+	 * student, ranging from 0 to 1
+	 */
+	private double softTargetWeight;
+
+	/**
+	 * The data sets with the blended desired outputs, null for batches whose
+	 * soft outputs have not been calculated yet
+	 */
+	private TrainingDataSet[] blendedDataSets;
+
+	/**
+	 * Create a new distillation training
+	 * 
+	 * @param student
+	 *            Neural network to be trained, must have as many input values
+	 *            and output nodes as the teacher
+	 * @param teacher
+	 *            Trained neural network to be imitated
+	 * @param dataSets
+	 *            Data sets to train with
+	 * @param temperature
+	 *            Value the weighted sums of the output nodes of the teacher
+	 *            are divided by, at least 1
+	 * @param softTargetWeight
+	 *            Share of the soft output of the teacher in the desired output
+	 *            of the student, from 0 for only using the desired outputs of
+	 *            the data sets to 1 for only imitating the teacher
+	 */
+	public DistillationTraining(NeuralNetwork student, NeuralNetwork teacher,
+			List<TrainingDataSet> dataSets, double temperature,
+			double softTargetWeight) {
+		super(student);
+
+		if (student.getAmountOfInputValues() != teacher
+				.getAmountOfInputValues()) {
+			throw new IllegalArgumentException("The student takes "
+					+ student.getAmountOfInputValues()
+					+ " input values, yet the teacher takes "
+					+ teacher.getAmountOfInputValues() + ".");
+		} else if (student.getAmountOfNeuralNodesInOutputLayer() != teacher
+				.getAmountOfNeuralNodesInOutputLayer()) {
+			throw new IllegalArgumentException("The student has "
+					+ student.getAmountOfNeuralNodesInOutputLayer()
+					+ " neural nodes in the output layer, yet the teacher has "
+					+ teacher.getAmountOfNeuralNodesInOutputLayer() + ".");
+		} else if (dataSets.isEmpty()) {
+			throw new IllegalArgumentException(
+					"The training needs at least one data set.");
+		} else if (temperature < 1) {
+			throw new IllegalArgumentException("The temperature ("
+					+ temperature + ") must be at least 1.");
+		} else if (softTargetWeight < 0 || softTargetWeight > 1) {
+			throw new IllegalArgumentException("The soft target weight ("
+					+ softTargetWeight + ") must range from 0 to 1.");
+		}
+
+		this.teacher = teacher;
+		this.dataSets = dataSets;
+		this.temperature = temperature;
+		this.softTargetWeight = softTargetWeight;
+		this.blendedDataSets = new TrainingDataSet[dataSets.size()];
+	}
+
+	@Override
+	protected TrainingDataSet getDataSet(boolean verbose) {
+		int index = this.random.nextInt(this.dataSets.size());
+		if (this.blendedDataSets[index] == null) {
+			this.blendBatch(index / BATCH_SIZE * BATCH_SIZE);
+		}
+
+		return this.blendedDataSets[index];
+	}
+
+	/**
+	 * Get a random data set with its own desired output, so the student is
+	 * tested against the data sets instead of the teacher
+	 */
+	@Override
+	protected TrainingDataSet getTestDataSet(boolean verbose) {
+		return this.dataSets.get(this.random.nextInt(this.dataSets.size()));
+	}
+
+	@Override
+	protected boolean categorizeData(TrainingDataSet dataSet) {
+		List<Double> output = this.net.input(dataSet.getInput());
+
+		int indexOfMaximumOutput = 0;
+		for (int i = 0; i < output.size(); i++) {
+			if (output.get(i).doubleValue() > output.get(indexOfMaximumOutput)
+					.doubleValue()) {
+				indexOfMaximumOutput = i;
+			}
+		}
+
+		int indexOfMaximumDesiredOutput = 0;
+		List<Double> desiredOutput = dataSet.getDesiredOutput();
+		for (int i = 0; i < desiredOutput.size(); i++) {
+			if (desiredOutput.get(i).doubleValue() > desiredOutput.get(
+					indexOfMaximumDesiredOutput).doubleValue()) {
+				indexOfMaximumDesiredOutput = i;
+			}
+		}
+
+		return indexOfMaximumOutput == indexOfMaximumDesiredOutput;
+	}
+
+	/**
+	 * Calculate the soft outputs of the teacher for a batch of data sets and
+	 * blend them with their desired outputs
+	 * 
+	 * @param first
+	 *            Index of the first data set of the batch
+	 */
+	private void blendBatch(int first) {
+		int last = Math.min(first + BATCH_SIZE, this.dataSets.size());
+		int outputs = this.teacher.getAmountOfNeuralNodesInOutputLayer();
+		List<Node> outputNodes = this.teacher.getNodeLayers()
+				.get(this.teacher.getNodeLayers().size() - 1).getNodes();
+
+		double[] input = new double[this.teacher.getAmountOfInputValues()];
+		double[] output = new double[outputs];
+		double[] softOutput = new double[outputs];
+		synchronized (this.teacher) {
+			for (int index = first; index < last; index++) {
+				TrainingDataSet dataSet = this.dataSets.get(index);
+				for (int i = 0; i < input.length; i++) {
+					input[i] = dataSet.getInput().get(i);
+				}
+				this.teacher.input(input, output);
+
+				/* Soften the output using the weighted sums of the nodes */
+				for (int i = 0; i < outputs; i++) {
+					softOutput[i] = outputNodes.get(i).getLastLocalInput()
+							/ this.temperature;
+				}
+				if (this.teacher.isSoftmaxOutput()) {
+					MathHelper.softmax(softOutput, softOutput);
+				} else {
+					for (int i = 0; i < outputs; i++) {
+						softOutput[i] = MathHelper.sigmoid(softOutput[i]);
+					}
+				}
+
+				List<Double> desiredOutput = new ArrayList<Double>(outputs);
+				for (int i = 0; i < outputs; i++) {
+					desiredOutput.add(this.softTargetWeight * softOutput[i]
+							+ (1 - this.softTargetWeight)
+							* dataSet.getDesiredOutput().get(i));
+				}
+				this.blendedDataSets[index] = new TrainingDataSet(
+						dataSet.getInput(), desiredOutput);
+			}
+		}
+	}
+
+	/**
+	 * Get the teacher network
+	 * 
+	 * @return The trained network imitated by the student
+	 */
+	public NeuralNetwork getTeacher() {
+		return this.teacher;
+	}
+
+	/**
+	 * Get the temperature the soft outputs of the teacher are calculated with
+	 * 
+	 * @return Value the weighted sums of the teacher are divided by
+	 */
+	public double getTemperature() {
+		return this.temperature;
+	}
+
+	/**
+	 * Get the share of the soft output of the teacher in the desired output of
+	 * the student
+	 * 
+	 * @return Weight of the soft output, ranging from 0 to 1
+	 */
+	public double getSoftTargetWeight() {
+		return this.softTargetWeight;
+	}
+}
@@ -0,0 +1,188 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+// Copyright 2014 Novanoid
+
+package io.github.novanoid.jsynapse.training;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.github.novanoid.jsynapse.network.Layer;
+import io.github.novanoid.jsynapse.network.NeuralNetwork;
+
+/**
+ * The weighted sums of the last frozen layer of a network for a fixed list of
+ * data sets, computed once so training the layers above does not have to run
+ * the frozen layers again for every iteration. The sums are kept in memory or
+ * in a file mapped into memory, which the operating system may move to disk.
+ * A file is mapped in chunks of whole data sets, so it may exceed the 2 GB a
+ * single mapping can hold.
+ * 
+ * The cache is only valid as long as the weights of the frozen layers do not
+ * change, see {@link Training#freezeLayers(int)}.
+ * 
+ * @author Novanoid
+ */
+public class FrozenActivationCache {
+	/**
+	 * Most bytes mapped into memory at once
+	 */
+	private static final long MAXIMUM_CHUNK_SIZE = Integer.MAX_VALUE;
+
+	private int frozenLayers, width;
+	/**
+	 * The cached sums, a whole number of data sets in each chunk
+	 */
+	private DoubleBuffer[] activations;
+	private int dataSetsPerChunk;
+	private List<List<Double>> desiredOutputs;
+
+	/**
+	 * Run all data sets through the frozen layers of a network and store their
+	 * results
+	 * 
+	 * @param net
+	 *            Neural network to compute the results with
+	 * @param frozenLayers
+	 *            Amount of layers of nodes, starting with the input layer,
+	 *            which are not trained
+	 * @param dataSets
+	 *            Data sets to be cached
+	 * @param spillPath
+	 *            Path and file name of the file to store the results in or
+	 *            null to keep them on the heap
+	 */
+	public FrozenActivationCache(NeuralNetwork net, int frozenLayers,
+			List<TrainingDataSet> dataSets, String spillPath) {
+		List<Layer> layers = net.getNodeLayers();
+		if (frozenLayers < 1 || frozenLayers >= layers.size()) {
+			throw new IllegalArgumentException("The amount of frozen layers ("
+					+ frozenLayers + ") must range from 1 to "
+					+ (layers.size() - 1) + ".");
+		}
+
+		this.frozenLayers = frozenLayers;
+		this.width = layers.get(frozenLayers - 1).getNodes().size();
+
+		long values = (long) dataSets.size() * this.width;
+		if (spillPath == null) {
+			if (values > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("The " + values
+						+ " cached values do not fit into a single array.");
+			}
+			this.dataSetsPerChunk = Math.max(1, dataSets.size());
+			this.activations = new DoubleBuffer[] { DoubleBuffer
+					.wrap(new double[(int) values]) };
+		} else {
+			this.dataSetsPerChunk = (int) Math.max(1, MAXIMUM_CHUNK_SIZE
+					/ (this.width * 8L));
+			int chunks = (dataSets.size() + this.dataSetsPerChunk - 1)
+					/ this.dataSetsPerChunk;
+			this.activations = new DoubleBuffer[chunks];
+
+			try {
+				RandomAccessFile file = new RandomAccessFile(spillPath, "rw");
+				try {
+					file.setLength(values * 8);
+					long chunkSize = this.dataSetsPerChunk * this.width * 8L;
+					for (int i = 0; i < chunks; i++) {
+						long start = i * chunkSize;
+						this.activations[i] = file
+								.getChannel()
+								.map(FileChannel.MapMode.READ_WRITE, start,
+										Math.min(chunkSize, values * 8 - start))
+								.asDoubleBuffer();
+					}
+				} finally {
+					file.close();
+				}
+			} catch (IOException e) {
+				throw new IllegalArgumentException("Could not map the file '"
+						+ spillPath + "' to cache the results in.", e);
+			}
+		}
+
+		this.desiredOutputs = new ArrayList<List<Double>>(dataSets.size());
+		for (int i = 0; i < dataSets.size(); i++) {
+			TrainingDataSet dataSet = dataSets.get(i);
+			net.input(dataSet.getInput());
+			DoubleBuffer chunk = this.activations[i / this.dataSetsPerChunk];
+			int offset = i % this.dataSetsPerChunk * this.width;
+			for (int j = 0; j < this.width; j++) {
+				chunk.put(offset + j, layers.get(frozenLayers - 1).getNodes()
+						.get(j).getLastLocalInput());
+			}
+			this.desiredOutputs.add(dataSet.getDesiredOutput());
+		}
+	}
+
+	/**
+	 * Get the amount of frozen layers the results have been computed for
+	 * 
+	 * @return Amount of frozen layers of nodes
+	 */
+	public int getFrozenLayers() {
+		return this.frozenLayers;
+	}
+
+	/**
+	 * Get the amount of cached data sets
+	 * 
+	 * @return Amount of data sets
+	 */
+	public int size() {
+		return this.desiredOutputs.size();
+	}
+
+	/**
+	 * Get the amount of values cached for each data set
+	 * 
+	 * @return Amount of nodes in the last frozen layer
+	 */
+	public int getWidth() {
+		return this.width;
+	}
+
+	/**
+	 * Get the weighted sums of the nodes in the last frozen layer for a data
+	 * set
+	 * 
+	 * @param index
+	 *            Index of the data set
+	 * @param values
+	 *            Array to store the sums in, must match the width of the cache
+	 */
+	public void getActivations(int index, double[] values) {
+		DoubleBuffer chunk = this.activations[index / this.dataSetsPerChunk];
+		int offset = index % this.dataSetsPerChunk * this.width;
+		for (int j = 0; j < this.width; j++) {
+			values[j] = chunk.get(offset + j);
+		}
+	}
+
+	/**
+	 * Get the desired output of the network for a data set
+	 * 
+	 * @param index
+	 *            Index of the data set
+	 * @return Desired output values
+	 */
+	public List<Double> getDesiredOutput(int index) {
+		return this.desiredOutputs.get(index);
+	}
+}
@@ -0,0 +1,279 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+// Copyright 2014 Novanoid
+
+package io.github.novanoid.jsynapse.training;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.github.novanoid.jsynapse.file.FileManager;
+import io.github.novanoid.jsynapse.network.NeuralNetwork;
+import io.github.novanoid.jsynapse.network.OffHeapNeuralNetwork;
+
+/**
+ * Keeps training a network with samples arriving while it is being used for
+ * predictions. The training works on a private copy of the network and
+ * publishes a read only snapshot of its weights every few steps, so
+ * predictions never wait for the training and always see the weights of a
+ * single step.
+ * 
+ * @author Novanoid
+ */
+public class OnlineTraining extends Training {
+	/**
+	 * Amount of recently trained samples kept for testing
+	 */
+	private static final int RECENT_SAMPLES = 1000;
+
+	private BlockingQueue<TrainingDataSet> samples;
+	/**
+	 * The most recently trained samples, which tests draw from instead of the
+	 * queue, overwritten in a circle
+	 */
+	private TrainingDataSet[] recentSamples = new TrainingDataSet[RECENT_SAMPLES];
+	private long recentSampleCount;
+	/**
+	 * Training iterations between two published snapshots
+	 */
+	private int publicationPeriod;
+
+	/**
+	 * The snapshot predictions are computed with
+	 */
+	private AtomicReference<OffHeapNeuralNetwork> snapshot;
+	private volatile long steps;
+	private volatile long publishedSteps;
+
+	private Thread thread;
+
+	/**
+	 * Create a new online training
+	 * 
+	 * @param net
+	 *            Neural network to start with, which is copied and never
+	 *            modified itself
+	 * @param samples
+	 *            Queue the samples to train with arrive in
+	 * @param publicationPeriod
+	 *            Training iterations between two published snapshots
+	 */
+	public OnlineTraining(NeuralNetwork net,
+			BlockingQueue<TrainingDataSet> samples, int publicationPeriod) {
+		super(FileManager.copy(net));
+
+		if (publicationPeriod < 1) {
+			throw new IllegalArgumentException("The publication period ("
+					+ publicationPeriod + ") must be at least 1.");
+		}
+
+		this.samples = samples;
+		this.publicationPeriod = publicationPeriod;
+		this.snapshot = new AtomicReference<OffHeapNeuralNetwork>(
+				OffHeapNeuralNetwork.copyOf(this.net, false));
+	}
+
+	/**
+	 * Start training in the background with every sample arriving in the
+	 * queue
+	 */
+	public synchronized void start() {
+		if (this.thread != null) {
+			throw new IllegalStateException(
+					"The online training is already running.");
+		}
+
+		this.thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				while (!Thread.currentThread().isInterrupted()) {
+					TrainingDataSet dataSet;
+					try {
+						dataSet = samples.take();
+					} catch (InterruptedException e) {
+						break;
+					}
+
+					remember(dataSet);
+					trainIteration(dataSet.getInput(),
+							dataSet.getDesiredOutput(), false);
+				}
+			}
+		}, "online-training");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	/**
+	 * Stop training in the background and publish the weights of the last
+	 * training iteration
+	 * 
+	 * @throws InterruptedException
+	 *             If the thread was interrupted while waiting for the training
+	 *             to stop
+	 */
+	public synchronized void stop() throws InterruptedException {
+		if (this.thread == null) {
+			return;
+		}
+
+		this.thread.interrupt();
+		this.thread.join();
+		this.thread = null;
+
+		this.publish();
+	}
+
+	@Override
+	protected void trainIteration(List<Double> input,
+			List<Double> desiredOutput, boolean verbose) {
+		super.trainIteration(input, desiredOutput, verbose);
+
+		this.steps++;
+		if (this.steps % this.publicationPeriod == 0) {
+			this.publish();
+		}
+	}
+
+	/**
+	 * Publish a snapshot of the current weights, used by all predictions from
+	 * now on. Must not be called while a training iteration is running.
+	 * Snapshots are kept on the heap, since direct memory of retired snapshots
+	 * would only be freed once their small wrappers happen to be collected.
+	 */
+	private void publish() {
+		this.snapshot.set(OffHeapNeuralNetwork.copyOf(this.net, false));
+		this.publishedSteps = this.steps;
+	}
+
+	/**
+	 * Get the snapshot predictions are currently computed with. It is never
+	 * modified and may be used by several threads at the same time.
+	 * 
+	 * @return The last published snapshot
+	 */
+	public OffHeapNeuralNetwork getSnapshot() {
+		return this.snapshot.get();
+	}
+
+	/**
+	 * Calculate the output of the last published snapshot
+	 * 
+	 * @param inputValues
+	 *            Values for the neurons in the input layer
+	 * @return Values of the neurons in the output layer
+	 */
+	public double[] predict(double[] inputValues) {
+		return this.snapshot.get().input(inputValues);
+	}
+
+	/**
+	 * Calculate the output of the last published snapshot
+	 * 
+	 * @param inputValues
+	 *            Values for the neurons in the input layer
+	 * @return Values of the neurons in the output layer
+	 */
+	public List<Double> predict(List<Double> inputValues) {
+		return this.snapshot.get().input(inputValues);
+	}
+
+	/**
+	 * Get the amount of training iterations performed so far
+	 * 
+	 * @return Amount of training iterations
+	 */
+	public long getStepCount() {
+		return this.steps;
+	}
+
+	/**
+	 * Get the amount of training iterations the last published snapshot has
+	 * been trained with
+	 * 
+	 * @return Amount of training iterations of the snapshot
+	 */
+	public long getPublishedStepCount() {
+		return this.publishedSteps;
+	}
+
+	/**
+	 * Keep a sample which is about to be trained with for testing
+	 * 
+	 * @param dataSet
+	 *            The sample
+	 */
+	private void remember(TrainingDataSet dataSet) {
+		synchronized (this.recentSamples) {
+			this.recentSamples[(int) (this.recentSampleCount % RECENT_SAMPLES)] =
+					dataSet;
+			this.recentSampleCount++;
+		}
+	}
+
+	/**
+	 * Wait for the next sample arriving in the queue
+	 */
+	@Override
+	protected TrainingDataSet getDataSet(boolean verbose) {
+		TrainingDataSet dataSet;
+		try {
+			dataSet = this.samples.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(
+					"Interrupted while waiting for a sample.", e);
+		}
+
+		this.remember(dataSet);
+		return dataSet;
+	}
+
+	/**
+	 * Get a random one of the recently trained samples, so testing neither
+	 * takes samples away from the training nor waits for new ones
+	 */
+	@Override
+	protected TrainingDataSet getTestDataSet(boolean verbose) {
+		synchronized (this.recentSamples) {
+			int amount = (int) Math.min(this.recentSampleCount, RECENT_SAMPLES);
+			if (amount == 0) {
+				throw new IllegalStateException(
+						"No samples have been trained with yet.");
+			}
+
+			return this.recentSamples[this.random.nextInt(amount)];
+		}
+	}
+
+	/**
+	 * Try to categorize a data set using the last published snapshot, so the
+	 * network can be tested while it is being trained
+	 */
+	@Override
+	protected boolean categorizeData(TrainingDataSet dataSet) {
+		List<Double> output = this.predict(dataSet.getInput());
+
+		int indexOfMaximumOutput = 0;
+		for (int i = 0; i < output.size(); i++) {
+			if (output.get(i).doubleValue() > output.get(indexOfMaximumOutput)
+					.doubleValue()) {
+				indexOfMaximumOutput = i;
+			}
+		}
+
+		return dataSet.getDesiredOutput().get(indexOfMaximumOutput) == 1.0;
+	}
+}
@@ -0,0 +1,219 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+// Copyright 2014 Novanoid
+
+package io.github.novanoid.jsynapse.training;
+
+import java.util.Arrays;
+import java.util.List;
+
+import io.github.novanoid.jsynapse.math.RandomStream;
+
+/**
+ * Picks data sets to train with in proportion to their last loss, so data
+ * sets the network already categorizes well are picked less often than hard
+ * ones. Since this changes how often each data set is seen, every data set
+ * comes with an importance weight scaling its learning rate, which corrects
+ * the bias this would otherwise add to the training. The weights are divided
+ * by the largest one, so they never raise the learning rate.
+ * 
+ * The priorities are kept in a sum tree and a minimum tree, so picking a data
+ * set and updating its priority both take logarithmic time. A sampler must only be used by one
+ * thread at a time.
+ * 
+ * @author Novanoid
+ */
+public class PrioritizedSampler {
+	/**
+	 * Added to every loss, so data sets without any loss are still picked now
+	 * and then
+	 */
+	private static final double MINIMUM_LOSS = 0.01;
+
+	private List<TrainingDataSet> dataSets;
+	/**
+	 * How much the priorities follow the losses, from 0 for picking all data
+	 * sets equally often to 1 for picking them in proportion to their loss
+	 */
+	private double exponent;
+	/**
+	 * How much the importance weights correct the bias, from 0 for no
+	 * correction to 1 for a full correction
+	 */
+	private double correction;
+
+	/**
+	 * Amount of leaves in the tree, a power of two
+	 */
+	private int leaves;
+	/**
+	 * The sum of the priorities below each node, the priorities of the data
+	 * sets being the leaves
+	 */
+	private double[] sums;
+	/**
+	 * The lowest priority below each node, infinite for leaves without a data
+	 * set
+	 */
+	private double[] minimums;
+
+	/**
+	 * Create a new sampler, giving all data sets the same priority until they
+	 * have been trained with
+	 * 
+	 * @param dataSets
+	 *            Data sets to pick from
+	 * @param exponent
+	 *            How much the priorities follow the losses, from 0 for picking
+	 *            all data sets equally often to 1 for picking them in
+	 *            proportion to their loss
+	 * @param correction
+	 *            How much the importance weights correct the bias, from 0 for
+	 *            no correction to 1 for a full correction
+	 */
+	public PrioritizedSampler(List<TrainingDataSet> dataSets, double exponent,
+			double correction) {
+		if (dataSets.isEmpty()) {
+			throw new IllegalArgumentException(
+					"The sampler needs at least one data set.");
+		} else if (exponent < 0 || exponent > 1) {
+			throw new IllegalArgumentException("The exponent (" + exponent
+					+ ") must range from 0 to 1.");
+		}
+		this.setCorrection(correction);
+
+		this.dataSets = dataSets;
+		this.exponent = exponent;
+
+		this.leaves = Integer.highestOneBit(dataSets.size());
+		if (this.leaves < dataSets.size()) {
+			this.leaves <<= 1;
+		}
+		this.sums = new double[2 * this.leaves];
+		this.minimums = new double[2 * this.leaves];
+		Arrays.fill(this.minimums, Double.POSITIVE_INFINITY);
+
+		for (int i = 0; i < dataSets.size(); i++) {
+			this.setPriority(i, 1.0);
+		}
+	}
+
+	/**
+	 * Change how much the importance weights correct the bias, for example to
+	 * raise it towards a full correction as the training goes on
+	 * 
+	 * @param correction
+	 *            How much the importance weights correct the bias, from 0 for
+	 *            no correction to 1 for a full correction
+	 */
+	public void setCorrection(double correction) {
+		if (correction < 0 || correction > 1) {
+			throw new IllegalArgumentException("The correction ("
+					+ correction + ") must range from 0 to 1.");
+		}
+
+		this.correction = correction;
+	}
+
+	/**
+	 * Pick a data set in proportion to its priority
+	 * 
+	 * @param random
+	 *            Source of random decisions
+	 * @return Index of the picked data set
+	 */
+	public int sample(RandomStream random) {
+		double value = random.nextDouble() * this.sums[1];
+
+		int node = 1;
+		while (node < this.leaves) {
+			int left = 2 * node;
+			if (value < this.sums[left] || this.sums[left + 1] == 0) {
+				node = left;
+			} else {
+				value -= this.sums[left];
+				node = left + 1;
+			}
+		}
+
+		return Math.min(node - this.leaves, this.dataSets.size() - 1);
+	}
+
+	/**
+	 * Get a data set
+	 * 
+	 * @param index
+	 *            Index of the data set
+	 * @return The data set
+	 */
+	public TrainingDataSet get(int index) {
+		return this.dataSets.get(index);
+	}
+
+	/**
+	 * Get the factor to scale the learning rate with when training with a
+	 * data set, which is smaller the more often it is picked. The data set
+	 * with the lowest priority has a weight of 1, so the learning rate is
+	 * never raised, but lowered for all data sets picked more often.
+	 * 
+	 * @param index
+	 *            Index of the data set
+	 * @return The importance weight of the data set, ranging from 0 to 1
+	 */
+	public double getImportanceWeight(int index) {
+		double priority = this.sums[this.leaves + index];
+		return Math.pow(this.minimums[1] / priority, this.correction);
+	}
+
+	/**
+	 * Update the priority of a data set after training with it
+	 * 
+	 * @param index
+	 *            Index of the data set
+	 * @param loss
+	 *            Error of the network for the data set before training with it
+	 */
+	public void update(int index, double loss) {
+		this.setPriority(index, Math.pow(loss + MINIMUM_LOSS, this.exponent));
+	}
+
+	/**
+	 * Get the amount of data sets to pick from
+	 * 
+	 * @return Amount of data sets
+	 */
+	public int size() {
+		return this.dataSets.size();
+	}
+
+	/**
+	 * Set the priority of a data set and update all sums above it
+	 * 
+	 * @param index
+	 *            Index of the data set
+	 * @param priority
+	 *            New priority of the data set
+	 */
+	private void setPriority(int index, double priority) {
+		int node = this.leaves + index;
+		this.sums[node] = priority;
+		this.minimums[node] = priority;
+
+		for (node /= 2; node >= 1; node /= 2) {
+			this.sums[node] = this.sums[2 * node] + this.sums[2 * node + 1];
+			this.minimums[node] = Math.min(this.minimums[2 * node],
+					this.minimums[2 * node + 1]);
+		}
+	}
+}
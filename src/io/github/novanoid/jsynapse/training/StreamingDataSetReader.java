@@ -0,0 +1,418 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+// Copyright 2014 Novanoid
+
+package io.github.novanoid.jsynapse.training;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.github.novanoid.jsynapse.math.RandomStream;
+
+/**
+ * Reads training data sets from a file of any size in which each line contains
+ * the input values followed by the desired output values, separated by white
+ * spaces. The file is read in chunks and parsed directly from the bytes, data
+ * sets are handed out in random order from a shuffle buffer which is refilled
+ * from the file, starting over at its beginning once all data sets were read.
+ * 
+ * @author Novanoid
+ */
+public class StreamingDataSetReader {
+	/**
+	 * Amount of bytes read from the file at once
+	 */
+	private static final int CHUNK_SIZE = 1 << 20;
+	/**
+	 * Powers of ten which can be represented exactly as doubles
+	 */
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4,
+			1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+			1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	private String path;
+	private int inputCount, outputCount;
+
+	private RandomAccessFile file;
+	private FileChannel channel;
+	private ByteBuffer chunk;
+	/**
+	 * The byte currently being parsed or -1 at the end of the file
+	 */
+	private int currentByte;
+	/**
+	 * Line of the file currently being parsed
+	 */
+	private long line;
+
+	/**
+	 * Data sets from which the next one is picked at random
+	 */
+	private double[][] shuffleBuffer;
+	/**
+	 * Amount of data sets in the shuffle buffer
+	 */
+	private int bufferedDataSets;
+	/**
+	 * True, if all data sets of the file fit into the shuffle buffer
+	 */
+	private boolean fileBuffered;
+	/**
+	 * Amount of data sets in the file or -1 if it is not known yet
+	 */
+	private long dataSetCount = -1;
+	/**
+	 * Amount of data sets read since the file was last started over
+	 */
+	private long dataSetsInPass;
+
+	/**
+	 * Source of the choice of the next data set
+	 */
+	private RandomStream random;
+
+	/**
+	 * Open a file of training data sets
+	 * 
+	 * @param path
+	 *            Path and file name of the training data
+	 * @param inputCount
+	 *            Amount of input values in each data set
+	 * @param outputCount
+	 *            Amount of desired output values in each data set
+	 * @param shuffleBufferSize
+	 *            Amount of data sets to pick the next data set from
+	 * @throws IOException
+	 *             If the file could not be read
+	 */
+	public StreamingDataSetReader(String path, int inputCount,
+			int outputCount, int shuffleBufferSize) throws IOException {
+		if (shuffleBufferSize < 1) {
+			throw new IllegalArgumentException("The size of the shuffle buffer ("
+					+ shuffleBufferSize + ") must be at least 1.");
+		}
+
+		this.path = path;
+		this.random = RandomStream.create();
+		this.inputCount = inputCount;
+		this.outputCount = outputCount;
+
+		this.file = new RandomAccessFile(path, "r");
+		this.channel = this.file.getChannel();
+		this.chunk = ByteBuffer.allocateDirect(CHUNK_SIZE);
+		this.startOver();
+
+		this.shuffleBuffer = new double[shuffleBufferSize][];
+		while (this.bufferedDataSets < shuffleBufferSize) {
+			double[] dataSet = new double[inputCount + outputCount];
+			if (!this.readDataSet(dataSet)) {
+				this.dataSetCount = this.bufferedDataSets;
+				this.fileBuffered = true;
+				break;
+			}
+			this.shuffleBuffer[this.bufferedDataSets++] = dataSet;
+		}
+
+		if (this.bufferedDataSets == 0) {
+			throw new IllegalArgumentException("The file '" + path
+					+ "' does not contain any data sets.");
+		}
+	}
+
+	/**
+	 * Replace the source of the choice of the next data set, making the order
+	 * of the data sets reproducible
+	 * 
+	 * @param random
+	 *            New source of random decisions
+	 */
+	public synchronized void setRandom(RandomStream random) {
+		this.random = random;
+	}
+
+	/**
+	 * Get a random data set from the file
+	 * 
+	 * @return A random training data set
+	 */
+	public synchronized TrainingDataSet next() {
+		int index = this.random.nextInt(this.bufferedDataSets);
+		double[] dataSet = this.shuffleBuffer[index];
+
+		if (!this.fileBuffered) {
+			double[] nextDataSet = new double[this.inputCount
+					+ this.outputCount];
+			try {
+				if (!this.readDataSet(nextDataSet)) {
+					this.dataSetCount = this.dataSetsInPass;
+					this.startOver();
+					this.readDataSet(nextDataSet);
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException("Could not read the file '"
+						+ this.path + "'.", e);
+			}
+			this.shuffleBuffer[index] = nextDataSet;
+		}
+
+		List<Double> input = new ArrayList<Double>(this.inputCount);
+		for (int i = 0; i < this.inputCount; i++) {
+			input.add(dataSet[i]);
+		}
+		List<Double> desiredOutput = new ArrayList<Double>(this.outputCount);
+		for (int i = this.inputCount; i < dataSet.length; i++) {
+			desiredOutput.add(dataSet[i]);
+		}
+
+		return new TrainingDataSet(input, desiredOutput);
+	}
+
+	/**
+	 * Get the amount of data sets in the file, counting the lines of the file
+	 * if it has not been read completely yet
+	 * 
+	 * @return Amount of data sets in the file
+	 */
+	public synchronized long getDataSetCount() {
+		if (this.dataSetCount >= 0) {
+			return this.dataSetCount;
+		}
+
+		try {
+			ByteBuffer countChunk = ByteBuffer.allocateDirect(CHUNK_SIZE);
+			long position = 0, count = 0;
+			boolean emptyLine = true;
+			int read;
+			while ((read = this.channel.read(countChunk, position)) != -1) {
+				position += read;
+				countChunk.flip();
+				while (countChunk.hasRemaining()) {
+					byte character = countChunk.get();
+					if (character == '\n') {
+						count += emptyLine ? 0 : 1;
+						emptyLine = true;
+					} else if (!isWhiteSpace(character)) {
+						emptyLine = false;
+					}
+				}
+				countChunk.clear();
+			}
+			this.dataSetCount = count + (emptyLine ? 0 : 1);
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not read the file '"
+					+ this.path + "'.", e);
+		}
+
+		return this.dataSetCount;
+	}
+
+	/**
+	 * Close the file
+	 */
+	public synchronized void close() {
+		try {
+			this.file.close();
+		} catch (IOException e) {
+			System.err.println("Could not close the file '" + this.path
+					+ "':");
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Start reading the file from its beginning again
+	 * 
+	 * @throws IOException
+	 *             If the file could not be read
+	 */
+	private void startOver() throws IOException {
+		this.channel.position(0);
+		this.chunk.clear();
+		this.chunk.flip();
+		this.line = 1;
+		this.dataSetsInPass = 0;
+		this.nextByte();
+	}
+
+	/**
+	 * Advance to the next byte of the file, reading the next chunk if
+	 * necessary
+	 * 
+	 * @throws IOException
+	 *             If the file could not be read
+	 */
+	private void nextByte() throws IOException {
+		if (!this.chunk.hasRemaining()) {
+			this.chunk.clear();
+			int read;
+			do {
+				read = this.channel.read(this.chunk);
+			} while (read == 0);
+			this.chunk.flip();
+
+			if (read == -1) {
+				this.currentByte = -1;
+				return;
+			}
+		}
+
+		this.currentByte = this.chunk.get() & 0xff;
+	}
+
+	/**
+	 * Check whether a character separates values on a line
+	 * 
+	 * @param character
+	 *            The character to be checked
+	 * @return True, if the character is a white space other than a line break
+	 */
+	private static boolean isWhiteSpace(int character) {
+		return character == ' ' || character == '\t' || character == '\r';
+	}
+
+	/**
+	 * Parse the next data set of the file, skipping empty lines
+	 * 
+	 * @param dataSet
+	 *            Array to store the input values followed by the desired
+	 *            output values in
+	 * @return True, if a data set was read, false at the end of the file
+	 * @throws IOException
+	 *             If the file could not be read
+	 */
+	private boolean readDataSet(double[] dataSet) throws IOException {
+		int values = 0;
+
+		while (true) {
+			if (this.currentByte == -1 || this.currentByte == '\n') {
+				if (values == dataSet.length) {
+					this.dataSetsInPass++;
+					return true;
+				} else if (values != 0) {
+					throw new IllegalArgumentException("Line " + this.line
+							+ " of the file '" + this.path + "' contains "
+							+ values + " values, yet " + dataSet.length
+							+ " are needed.");
+				} else if (this.currentByte == -1) {
+					return false;
+				}
+
+				this.line++;
+				this.nextByte();
+			} else if (isWhiteSpace(this.currentByte)) {
+				this.nextByte();
+			} else if (values < dataSet.length) {
+				dataSet[values++] = this.parseValue();
+			} else {
+				throw new IllegalArgumentException("Line " + this.line
+						+ " of the file '" + this.path
+						+ "' contains more than " + dataSet.length
+						+ " values.");
+			}
+		}
+	}
+
+	/**
+	 * Parse a decimal number starting at the current byte
+	 * 
+	 * @return Value of the number
+	 * @throws IOException
+	 *             If the file could not be read
+	 */
+	private double parseValue() throws IOException {
+		boolean negative = false;
+		if (this.currentByte == '-' || this.currentByte == '+') {
+			negative = this.currentByte == '-';
+			this.nextByte();
+		}
+
+		long mantissa = 0;
+		int digits = 0, exponent = 0;
+		boolean anyDigits = false;
+		while (this.currentByte >= '0' && this.currentByte <= '9') {
+			if (digits < 18) {
+				mantissa = mantissa * 10 + (this.currentByte - '0');
+				digits += mantissa == 0 ? 0 : 1;
+			} else {
+				exponent++;
+			}
+			anyDigits = true;
+			this.nextByte();
+		}
+
+		if (this.currentByte == '.') {
+			this.nextByte();
+			while (this.currentByte >= '0' && this.currentByte <= '9') {
+				if (digits < 18) {
+					mantissa = mantissa * 10 + (this.currentByte - '0');
+					digits += mantissa == 0 ? 0 : 1;
+					exponent--;
+				}
+				anyDigits = true;
+				this.nextByte();
+			}
+		}
+
+		if (anyDigits
+				&& (this.currentByte == 'e' || this.currentByte == 'E')) {
+			this.nextByte();
+			boolean negativeExponent = false;
+			if (this.currentByte == '-' || this.currentByte == '+') {
+				negativeExponent = this.currentByte == '-';
+				this.nextByte();
+			}
+			int explicitExponent = 0;
+			boolean exponentDigits = false;
+			while (this.currentByte >= '0' && this.currentByte <= '9') {
+				if (explicitExponent < 10000) {
+					explicitExponent = explicitExponent * 10
+							+ (this.currentByte - '0');
+				}
+				exponentDigits = true;
+				this.nextByte();
+			}
+			anyDigits = exponentDigits;
+			exponent += negativeExponent ? -explicitExponent
+					: explicitExponent;
+		}
+
+		boolean endOfValue = this.currentByte == -1
+				|| this.currentByte == '\n' || isWhiteSpace(this.currentByte);
+		if (!anyDigits || !endOfValue) {
+			throw new IllegalArgumentException("Line " + this.line
+					+ " of the file '" + this.path
+					+ "' contains a value which is not a number.");
+		}
+
+		double value;
+		if (mantissa == 0) {
+			value = 0.0;
+		} else if (mantissa < (1L << 53) && exponent >= 0
+				&& exponent < POWERS_OF_TEN.length) {
+			/* Both operands are exact, so the result is rounded correctly */
+			value = mantissa * POWERS_OF_TEN[exponent];
+		} else if (mantissa < (1L << 53) && exponent < 0
+				&& -exponent < POWERS_OF_TEN.length) {
+			value = mantissa / POWERS_OF_TEN[-exponent];
+		} else {
+			value = Double.parseDouble(mantissa + "E" + exponent);
+		}
+
+		return negative ? -value : value;
+	}
+}
@@ -20,6 +20,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 import io.github.novanoid.jsynapse.math.MathHelper;
+import io.github.novanoid.jsynapse.math.RandomStream;
+import io.github.novanoid.jsynapse.network.FeatureLayer;
 import io.github.novanoid.jsynapse.network.Layer;
 import io.github.novanoid.jsynapse.network.NeuralNetwork;
 import io.github.novanoid.jsynapse.network.Node;
@@ -31,6 +33,32 @@ import io.github.novanoid.jsynapse.network.Node;
  */
 public abstract class Training {
 	protected NeuralNetwork net;
+	/**
+	 * Source of all random decisions of this training, such as the data sets
+	 * to train with
+	 */
+	protected RandomStream random;
+	/**
+	 * Amount of layers of nodes, starting with the input layer, whose weights
+	 * are not trained
+	 */
+	private int frozenLayers;
+
+	/**
+	 * Picks the data sets to train with by their loss, null to use
+	 * {@link #getDataSet(boolean)} instead
+	 */
+	private PrioritizedSampler sampler;
+	/**
+	 * Factor the learning rate of the current training iteration is scaled
+	 * with
+	 */
+	private double learningRateScale = 1.0;
+	/**
+	 * Error of the network for the data set of the last training iteration,
+	 * before training with it
+	 */
+	private double lastLoss;
 
 	/**
 	 * Initialize a new training object
@@ -40,6 +68,111 @@ public abstract class Training {
 	 */
 	protected Training(NeuralNetwork net) {
 		this.net = net;
+		this.random = RandomStream.create();
+	}
+
+	/**
+	 * Replace the source of random decisions of this training, making its
+	 * choice of data sets reproducible. Trainings running at the same time
+	 * should each get their own stream, for example by splitting one.
+	 * 
+	 * @param random
+	 *            New source of random decisions
+	 */
+	public void setRandom(RandomStream random) {
+		this.random = random;
+	}
+
+	/**
+	 * Stop training the lower layers of the network, for example to fine-tune
+	 * only the top layers of a trained network with new data. The input layer
+	 * is never trained, while feature layers are only trained as long as no
+	 * layer is frozen.
+	 * 
+	 * @param amount
+	 *            Amount of layers of nodes, starting with the input layer, not
+	 *            to be trained, at most all but the output layer
+	 */
+	public void freezeLayers(int amount) {
+		int layers = this.net.getNodeLayers().size();
+		if (amount < 0 || amount >= layers) {
+			throw new IllegalArgumentException("The amount of frozen layers ("
+					+ amount + ") must range from 0 to " + (layers - 1) + ".");
+		}
+
+		this.frozenLayers = amount;
+	}
+
+	/**
+	 * Get the amount of layers whose weights are not trained
+	 * 
+	 * @return Amount of frozen layers of nodes
+	 */
+	public int getFrozenLayers() {
+		return this.frozenLayers;
+	}
+
+	/**
+	 * Pick the data sets to train with by their loss instead of getting them
+	 * from {@link #getDataSet(boolean)}, so the training spends its iterations
+	 * on data sets the network does not categorize well yet
+	 * 
+	 * @param sampler
+	 *            Sampler to pick the data sets with or null to stop using one
+	 */
+	public void setSampler(PrioritizedSampler sampler) {
+		this.sampler = sampler;
+	}
+
+	/**
+	 * Collect a fixed amount of data sets with
+	 * {@link #getTrainingDataSets(int)} and pick the data sets to train with
+	 * out of them by their loss from now on
+	 * 
+	 * @param amount
+	 *            Most data sets to collect
+	 * @param exponent
+	 *            How much the priorities follow the losses, from 0 for picking
+	 *            all data sets equally often to 1 for picking them in
+	 *            proportion to their loss
+	 * @param correction
+	 *            How much the importance weights correct the bias, from 0 for
+	 *            no correction to 1 for a full correction
+	 * @return The new sampler
+	 */
+	public PrioritizedSampler usePrioritizedSampling(int amount,
+			double exponent, double correction) {
+		this.sampler = new PrioritizedSampler(this.getTrainingDataSets(amount),
+				exponent, correction);
+		return this.sampler;
+	}
+
+	/**
+	 * Collect data sets to pick from by their loss. By default they are drawn
+	 * from {@link #getDataSet(boolean)}, so the same data set may be collected
+	 * several times. Trainings with a fixed list of data sets should return
+	 * each of them at most once instead.
+	 * 
+	 * @param amount
+	 *            Most data sets to collect
+	 * @return The collected data sets
+	 */
+	protected List<TrainingDataSet> getTrainingDataSets(int amount) {
+		List<TrainingDataSet> dataSets = new ArrayList<TrainingDataSet>();
+		for (int i = 0; i < amount; i++) {
+			dataSets.add(this.getDataSet(false));
+		}
+
+		return dataSets;
+	}
+
+	/**
+	 * Get the neural network trained by this training
+	 * 
+	 * @return The trained neural network
+	 */
+	public NeuralNetwork getNetwork() {
+		return this.net;
 	}
 
 	/**
@@ -60,6 +193,54 @@ public abstract class Training {
 	 */
 	protected abstract boolean categorizeData(TrainingDataSet dataSet);
 
+	/**
+	 * Get a random data set to test the network with. Unless a training holds
+	 * out data sets which are never trained with, this is any data set.
+	 * 
+	 * @param verbose
+	 *            True, if relevant values should be output, false otherwise
+	 * @return A random test set
+	 */
+	protected TrainingDataSet getTestDataSet(boolean verbose) {
+		return this.getDataSet(verbose);
+	}
+
+	/**
+	 * Get random data sets to test networks with
+	 * 
+	 * @param amount
+	 *            Amount of data sets
+	 * @return A list of random test sets
+	 */
+	public List<TrainingDataSet> getTestDataSets(int amount) {
+		List<TrainingDataSet> dataSets = new ArrayList<TrainingDataSet>();
+		for (int i = 0; i < amount; i++) {
+			dataSets.add(this.getTestDataSet(false));
+		}
+
+		return dataSets;
+	}
+
+	/**
+	 * Try to categorize a data set using another neural network built for the
+	 * same task, for example to compare it with the trained network
+	 * 
+	 * @param net
+	 *            Neural network to categorize the data with
+	 * @param dataSet
+	 *            Data set to be used
+	 * @return True, if the data was correctly classified, false otherwise
+	 */
+	public boolean categorizeData(NeuralNetwork net, TrainingDataSet dataSet) {
+		NeuralNetwork trainedNet = this.net;
+		this.net = net;
+		try {
+			return this.categorizeData(dataSet);
+		} finally {
+			this.net = trainedNet;
+		}
+	}
+
 	/**
 	 * Test the neural network for the specified amount of times with random
 	 * data
@@ -74,7 +255,7 @@ public abstract class Training {
 	public double startTesting(final int iterations, final boolean verbose) {
 		int correctClassifications = 0;
 		for (int i = 0; i < iterations; i++) {
-			TrainingDataSet dataSet = getDataSet(verbose);
+			TrainingDataSet dataSet = getTestDataSet(verbose);
 			if (categorizeData(dataSet)) {
 				correctClassifications++;
 			}
@@ -106,12 +287,89 @@ public abstract class Training {
 				System.out.println("Training iteration #" + i + ":");
 			}
 
+			if (this.sampler != null) {
+				this.trainPrioritizedIteration(verbose);
+				continue;
+			}
+
 			TrainingDataSet dataSet = getDataSet(verbose);
 			trainIteration(dataSet.getInput(), dataSet.getDesiredOutput(),
 					verbose);
 		}
 	}
 
+	/**
+	 * Train with a data set picked by the sampler, scaling the learning rate
+	 * with its importance weight and updating its priority afterwards
+	 * 
+	 * @param verbose
+	 *            True, if relevant values should be output, false otherwise
+	 */
+	private void trainPrioritizedIteration(boolean verbose) {
+		int index = this.sampler.sample(this.random);
+		TrainingDataSet dataSet = this.sampler.get(index);
+
+		this.learningRateScale = this.sampler.getImportanceWeight(index);
+		try {
+			trainIteration(dataSet.getInput(), dataSet.getDesiredOutput(),
+					verbose);
+		} finally {
+			this.learningRateScale = 1.0;
+		}
+
+		this.sampler.update(index, this.lastLoss);
+	}
+
+	/**
+	 * Train the layers above the frozen ones with cached results of the frozen
+	 * layers, so the frozen layers are not run again. Every epoch uses each
+	 * cached data set once, in random order.
+	 * 
+	 * @param cache
+	 *            Results of the frozen layers for the data sets to train with,
+	 *            computed for the current amount of frozen layers
+	 * @param epochs
+	 *            Amount of times to train with all cached data sets
+	 * @param verbose
+	 *            True, if relevant values should be output, false otherwise
+	 */
+	public void startTraining(FrozenActivationCache cache, int epochs,
+			boolean verbose) {
+		if (cache.getFrozenLayers() != this.frozenLayers) {
+			throw new IllegalArgumentException("The cache was computed for "
+					+ cache.getFrozenLayers() + " frozen layers, yet "
+					+ this.frozenLayers + " layers are frozen.");
+		}
+
+		int[] order = new int[cache.size()];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		double[] activations = new double[cache.getWidth()];
+
+		for (int epoch = 0; epoch < epochs; epoch++) {
+			if (verbose) {
+				System.out.println("Training epoch #" + epoch + ":");
+			}
+
+			/* Shuffle the data sets using the Fisher-Yates algorithm */
+			for (int i = order.length - 1; i > 0; i--) {
+				int j = this.random.nextInt(i + 1);
+				int swap = order[i];
+				order[i] = order[j];
+				order[j] = swap;
+			}
+
+			for (int index : order) {
+				cache.getActivations(index, activations);
+				List<Double> actualOutput = this.net.inputFromLayer(
+						this.frozenLayers - 1, activations);
+				this.backpropagate(cache.getDesiredOutput(index),
+						actualOutput, verbose);
+			}
+		}
+	}
+
 	/**
 	 * Train the neural network using the error backpropagation algorithm
 	 * 
@@ -126,32 +384,76 @@ public abstract class Training {
 			List<Double> desiredOutput, boolean verbose) {
 		/* Run the input through the neural net */
 		List<Double> actualOutput = this.net.input(input);
+		this.backpropagate(desiredOutput, actualOutput, verbose);
+	}
 
+	/**
+	 * Update the weights of all layers which are not frozen after the network
+	 * has computed its output for a data set
+	 * 
+	 * @param desiredOutput
+	 *            Desired output values for the last set of input values
+	 * @param actualOutput
+	 *            Output values the network has computed
+	 * @param verbose
+	 *            True, if relevant values should be output, false otherwise
+	 */
+	private void backpropagate(List<Double> desiredOutput,
+			List<Double> actualOutput, boolean verbose) {
 		if (verbose) {
 			this.printOutputInformation(actualOutput, desiredOutput);
 		}
+		this.lastLoss = this.calculateLoss(desiredOutput, actualOutput);
 
 		/* Calculate the gradients */
 		List<Layer> layers = this.net.getNodeLayers();
 		this.calculateGradients(desiredOutput, actualOutput, layers);
+		if (this.frozenLayers == 0 && !this.net.getFeatureLayers().isEmpty()) {
+			this.backpropagateFeatureLayers(layers);
+		}
 
 		/*
 		 * Calculate the deltas using the previously calculated gradients while
 		 * immediately adding momentum and update the neural network accordingly
 		 */
 		calculateDeltas(layers);
+		this.net.notifyWeightsChanged();
+	}
+
+	/**
+	 * Hand the gradients of the input layer back through all feature layers,
+	 * which update their own weights on the way
+	 * 
+	 * @param layers
+	 *            A list containing all layers of neural nodes in this network
+	 */
+	private void backpropagateFeatureLayers(List<Layer> layers) {
+		List<Node> inputNodes = layers.get(0).getNodes();
+		double[] error = new double[inputNodes.size()];
+		for (int i = 0; i < error.length; i++) {
+			Node node = inputNodes.get(i);
+			error[i] = node.getGradient() * node.getWeights().get(0).getValue();
+		}
+
+		List<FeatureLayer> featureLayers = this.net.getFeatureLayers();
+		for (int i = featureLayers.size() - 1; i >= 0; i--) {
+			error = featureLayers.get(i).backpropagate(error,
+					net.ETA * this.learningRateScale, net.ALPHA);
+		}
 	}
 
 	/**
 	 * Calculate the weight and bias deltas using previously calculated
-	 * gradients
+	 * gradients, skipping all frozen layers
 	 * 
 	 * @param layers
 	 *            A list containing all layers of neural nodes in this network
 	 */
 	private void calculateDeltas(List<Layer> layers) {
 		List<Double> weightDeltas = new ArrayList<Double>();
-		for (int layerNumber = layers.size() - 1; layerNumber > 0; layerNumber--) {
+		double eta = net.ETA * this.learningRateScale;
+		int lowestLayer = Math.max(1, this.frozenLayers);
+		for (int layerNumber = layers.size() - 1; layerNumber >= lowestLayer; layerNumber--) {
 			for (int nodeNumber = 0; nodeNumber < layers.get(layerNumber)
 					.getNodes().size(); nodeNumber++) {
 				Node node = layers.get(layerNumber).getNodes().get(nodeNumber);
@@ -160,19 +462,47 @@ public abstract class Training {
 				weightDeltas.clear();
 				for (int weightNumber = 0; weightNumber < node.getWeights()
 						.size(); weightNumber++) {
-					weightDeltas.add(net.ETA * node.getGradient()
+					weightDeltas.add(eta * node.getGradient()
 							* nodesToLeft.get(weightNumber).getLastLocalInput()
 							+ net.ALPHA
 							* node.getPreviousWeightDeltas().get(weightNumber));
 				}
 				node.updateWeights(weightDeltas);
 				/* And afterwards for the bias of this node */
-				node.updateBias(net.ETA * node.getGradient() + net.ALPHA
+				node.updateBias(eta * node.getGradient() + net.ALPHA
 						* node.getPreviousBiasDelta());
 			}
 		}
 	}
 
+	/**
+	 * Calculate the error of the network for a data set, the cross entropy for
+	 * networks using the softmax function and half the squared error otherwise
+	 * 
+	 * @param desiredOutput
+	 *            The optimal output the neural network should produce
+	 * @param actualOutput
+	 *            The computed output of the neural network
+	 * @return The error of the network
+	 */
+	private double calculateLoss(List<Double> desiredOutput,
+			List<Double> actualOutput) {
+		double loss = 0.0;
+		for (int i = 0; i < desiredOutput.size(); i++) {
+			if (this.net.isSoftmaxOutput()) {
+				if (desiredOutput.get(i) > 0) {
+					loss -= desiredOutput.get(i)
+							* Math.log(Math.max(actualOutput.get(i), 1e-12));
+				}
+			} else {
+				double difference = desiredOutput.get(i) - actualOutput.get(i);
+				loss += difference * difference / 2;
+			}
+		}
+
+		return loss;
+	}
+
 	/**
 	 * Calculate the node gradients for this training iteration
 	 * 
@@ -185,17 +515,24 @@ public abstract class Training {
 	 */
 	private void calculateGradients(List<Double> desiredOutput,
 			List<Double> actualOutput, List<Layer> layers) {
-		/* First for neurons in the output layer */
+		/*
+		 * First for neurons in the output layer, the gradient of the cross
+		 * entropy error through the softmax function is simply the difference
+		 */
 		for (int i = 0; i < layers.get(layers.size() - 1).getNodes().size(); i++) {
 			Node node = layers.get(layers.size() - 1).getNodes().get(i);
-			node.setGradient((desiredOutput.get(i) - actualOutput.get(i))
-					* MathHelper.sigmoidDifferential(actualOutput.get(i)));
+			if (this.net.isSoftmaxOutput()) {
+				node.setGradient(desiredOutput.get(i) - actualOutput.get(i));
+			} else {
+				node.setGradient((desiredOutput.get(i) - actualOutput.get(i))
+						* MathHelper.sigmoidDifferential(actualOutput.get(i)));
+			}
 		}
 		/*
 		 * And afterwards for all neurons in the hidden and output layer from
-		 * right to left
+		 * right to left, as far as they are not frozen
 		 */
-		for (int layerNumber = layers.size() - 2; layerNumber >= 0; layerNumber--) {
+		for (int layerNumber = layers.size() - 2; layerNumber >= this.frozenLayers; layerNumber--) {
 			for (int nodeNumber = 0; nodeNumber < layers.get(layerNumber)
 					.getNodes().size(); nodeNumber++) {
 				Node node = layers.get(layerNumber).getNodes().get(nodeNumber);
@@ -226,16 +563,11 @@ public abstract class Training {
 		System.out.println("Desired output: " + desiredOutput);
 		System.out.println("Actual output: " + actualOutput);
 
+		/* Desired outputs between 0 and 1 are used by distillation trainings */
 		double certainty = 0.0;
 		for (int i = 0; i < desiredOutput.size(); i++) {
-			if (desiredOutput.get(i) == 0) {
-				certainty += 1.0 - actualOutput.get(i);
-			} else if (desiredOutput.get(i) == 1) {
-				certainty += actualOutput.get(i);
-			} else {
-				throw new IllegalArgumentException(
-						"Only desired outputs of 0 or 1 are supported.");
-			}
+			certainty += 1.0 - Math.abs(desiredOutput.get(i)
+					- actualOutput.get(i));
 		}
 		certainty /= desiredOutput.size();
 		certainty *= 100;
@@ -0,0 +1,401 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+// Copyright 2014 Novanoid
+
+package io.github.novanoid.jsynapse.training;
+
+import java.text.DecimalFormat;
+import java.util.List;
+
+import io.github.novanoid.jsynapse.file.FileManager;
+import io.github.novanoid.jsynapse.network.NeuralNetwork;
+
+/**
+ * Trains a network in rounds and validates a snapshot of its weights after
+ * every round on a thread of its own, so the training never waits for a
+ * validation. The weights of the most accurate snapshot are kept, and the
+ * training stops once the accuracy has not improved for a number of
+ * validations.
+ * 
+ * Snapshots are validated on a private copy of the network. If the training
+ * finishes a round before the previous snapshot has been validated, only the
+ * newest snapshot is validated next. A data set counts as categorized
+ * correctly if the highest output of the network belongs to its highest
+ * desired output.
+ * 
+ * @author Novanoid
+ */
+public class ValidationMonitor {
+	private Training training;
+	/**
+	 * Inputs of the held out data sets, one array per data set
+	 */
+	private double[][] inputs;
+	/**
+	 * Index of the highest desired output of each held out data set
+	 */
+	private int[] categories;
+	/**
+	 * Validations without a better accuracy after which the training stops
+	 */
+	private int patience;
+
+	/**
+	 * Copy of the network the snapshots are validated with
+	 */
+	private NeuralNetwork validationNet;
+
+	private final Object lock = new Object();
+	/**
+	 * Snapshot waiting to be validated, null if there is none
+	 */
+	private Snapshot pending;
+	private boolean validating;
+	private boolean running;
+	/**
+	 * Exception that stopped the validation, null if there was none
+	 */
+	private RuntimeException failure;
+
+	/**
+	 * Training iterations performed since the monitor was created
+	 */
+	private long iterations;
+	private Snapshot best;
+	private int validations;
+	private int validationsWithoutImprovement;
+
+	/**
+	 * Create a new monitor
+	 * 
+	 * @param training
+	 *            Training of the network, which must not be used by other
+	 *            threads while the monitor trains
+	 * @param validationSets
+	 *            Held out data sets to validate the snapshots with, ideally
+	 *            never trained with
+	 * @param patience
+	 *            Validations without a better accuracy after which the
+	 *            training stops
+	 */
+	public ValidationMonitor(Training training,
+			List<TrainingDataSet> validationSets, int patience) {
+		if (validationSets.isEmpty()) {
+			throw new IllegalArgumentException(
+					"The monitor needs at least one data set to validate with.");
+		} else if (patience < 1) {
+			throw new IllegalArgumentException("The patience (" + patience
+					+ ") must be at least 1.");
+		}
+
+		this.training = training;
+		this.patience = patience;
+		this.validationNet = FileManager.copy(training.getNetwork());
+
+		this.inputs = new double[validationSets.size()][];
+		this.categories = new int[validationSets.size()];
+		for (int i = 0; i < validationSets.size(); i++) {
+			List<Double> input = validationSets.get(i).getInput();
+			this.inputs[i] = new double[input.size()];
+			for (int j = 0; j < input.size(); j++) {
+				this.inputs[i][j] = input.get(j);
+			}
+			this.categories[i] = indexOfMaximum(validationSets.get(i)
+					.getDesiredOutput());
+		}
+	}
+
+	/**
+	 * Train until the accuracy stops improving or a maximum amount of rounds
+	 * has been trained, validating a snapshot after every round. Afterwards
+	 * all snapshots have been validated, and the network keeps the weights of
+	 * its last round until {@link #restoreBest()} is called.
+	 * 
+	 * @param iterationsPerRound
+	 *            Training iterations between two snapshots
+	 * @param maximumRounds
+	 *            Most rounds to train
+	 * @param verbose
+	 *            True, if the accuracy of each snapshot should be output,
+	 *            false otherwise
+	 * @return Amount of training iterations performed by this call
+	 */
+	public long train(int iterationsPerRound, int maximumRounds,
+			final boolean verbose) {
+		if (iterationsPerRound < 1) {
+			throw new IllegalArgumentException("The iterations per round ("
+					+ iterationsPerRound + ") must be at least 1.");
+		}
+
+		synchronized (this.lock) {
+			if (this.running) {
+				throw new IllegalStateException(
+						"The monitor is already training.");
+			}
+			this.running = true;
+			this.failure = null;
+			this.validationsWithoutImprovement = 0;
+		}
+
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				validateSnapshots(verbose);
+			}
+		}, "validation-monitor");
+		thread.setDaemon(true);
+		thread.start();
+
+		NeuralNetwork net = this.training.getNetwork();
+		long iterations = 0;
+		try {
+			for (int round = 0; round < maximumRounds; round++) {
+				this.training.startTraining(iterationsPerRound, false);
+				iterations += iterationsPerRound;
+				this.iterations += iterationsPerRound;
+
+				synchronized (this.lock) {
+					if (this.failure != null) {
+						break;
+					}
+					this.pending = new Snapshot(net.getParameters(),
+							this.iterations);
+					this.lock.notifyAll();
+
+					if (this.validationsWithoutImprovement >= this.patience) {
+						break;
+					}
+				}
+			}
+		} finally {
+			synchronized (this.lock) {
+				while (this.pending != null || this.validating) {
+					try {
+						this.lock.wait();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						break;
+					}
+				}
+				this.running = false;
+				this.pending = null;
+				this.lock.notifyAll();
+			}
+		}
+
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		synchronized (this.lock) {
+			if (this.failure != null) {
+				throw new IllegalStateException("The validation failed.",
+						this.failure);
+			}
+		}
+
+		return iterations;
+	}
+
+	/**
+	 * Validate each snapshot handed over by the training until the training
+	 * has finished
+	 * 
+	 * @param verbose
+	 *            True, if the accuracy of each snapshot should be output,
+	 *            false otherwise
+	 */
+	private void validateSnapshots(boolean verbose) {
+		DecimalFormat decimalFormat = new DecimalFormat("###.##");
+		while (true) {
+			Snapshot snapshot;
+			synchronized (this.lock) {
+				while (this.pending == null && this.running) {
+					try {
+						this.lock.wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				if (this.pending == null) {
+					return;
+				}
+
+				snapshot = this.pending;
+				this.pending = null;
+				this.validating = true;
+			}
+
+			try {
+				snapshot.accuracy = this.validate(snapshot.parameters);
+			} catch (RuntimeException e) {
+				synchronized (this.lock) {
+					this.failure = e;
+					this.pending = null;
+					this.validating = false;
+					this.lock.notifyAll();
+				}
+				return;
+			}
+
+			synchronized (this.lock) {
+				this.validations++;
+				if (this.best == null || snapshot.accuracy > this.best.accuracy) {
+					this.best = snapshot;
+					this.validationsWithoutImprovement = 0;
+				} else {
+					this.validationsWithoutImprovement++;
+				}
+				this.validating = false;
+				this.lock.notifyAll();
+			}
+
+			if (verbose) {
+				System.out.println("Accuracy after " + snapshot.iterations
+						+ " training iterations: "
+						+ decimalFormat.format(snapshot.accuracy * 100) + "%");
+			}
+		}
+	}
+
+	/**
+	 * Calculate the accuracy of a snapshot on the held out data sets
+	 * 
+	 * @param parameters
+	 *            Weights and biases of the snapshot
+	 * @return The accuracy, ranging from 0 to 1
+	 */
+	private double validate(double[] parameters) {
+		this.validationNet.setParameters(parameters);
+
+		double[] output = new double[this.validationNet
+				.getAmountOfNeuralNodesInOutputLayer()];
+		int correct = 0;
+		for (int i = 0; i < this.inputs.length; i++) {
+			this.validationNet.input(this.inputs[i], output);
+
+			int indexOfMaximumOutput = 0;
+			for (int j = 0; j < output.length; j++) {
+				if (output[j] > output[indexOfMaximumOutput]) {
+					indexOfMaximumOutput = j;
+				}
+			}
+			if (indexOfMaximumOutput == this.categories[i]) {
+				correct++;
+			}
+		}
+
+		return (double) correct / this.inputs.length;
+	}
+
+	/**
+	 * Find the highest of some values
+	 * 
+	 * @param values
+	 *            Values to search
+	 * @return Index of the first highest value
+	 */
+	private static int indexOfMaximum(List<Double> values) {
+		int index = 0;
+		for (int i = 0; i < values.size(); i++) {
+			if (values.get(i).doubleValue() > values.get(index).doubleValue()) {
+				index = i;
+			}
+		}
+
+		return index;
+	}
+
+	/**
+	 * Give the network the weights of the most accurate snapshot
+	 * 
+	 * @return True, if a snapshot has been validated, false otherwise
+	 */
+	public boolean restoreBest() {
+		double[] parameters;
+		synchronized (this.lock) {
+			if (this.best == null) {
+				return false;
+			}
+			parameters = this.best.parameters;
+		}
+
+		this.training.getNetwork().setParameters(parameters);
+		return true;
+	}
+
+	/**
+	 * Get the accuracy of the most accurate snapshot
+	 * 
+	 * @return The best accuracy, ranging from 0 to 1, or -1 if no snapshot has
+	 *         been validated
+	 */
+	public double getBestAccuracy() {
+		synchronized (this.lock) {
+			return this.best == null ? -1 : this.best.accuracy;
+		}
+	}
+
+	/**
+	 * Get the amount of training iterations the most accurate snapshot was
+	 * taken after
+	 * 
+	 * @return Training iterations of the best snapshot, counted since the
+	 *         monitor was created, or -1 if no snapshot has been validated
+	 */
+	public long getBestIterations() {
+		synchronized (this.lock) {
+			return this.best == null ? -1 : this.best.iterations;
+		}
+	}
+
+	/**
+	 * Get the weights and biases of the most accurate snapshot
+	 * 
+	 * @return A copy of the parameters of the best snapshot or null if no
+	 *         snapshot has been validated
+	 */
+	public double[] getBestParameters() {
+		synchronized (this.lock) {
+			return this.best == null ? null : this.best.parameters.clone();
+		}
+	}
+
+	/**
+	 * Get the amount of snapshots validated so far
+	 * 
+	 * @return Amount of validations
+	 */
+	public int getValidations() {
+		synchronized (this.lock) {
+			return this.validations;
+		}
+	}
+
+	/**
+	 * The weights of the network after a round of training
+	 */
+	private static class Snapshot {
+		private final double[] parameters;
+		private final long iterations;
+		private double accuracy;
+
+		private Snapshot(double[] parameters, long iterations) {
+			this.parameters = parameters;
+			this.iterations = iterations;
+		}
+	}
+}
@@ -15,17 +15,11 @@
 
 package io.github.novanoid.jsynapse.training.catrecognition;
 
-import java.awt.Graphics;
 import java.awt.image.BufferedImage;
-import java.io.BufferedReader;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
 
-import javax.imageio.ImageIO;
-
+import io.github.novanoid.jsynapse.math.RandomStream;
 import io.github.novanoid.jsynapse.network.NeuralNetwork;
 import io.github.novanoid.jsynapse.training.Training;
 import io.github.novanoid.jsynapse.training.TrainingDataSet;
@@ -36,42 +30,91 @@ import io.github.novanoid.jsynapse.training.TrainingDataSet;
  * @author Novanoid
  */
 public class CatRecognitionTraining extends Training {
-	private int imageSize, randomCounter = 1;
+	private int imageSize;
+	private ThumbnailFetcher fetcher;
 
 	/**
-	 * Create a new cat recognizing training
+	 * Create a new cat recognizing training fetching pictures from reddit
 	 * 
 	 * @param net
-	 *            Neural network to be trained
+	 *            Neural network to be trained, either with a single output or
+	 *            with two outputs for cats and anything else, for example when
+	 *            using the softmax function
 	 * @param imageSize
 	 *            Width and height of the quadratic images to be used
 	 */
 	public CatRecognitionTraining(NeuralNetwork net, int imageSize) {
+		this(net, new ThumbnailFetcher(ThumbnailFetcher.REDDIT_ENDPOINT,
+				imageSize, 8, 16));
+	}
+
+	/**
+	 * Create a new cat recognizing training fetching pictures with a fetcher,
+	 * which is started with the first data set needed if it is not running yet
+	 * 
+	 * @param net
+	 *            Neural network to be trained, either with a single output or
+	 *            with two outputs for cats and anything else, for example when
+	 *            using the softmax function
+	 * @param fetcher
+	 *            Fetcher downloading the pictures to be used
+	 */
+	public CatRecognitionTraining(NeuralNetwork net, ThumbnailFetcher fetcher) {
 		super(net);
-		this.imageSize = imageSize;
-		if (net.getAmountOfNeuralNodesInInputLayer() != Math.pow(imageSize, 2)) {
+		this.imageSize = fetcher.getImageSize();
+		this.fetcher = fetcher;
+		this.fetcher.setRandom(this.random.split());
+		if (net.getAmountOfInputValues() != Math.pow(imageSize, 2)) {
 			throw new IllegalArgumentException(
 					"For the specified image size of " + this.imageSize
-							+ " the neural network must have "
+							+ " the neural network must take "
 							+ Math.round(Math.pow(this.imageSize, 2))
-							+ " neural nodes in the input layer, yet it has "
-							+ net.getAmountOfNeuralNodesInInputLayer() + ".");
+							+ " input values, yet it takes "
+							+ net.getAmountOfInputValues() + ".");
+		} else if (net.getAmountOfNeuralNodesInOutputLayer() > 2) {
+			throw new IllegalArgumentException(
+					"For this task the neural net should have one or two "
+							+ "neural nodes in the output layer, yet it has "
+							+ net.getAmountOfNeuralNodesInOutputLayer() + ".");
 		}
 	}
 
+	@Override
+	public void setRandom(RandomStream random) {
+		super.setRandom(random);
+		this.fetcher.setRandom(random.split());
+	}
+
 	@Override
 	public TrainingDataSet getDataSet(boolean verbose) {
 		boolean cat = false;
 		List<Double> desiredOutput = new ArrayList<Double>();
 
-		if (Math.random() < 0.5) {
+		if (this.random.nextBoolean()) {
 			cat = true;
 			desiredOutput.add(1.0);
 		} else {
 			desiredOutput.add(0.0);
 		}
 
-		BufferedImage image = this.downloadThumbnail(cat, false);
+		/* Networks with two outputs have a second one for anything else */
+		if (this.net.getAmountOfNeuralNodesInOutputLayer() == 2) {
+			desiredOutput.add(1.0 - desiredOutput.get(0));
+		}
+
+		BufferedImage image;
+		synchronized (this.fetcher) {
+			if (!this.fetcher.isRunning()) {
+				this.fetcher.start();
+			}
+		}
+		try {
+			image = this.fetcher.take(cat);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(
+					"Interrupted while waiting for a picture.", e);
+		}
 		List<Double> pixelArray = new ArrayList<Double>();
 
 		for (int y = 0; y < this.imageSize; y++) {
@@ -84,86 +127,15 @@ public class CatRecognitionTraining extends Training {
 		return new TrainingDataSet(pixelArray, desiredOutput);
 	}
 
-	/**
-	 * Download a thumbnail picture from reddit
-	 * 
-	 * @param cat
-	 *            Downloads a cat picture if true and a random picture otherwise
-	 * @param verbose
-	 *            True, if relevant values should be output, false otherwise
-	 */
-	private BufferedImage downloadThumbnail(boolean cat, boolean verbose) {
-		URL websiteUrl = null;
-		InputStream inputStream = null;
-		BufferedReader bufferedReader;
-		String line = "", urlString = "", urlThumbnail = "";
-
-		BufferedImage grayScaleImage = null;
-
-		try {
-			while (!line.contains("thumbs.redditmedia.com")) {
-				/*
-				 * Workaround for network caching occuring while connecting to
-				 * reddit returning the same random post for a minute
-				 */
-				this.randomCounter = (int) (Math.random() * 100000);
-
-				if (cat) {
-					urlString = "http://www.reddit.com/r/cats/random/.json?limit="
-							+ randomCounter;
-				} else {
-					urlString = "http://www.reddit.com/r/pics/random/.json?limit="
-							+ randomCounter;
-				}
-
-				websiteUrl = new URL(urlString);
-				try {
-					inputStream = websiteUrl.openStream();
-					bufferedReader = new BufferedReader(new InputStreamReader(
-							inputStream));
-					line = bufferedReader.readLine();
-				} catch (Exception e) {
-					System.err
-							.println("Could not download thumbnail, skipping...");
-					line = "";
-				}
-			}
-
-			/* Download the thumbnail as a buffered image */
-			urlThumbnail = line.substring(line.indexOf("\"thumbnail\":") + 14,
-					line.indexOf("subreddit_id") - 4);
-			BufferedImage image = null;
-			if (verbose) {
-				System.out.println("Downloading " + urlThumbnail + "...");
-			}
-			image = ImageIO.read(new URL(urlThumbnail));
-
-			/* Scale the image */
-			BufferedImage scaledImage = new BufferedImage(this.imageSize,
-					this.imageSize, BufferedImage.TYPE_INT_RGB);
-			Graphics scaledGraphics = scaledImage.createGraphics();
-			scaledGraphics.drawImage(image, 0, 0, this.imageSize,
-					this.imageSize, null);
-			scaledGraphics.dispose();
-
-			/* Convert the image to gray scale colors */
-			grayScaleImage = new BufferedImage(this.imageSize, this.imageSize,
-					BufferedImage.TYPE_BYTE_GRAY);
-			Graphics grayGraphics = grayScaleImage.getGraphics();
-			grayGraphics.drawImage(scaledImage, 0, 0, null);
-			grayGraphics.dispose();
-		} catch (Exception e) {
-			System.err.println("Could not download an image:");
-			e.printStackTrace();
-		}
-
-		return grayScaleImage;
-	}
-
 	@Override
 	public boolean categorizeData(TrainingDataSet dataSet) {
 		List<Double> output = this.net.input(dataSet.getInput());
 
+		if (output.size() == 2) {
+			boolean catRecognized = output.get(0) >= output.get(1);
+			return catRecognized == (dataSet.getDesiredOutput().get(0) == 1.0);
+		}
+
 		if (dataSet.getDesiredOutput().get(0) == 1.0) {
 			if (output.get(0) >= 0.5) {
 				return true;
@@ -0,0 +1,435 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+// Copyright 2014 Novanoid
+
+package io.github.novanoid.jsynapse.training.catrecognition;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import io.github.novanoid.jsynapse.math.RandomStream;
+
+/**
+ * Downloads random thumbnails of cats and other pictures in the background,
+ * so they are ready when a training needs them. Several requests are kept in
+ * flight at the same time, each by a thread of its own, so the amount of
+ * pictures fetched is limited by the bandwidth rather than by the time each
+ * request takes to be answered. Connections to the same server are kept alive
+ * and reused between requests.
+ * 
+ * Listings are requested from {@code <endpoint>/r/cats/random/.json} and
+ * {@code <endpoint>/r/pics/random/.json}, so a local server answering with
+ * listings and pictures of its own can be used instead of reddit.
+ * 
+ * @author Novanoid
+ */
+public class ThumbnailFetcher {
+	public static final String REDDIT_ENDPOINT = "http://www.reddit.com";
+	/**
+	 * Milliseconds to wait for room in a full buffer before checking whether
+	 * the other kind of pictures is needed instead
+	 */
+	private static final long OFFER_TIMEOUT = 100;
+	/**
+	 * Longest pause after listings without a picture
+	 */
+	private static final long MAXIMUM_BACKOFF = 30000;
+
+	private String endpoint;
+	private int imageSize, requestsInFlight;
+	private volatile int timeout = 10000, maximumAttempts = 5;
+	private volatile long initialBackoff = 500;
+
+	private BlockingQueue<BufferedImage> cats, others;
+	private RandomStream random = RandomStream.create();
+	private Thread[] threads;
+
+	/**
+	 * Create a new fetcher which still has to be started
+	 * 
+	 * @param endpoint
+	 *            Address of the server to fetch listings from, for example
+	 *            {@link #REDDIT_ENDPOINT}
+	 * @param imageSize
+	 *            Width and height the quadratic pictures are scaled to
+	 * @param requestsInFlight
+	 *            Amount of requests running at the same time
+	 * @param bufferSize
+	 *            Amount of pictures of each kind kept ready
+	 */
+	public ThumbnailFetcher(String endpoint, int imageSize,
+			int requestsInFlight, int bufferSize) {
+		if (imageSize < 1) {
+			throw new IllegalArgumentException("The image size (" + imageSize
+					+ ") must be at least 1.");
+		} else if (requestsInFlight < 1) {
+			throw new IllegalArgumentException("The amount of requests ("
+					+ requestsInFlight + ") must be at least 1.");
+		} else if (bufferSize < 1) {
+			throw new IllegalArgumentException("The buffer size ("
+					+ bufferSize + ") must be at least 1.");
+		}
+
+		this.endpoint = endpoint.endsWith("/") ? endpoint.substring(0,
+				endpoint.length() - 1) : endpoint;
+		this.imageSize = imageSize;
+		this.requestsInFlight = requestsInFlight;
+		this.cats = new ArrayBlockingQueue<BufferedImage>(bufferSize);
+		this.others = new ArrayBlockingQueue<BufferedImage>(bufferSize);
+	}
+
+	/**
+	 * Specify how long to wait for connections and responses
+	 * 
+	 * @param timeout
+	 *            Milliseconds to wait for a connection and for data to arrive
+	 */
+	public void setTimeout(int timeout) {
+		if (timeout < 1) {
+			throw new IllegalArgumentException("The timeout (" + timeout
+					+ ") must be at least 1 millisecond.");
+		}
+
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Specify how failed requests are retried. The time waited before another
+	 * attempt doubles with every failed attempt.
+	 * 
+	 * @param maximumAttempts
+	 *            Attempts to make before a request is given up
+	 * @param initialBackoff
+	 *            Milliseconds to wait after the first failed attempt
+	 */
+	public void setRetries(int maximumAttempts, long initialBackoff) {
+		if (maximumAttempts < 1) {
+			throw new IllegalArgumentException("The amount of attempts ("
+					+ maximumAttempts + ") must be at least 1.");
+		} else if (initialBackoff < 0) {
+			throw new IllegalArgumentException("The backoff ("
+					+ initialBackoff + ") must not be negative.");
+		}
+
+		this.maximumAttempts = maximumAttempts;
+		this.initialBackoff = initialBackoff;
+	}
+
+	/**
+	 * Use another source of random decisions for the requests of threads
+	 * started from now on
+	 * 
+	 * @param random
+	 *            New source of random decisions
+	 */
+	public synchronized void setRandom(RandomStream random) {
+		this.random = random;
+	}
+
+	/**
+	 * Start fetching pictures in the background
+	 */
+	public synchronized void start() {
+		if (this.threads != null) {
+			throw new IllegalStateException("The fetcher is already running.");
+		}
+
+		this.threads = new Thread[this.requestsInFlight];
+		for (int i = 0; i < this.threads.length; i++) {
+			final RandomStream threadRandom = this.random.split();
+			this.threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					fetch(threadRandom);
+				}
+			}, "thumbnail-fetcher-" + i);
+			this.threads[i].setDaemon(true);
+			this.threads[i].start();
+		}
+	}
+
+	/**
+	 * Stop fetching pictures, dropping all requests still in flight
+	 * 
+	 * @throws InterruptedException
+	 *             If the thread was interrupted while waiting for the fetching
+	 *             threads
+	 */
+	public synchronized void stop() throws InterruptedException {
+		if (this.threads == null) {
+			return;
+		}
+
+		for (Thread thread : this.threads) {
+			thread.interrupt();
+		}
+		for (Thread thread : this.threads) {
+			thread.join();
+		}
+		this.threads = null;
+	}
+
+	/**
+	 * Get the size of the fetched pictures
+	 * 
+	 * @return Width and height of the quadratic pictures
+	 */
+	public int getImageSize() {
+		return this.imageSize;
+	}
+
+	/**
+	 * Check whether the fetcher has been started
+	 * 
+	 * @return True, if pictures are being fetched in the background
+	 */
+	public synchronized boolean isRunning() {
+		return this.threads != null;
+	}
+
+	/**
+	 * Take the next fetched picture, waiting until one is available
+	 * 
+	 * @param cat
+	 *            Takes a cat picture if true and a random picture otherwise
+	 * @return A gray scale picture of the configured size
+	 * @throws InterruptedException
+	 *             If the thread was interrupted while waiting for a picture
+	 */
+	public BufferedImage take(boolean cat) throws InterruptedException {
+		return cat ? this.cats.take() : this.others.take();
+	}
+
+	/**
+	 * Keep fetching pictures of whichever kind fewer are ready of until the
+	 * thread is interrupted. A picture is dropped if its buffer stays full
+	 * while the other buffer has room.
+	 * 
+	 * @param random
+	 *            Source of random decisions of this thread
+	 */
+	private void fetch(RandomStream random) {
+		long backoff = this.initialBackoff;
+		while (!Thread.currentThread().isInterrupted()) {
+			boolean cat = this.cats.size() <= this.others.size();
+
+			try {
+				BufferedImage image = this.fetchThumbnail(cat, random);
+				if (image == null) {
+					/* Do not hammer the server with listings lacking pictures */
+					Thread.sleep(backoff);
+					backoff = Math.min(Math.max(1, backoff * 2),
+							MAXIMUM_BACKOFF);
+					continue;
+				}
+				backoff = this.initialBackoff;
+
+				/*
+				 * Never block on a full buffer while the other one has room,
+				 * otherwise all threads could wait for one kind while the
+				 * training waits for the other
+				 */
+				BlockingQueue<BufferedImage> buffer = cat ? this.cats
+						: this.others;
+				BlockingQueue<BufferedImage> otherBuffer = cat ? this.others
+						: this.cats;
+				boolean offered;
+				do {
+					offered = buffer.offer(image, OFFER_TIMEOUT,
+							TimeUnit.MILLISECONDS);
+				} while (!offered && otherBuffer.remainingCapacity() == 0);
+			} catch (InterruptedException e) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Fetch a random listing and the thumbnail it links to
+	 * 
+	 * @param cat
+	 *            Fetches a cat picture if true and a random picture otherwise
+	 * @param random
+	 *            Source of random decisions of this thread
+	 * @return The scaled gray scale thumbnail or null if the listing has none
+	 *         or a request failed too often
+	 * @throws InterruptedException
+	 *             If the thread was interrupted while waiting to retry
+	 */
+	private BufferedImage fetchThumbnail(boolean cat, RandomStream random)
+			throws InterruptedException {
+		/*
+		 * Workaround for network caching occuring while connecting to reddit
+		 * returning the same random post for a minute
+		 */
+		String listingUrl = this.endpoint + "/r/" + (cat ? "cats" : "pics")
+				+ "/random/.json?limit=" + random.nextInt(100000);
+
+		byte[] listing = this.download(listingUrl);
+		if (listing == null) {
+			return null;
+		}
+
+		String thumbnailUrl = getThumbnailUrl(new String(listing,
+				StandardCharsets.UTF_8));
+		if (thumbnailUrl == null) {
+			return null;
+		}
+
+		byte[] thumbnail = this.download(thumbnailUrl);
+		if (thumbnail == null) {
+			return null;
+		}
+
+		BufferedImage image;
+		try {
+			image = ImageIO.read(new ByteArrayInputStream(thumbnail));
+		} catch (IOException e) {
+			image = null;
+		}
+		if (image == null) {
+			System.err.println("Could not read the picture " + thumbnailUrl
+					+ ", skipping...");
+			return null;
+		}
+
+		/* Scale the image */
+		BufferedImage scaledImage = new BufferedImage(this.imageSize,
+				this.imageSize, BufferedImage.TYPE_INT_RGB);
+		Graphics scaledGraphics = scaledImage.createGraphics();
+		scaledGraphics.drawImage(image, 0, 0, this.imageSize, this.imageSize,
+				null);
+		scaledGraphics.dispose();
+
+		/* Convert the image to gray scale colors */
+		BufferedImage grayScaleImage = new BufferedImage(this.imageSize,
+				this.imageSize, BufferedImage.TYPE_BYTE_GRAY);
+		Graphics grayGraphics = grayScaleImage.getGraphics();
+		grayGraphics.drawImage(scaledImage, 0, 0, null);
+		grayGraphics.dispose();
+
+		return grayScaleImage;
+	}
+
+	/**
+	 * Find the address of the thumbnail in a listing
+	 * 
+	 * @param listing
+	 *            Listing in JSON format
+	 * @return The address of the thumbnail or null if there is none
+	 */
+	private static String getThumbnailUrl(String listing) {
+		int key = listing.indexOf("\"thumbnail\":");
+		if (key == -1) {
+			return null;
+		}
+
+		int start = listing.indexOf('"', key + 12);
+		int end = start == -1 ? -1 : listing.indexOf('"', start + 1);
+		if (end == -1) {
+			return null;
+		}
+
+		/* Posts without a picture have values like "self" or "default" */
+		String url = listing.substring(start + 1, end).replace("\\/", "/");
+		return url.startsWith("http") ? url : null;
+	}
+
+	/**
+	 * Download the content of an address, retrying with growing pauses if the
+	 * request fails
+	 * 
+	 * @param url
+	 *            Address to download
+	 * @return The downloaded content or null if every attempt failed
+	 * @throws InterruptedException
+	 *             If the thread was interrupted while waiting to retry
+	 */
+	private byte[] download(String url) throws InterruptedException {
+		long backoff = this.initialBackoff;
+		for (int attempt = 1;; attempt++) {
+			try {
+				return readResponse(url, this.timeout);
+			} catch (IOException e) {
+				if (attempt >= this.maximumAttempts) {
+					System.err.println("Could not download " + url + " after "
+							+ attempt + " attempts, skipping...");
+					return null;
+				}
+			}
+
+			Thread.sleep(backoff);
+			backoff *= 2;
+		}
+	}
+
+	/**
+	 * Request an address once and read the whole response
+	 * 
+	 * @param url
+	 *            Address to request
+	 * @param timeout
+	 *            Milliseconds to wait for a connection and for data to arrive
+	 * @return The content of the response
+	 * @throws IOException
+	 *             If the request failed or was not answered successfully
+	 */
+	private static byte[] readResponse(String url, int timeout)
+			throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(url)
+				.openConnection();
+		connection.setConnectTimeout(timeout);
+		connection.setReadTimeout(timeout);
+
+		int status = connection.getResponseCode();
+		InputStream inputStream = status < 400 ? connection.getInputStream()
+				: connection.getErrorStream();
+
+		/*
+		 * Reading the whole response, even of a failed request, allows the
+		 * connection to be kept alive and reused for the next request
+		 */
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		if (inputStream != null) {
+			try {
+				byte[] buffer = new byte[8192];
+				int read;
+				while ((read = inputStream.read(buffer)) != -1) {
+					content.write(buffer, 0, read);
+				}
+			} finally {
+				inputStream.close();
+			}
+		}
+
+		if (status != HttpURLConnection.HTTP_OK) {
+			throw new IOException("The request of " + url
+					+ " was answered with status " + status + ".");
+		}
+
+		return content.toByteArray();
+	}
+}
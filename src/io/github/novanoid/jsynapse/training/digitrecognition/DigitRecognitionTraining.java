@@ -16,15 +16,19 @@
 package io.github.novanoid.jsynapse.training.digitrecognition;
 
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URL;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
+import io.github.novanoid.jsynapse.math.RandomStream;
 import io.github.novanoid.jsynapse.network.NeuralNetwork;
+import io.github.novanoid.jsynapse.training.StreamingDataSetReader;
 import io.github.novanoid.jsynapse.training.Training;
 import io.github.novanoid.jsynapse.training.TrainingDataSet;
 
@@ -36,6 +40,16 @@ import io.github.novanoid.jsynapse.training.TrainingDataSet;
  */
 public class DigitRecognitionTraining extends Training {
 	private List<DigitRecognitionDataSet> dataSets;
+	/**
+	 * Data sets which are only used for testing, empty unless data sets have
+	 * been held out
+	 */
+	private List<DigitRecognitionDataSet> testDataSets;
+	private StreamingDataSetReader dataSetReader;
+	/**
+	 * The amount of data sets in the downloaded Semeion data set, used to
+	 * display the download progress
+	 */
 	private final int NUMBER_OF_DATA_SETS = 1593;
 
 	/**
@@ -48,34 +62,218 @@ public class DigitRecognitionTraining extends Training {
 	 */
 	public DigitRecognitionTraining(NeuralNetwork net) {
 		super(net);
-		if (net.getAmountOfNeuralNodesInInputLayer() != 256) {
+		this.checkNetwork(net);
+
+		System.out.println("Downloading and parsing the training data...");
+		this.dataSets = new ArrayList<DigitRecognitionDataSet>();
+		this.testDataSets = new ArrayList<DigitRecognitionDataSet>();
+		this.downloadTrainingSet();
+	}
+
+	/**
+	 * Create a new digit recognizing training reading its data sets from a
+	 * local file in the format of the Semeion data set, which may be larger
+	 * than the available memory
+	 * 
+	 * @param net
+	 *            Neural network to be trained
+	 * @param path
+	 *            Path and file name of the training data
+	 * @param shuffleBufferSize
+	 *            Amount of data sets kept in memory to pick random data sets
+	 *            from
+	 */
+	public DigitRecognitionTraining(NeuralNetwork net, String path,
+			int shuffleBufferSize) {
+		super(net);
+		this.checkNetwork(net);
+
+		/* Data sets read from a file are never held out */
+		this.dataSets = new ArrayList<DigitRecognitionDataSet>();
+		this.testDataSets = new ArrayList<DigitRecognitionDataSet>();
+		try {
+			this.dataSetReader = new StreamingDataSetReader(path, 256, 10,
+					shuffleBufferSize);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Could not read the training "
+					+ "data from the file '" + path + "'.", e);
+		}
+	}
+
+	/**
+	 * Create a new digit recognizing training using the downloaded data sets
+	 * of another training, so several networks can be trained at the same
+	 * time without downloading the data again. The data sets are only read,
+	 * never modified.
+	 * 
+	 * @param net
+	 *            Neural network to be trained
+	 * @param dataSource
+	 *            Training whose data sets are used
+	 */
+	public DigitRecognitionTraining(NeuralNetwork net,
+			DigitRecognitionTraining dataSource) {
+		super(net);
+		this.checkNetwork(net);
+
+		if (dataSource.dataSetReader != null) {
+			throw new IllegalArgumentException("Data sets read from a file "
+					+ "can not be shared between trainings.");
+		}
+
+		this.dataSets = dataSource.dataSets;
+		this.testDataSets = dataSource.testDataSets;
+	}
+
+	/**
+	 * Make sure a neural network can be used for this task
+	 * 
+	 * @param net
+	 *            Neural network to be trained
+	 */
+	private void checkNetwork(NeuralNetwork net) {
+		if (net.getAmountOfInputValues() != 256) {
 			throw new IllegalArgumentException(
 					"For the specified image size of 16x16px the "
-							+ "neural network must have 256 neural nodes "
-							+ "in the input layer, yet it has "
-							+ net.getAmountOfNeuralNodesInInputLayer() + ".");
+							+ "neural network must take 256 input values, "
+							+ "yet it takes " + net.getAmountOfInputValues()
+							+ ".");
 		} else if (net.getAmountOfNeuralNodesInOutputLayer() != 10) {
 			throw new IllegalArgumentException(
 					"For this task the neural net should have 10 neural "
 							+ "nodes in the output layer, yet it has "
 							+ net.getAmountOfNeuralNodesInOutputLayer() + ".");
 		}
+	}
+
+	/**
+	 * Move a share of the downloaded data sets aside, so they are only used
+	 * for testing and never for training. The held out data sets are spread
+	 * evenly over all data sets, so all digits and writers are represented.
+	 * 
+	 * @param share
+	 *            Share of the data sets to hold out, between 0 and 1
+	 */
+	public void holdOutDataSets(double share) {
+		if (this.dataSetReader != null) {
+			throw new IllegalStateException("Only data sets of the downloaded "
+					+ "data set can be held out.");
+		} else if (share <= 0 || share >= 1) {
+			throw new IllegalArgumentException("The share of held out data "
+					+ "sets (" + share + ") must be between 0 and 1.");
+		}
+
+		/* New lists are created, as they may be shared with other trainings */
+		List<DigitRecognitionDataSet> allDataSets =
+				new ArrayList<DigitRecognitionDataSet>(this.dataSets);
+		allDataSets.addAll(this.testDataSets);
 
-		System.out.println("Downloading and parsing the training data...");
 		this.dataSets = new ArrayList<DigitRecognitionDataSet>();
-		this.downloadTrainingSet();
+		this.testDataSets = new ArrayList<DigitRecognitionDataSet>();
+		for (int i = 0; i < allDataSets.size(); i++) {
+			/* Hold out a data set whenever the held out share passes a whole one */
+			if ((int) ((i + 1) * share) > (int) (i * share)) {
+				this.testDataSets.add(allDataSets.get(i));
+			} else {
+				this.dataSets.add(allDataSets.get(i));
+			}
+		}
+	}
+
+	@Override
+	public void setRandom(RandomStream random) {
+		super.setRandom(random);
+		if (this.dataSetReader != null) {
+			this.dataSetReader.setRandom(random.split());
+		}
 	}
 
 	@Override
 	public TrainingDataSet getDataSet(boolean verbose) {
-		int randomSetNumber = (int) (Math.random() * this.NUMBER_OF_DATA_SETS);
+		if (this.dataSetReader != null) {
+			return this.dataSetReader.next();
+		}
+
+		return this.getRandomDataSet(this.dataSets);
+	}
+
+	@Override
+	protected TrainingDataSet getTestDataSet(boolean verbose) {
+		if (this.dataSetReader != null || this.testDataSets.isEmpty()) {
+			return this.getDataSet(verbose);
+		}
+
+		return this.getRandomDataSet(this.testDataSets);
+	}
+
+	/**
+	 * Get all data sets held out by {@link #holdOutDataSets(double)}, each
+	 * exactly once
+	 * 
+	 * @return The held out data sets, empty if none have been held out
+	 */
+	public List<TrainingDataSet> getHeldOutDataSets() {
+		List<TrainingDataSet> heldOutDataSets = new ArrayList<TrainingDataSet>(
+				this.testDataSets.size());
+		for (DigitRecognitionDataSet dataSet : this.testDataSets) {
+			heldOutDataSets.add(toTrainingDataSet(dataSet));
+		}
+
+		return heldOutDataSets;
+	}
+
+	/**
+	 * Collect distinct downloaded data sets which are not held out, picking a
+	 * random selection if there are more than requested. Data sets read from
+	 * a file are drawn from the file instead.
+	 */
+	@Override
+	protected List<TrainingDataSet> getTrainingDataSets(int amount) {
+		if (this.dataSetReader != null) {
+			return super.getTrainingDataSets(amount);
+		}
+
+		/* Shuffle the first data sets into place using Fisher-Yates */
+		List<DigitRecognitionDataSet> shuffled =
+				new ArrayList<DigitRecognitionDataSet>(this.dataSets);
+		int count = Math.min(amount, shuffled.size());
+		List<TrainingDataSet> trainingDataSets = new ArrayList<TrainingDataSet>(
+				count);
+		for (int i = 0; i < count; i++) {
+			Collections.swap(shuffled, i,
+					i + this.random.nextInt(shuffled.size() - i));
+			trainingDataSets.add(toTrainingDataSet(shuffled.get(i)));
+		}
 
-		List<Double> input = Arrays.asList(this.dataSets.get(randomSetNumber)
-				.getImageData());
-		List<Double> desiredOutput = Arrays.asList(this.dataSets.get(
-				randomSetNumber).getNumber());
+		return trainingDataSets;
+	}
+
+	/**
+	 * Convert a downloaded data set
+	 * 
+	 * @param dataSet
+	 *            The downloaded data set
+	 * @return A training set with the image data as input and the number as
+	 *         desired output
+	 */
+	private static TrainingDataSet toTrainingDataSet(
+			DigitRecognitionDataSet dataSet) {
+		return new TrainingDataSet(Arrays.asList(dataSet.getImageData()),
+				Arrays.asList(dataSet.getNumber()));
+	}
+
+	/**
+	 * Pick a random data set
+	 * 
+	 * @param dataSets
+	 *            Data sets to pick from
+	 * @return A random data set of the list
+	 */
+	private TrainingDataSet getRandomDataSet(
+			List<DigitRecognitionDataSet> dataSets) {
+		int randomSetNumber = this.random.nextInt(dataSets.size());
 
-		return new TrainingDataSet(input, desiredOutput);
+		return toTrainingDataSet(dataSets.get(randomSetNumber));
 	}
 
 	/**
@@ -0,0 +1,386 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+// Copyright 2014 Novanoid
+
+package io.github.novanoid.jsynapse.training.distributed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import io.github.novanoid.jsynapse.file.FileManager;
+import io.github.novanoid.jsynapse.network.NeuralNetwork;
+
+/**
+ * Coordinates several training processes working on copies of the same neural
+ * network. Workers periodically send the changes they made to their weights,
+ * the changes of one round are averaged and added to the shared weights, which
+ * are sent back to every worker of the round. A round is closed as soon as
+ * every connected worker contributed or the straggler timeout has passed since
+ * the first contribution, late workers contribute to the following round.
+ * 
+ * @author Novanoid
+ */
+public class ParameterAveragingCoordinator {
+	/**
+	 * The number every worker starts its connection with
+	 */
+	static final int MAGIC_NUMBER = 0x4a53594e;
+
+	/**
+	 * The shared network, only up to date after calling getNetwork()
+	 */
+	private NeuralNetwork net;
+	/**
+	 * The shared weights and biases
+	 */
+	private double[] parameters;
+	/**
+	 * Sum of the changes sent by workers in the current round
+	 */
+	private double[] deltaSum;
+	/**
+	 * Amount of workers that contributed to the current round
+	 */
+	private int contributions;
+	/**
+	 * Number of the current round
+	 */
+	private long round;
+	/**
+	 * Milliseconds to wait for other workers after the first contribution
+	 */
+	private long stragglerTimeout;
+
+	private int connectedWorkers, joinedWorkers;
+	private long trainedSamples;
+
+	private ServerSocket serverSocket;
+	private ExecutorService executor;
+
+	/**
+	 * Create a new coordinator for distributed training
+	 * 
+	 * @param net
+	 *            Neural network whose weights all workers start with
+	 * @param stragglerTimeout
+	 *            Milliseconds to wait for slower workers before closing a
+	 *            round without them
+	 */
+	public ParameterAveragingCoordinator(NeuralNetwork net,
+			long stragglerTimeout) {
+		this.net = net;
+		this.parameters = net.getParameters();
+		this.deltaSum = new double[this.parameters.length];
+		this.stragglerTimeout = stragglerTimeout;
+	}
+
+	/**
+	 * Start accepting workers
+	 * 
+	 * @param address
+	 *            Address and port to listen on, the port may be 0 to pick any
+	 *            free port
+	 * @throws IOException
+	 *             If the coordinator could not be bound to the address
+	 */
+	public synchronized void start(InetSocketAddress address)
+			throws IOException {
+		if (this.serverSocket != null) {
+			throw new IllegalStateException(
+					"The coordinator is already running.");
+		}
+
+		this.serverSocket = new ServerSocket();
+		this.serverSocket.bind(address);
+		this.executor = Executors.newCachedThreadPool();
+
+		final ServerSocket serverSocket = this.serverSocket;
+		this.executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					while (true) {
+						final Socket socket = serverSocket.accept();
+						executor.execute(new Runnable() {
+							@Override
+							public void run() {
+								serveWorker(socket);
+							}
+						});
+					}
+				} catch (IOException e) {
+					/* The server socket has been closed */
+				}
+			}
+		});
+	}
+
+	/**
+	 * Stop accepting workers and close all connections
+	 */
+	public synchronized void stop() {
+		if (this.serverSocket == null) {
+			return;
+		}
+
+		try {
+			this.serverSocket.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		this.executor.shutdownNow();
+
+		this.serverSocket = null;
+		this.executor = null;
+	}
+
+	/**
+	 * Get the port this coordinator is listening on
+	 * 
+	 * @return The port of this coordinator
+	 */
+	public synchronized int getPort() {
+		if (this.serverSocket == null) {
+			throw new IllegalStateException("The coordinator is not running.");
+		}
+
+		return this.serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Get the shared neural network with the current averaged weights
+	 * 
+	 * @return The shared neural network
+	 */
+	public synchronized NeuralNetwork getNetwork() {
+		this.net.setParameters(this.parameters);
+		return this.net;
+	}
+
+	/**
+	 * Get the amount of data sets all workers have trained with so far
+	 * 
+	 * @return Amount of trained data sets
+	 */
+	public synchronized long getTrainedSamples() {
+		return this.trainedSamples;
+	}
+
+	/**
+	 * Wait until the given amount of workers has joined and all of them have
+	 * disconnected again
+	 * 
+	 * @param workers
+	 *            Amount of workers to wait for
+	 * @throws InterruptedException
+	 *             If the thread was interrupted while waiting
+	 */
+	public synchronized void awaitWorkers(int workers)
+			throws InterruptedException {
+		while (this.joinedWorkers < workers || this.connectedWorkers > 0) {
+			this.wait();
+		}
+	}
+
+	/**
+	 * Exchange weights with a single worker until it disconnects
+	 * 
+	 * @param socket
+	 *            Connection to the worker
+	 */
+	private void serveWorker(Socket socket) {
+		boolean joined = false;
+
+		try {
+			socket.setTcpNoDelay(true);
+			DataInputStream input = new DataInputStream(
+					new BufferedInputStream(socket.getInputStream()));
+			DataOutputStream output = new DataOutputStream(
+					new BufferedOutputStream(socket.getOutputStream()));
+
+			if (input.readInt() != MAGIC_NUMBER) {
+				throw new IOException("The client is not a training worker.");
+			}
+			int parameterCount = input.readInt();
+			if (parameterCount != this.parameters.length) {
+				throw new IOException("The network of the worker has "
+						+ parameterCount + " parameters, yet "
+						+ this.parameters.length + " are needed.");
+			}
+
+			double[] current;
+			synchronized (this) {
+				this.connectedWorkers++;
+				this.joinedWorkers++;
+				joined = true;
+				current = this.parameters.clone();
+			}
+			writeParameters(output, current);
+
+			double[] delta = new double[parameterCount];
+			while (true) {
+				int samples;
+				try {
+					samples = input.readInt();
+				} catch (IOException e) {
+					/* The worker has finished */
+					break;
+				}
+				for (int i = 0; i < delta.length; i++) {
+					delta[i] = input.readDouble();
+				}
+
+				writeParameters(output, this.synchronize(delta, samples));
+			}
+		} catch (SocketException e) {
+			/* The coordinator has been stopped */
+		} catch (IOException e) {
+			System.err.println("Lost the connection to a training worker:");
+			e.printStackTrace();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+
+			if (joined) {
+				synchronized (this) {
+					this.connectedWorkers--;
+					if (this.contributions > 0
+							&& this.contributions >= this.connectedWorkers) {
+						this.closeRound();
+					}
+					this.notifyAll();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Add the changes of a worker to the current round and wait for the round
+	 * to be closed
+	 * 
+	 * @param delta
+	 *            Changes the worker made to its weights since the last round
+	 * @param samples
+	 *            Amount of data sets the worker trained with since the last
+	 *            round
+	 * @return The shared weights after the round
+	 * @throws InterruptedException
+	 *             If the thread was interrupted while waiting
+	 */
+	private synchronized double[] synchronize(double[] delta, int samples)
+			throws InterruptedException {
+		for (int i = 0; i < delta.length; i++) {
+			this.deltaSum[i] += delta[i];
+		}
+		this.contributions++;
+		this.trainedSamples += samples;
+
+		long currentRound = this.round;
+		if (this.contributions >= this.connectedWorkers) {
+			this.closeRound();
+		} else {
+			long deadline = System.currentTimeMillis() + this.stragglerTimeout;
+			while (this.round == currentRound) {
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					this.closeRound();
+				} else {
+					this.wait(remaining);
+				}
+			}
+		}
+
+		return this.parameters.clone();
+	}
+
+	/**
+	 * Add the average of all changes of the current round to the shared
+	 * weights and start the next round
+	 */
+	private void closeRound() {
+		for (int i = 0; i < this.parameters.length; i++) {
+			this.parameters[i] += this.deltaSum[i] / this.contributions;
+			this.deltaSum[i] = 0.0;
+		}
+
+		this.contributions = 0;
+		this.round++;
+		this.notifyAll();
+	}
+
+	/**
+	 * Send weights and biases over a connection
+	 * 
+	 * @param output
+	 *            Stream of the connection
+	 * @param parameters
+	 *            Weights and biases to be sent
+	 * @throws IOException
+	 *             If the weights could not be sent
+	 */
+	static void writeParameters(DataOutputStream output, double[] parameters)
+			throws IOException {
+		for (double parameter : parameters) {
+			output.writeDouble(parameter);
+		}
+		output.flush();
+	}
+
+	/**
+	 * Coordinate the distributed training of a digit recognition network
+	 * 
+	 * @param args
+	 *            Port to listen on, amount of workers to wait for, amount of
+	 *            hidden layers and the file to save the trained network to
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length != 4) {
+			System.err.println("Usage: ParameterAveragingCoordinator <port> "
+					+ "<workers> <hidden layers> <network file>");
+			return;
+		}
+
+		int workers = Integer.parseInt(args[1]);
+		NeuralNetwork net = new NeuralNetwork(256, Integer.parseInt(args[2]),
+				10);
+		ParameterAveragingCoordinator coordinator = new ParameterAveragingCoordinator(
+				net, 1000);
+		coordinator.start(new InetSocketAddress(Integer.parseInt(args[0])));
+		System.out.println("Waiting for " + workers + " workers on port "
+				+ coordinator.getPort() + "...");
+
+		long start = System.currentTimeMillis();
+		coordinator.awaitWorkers(workers);
+		long duration = System.currentTimeMillis() - start;
+		coordinator.stop();
+
+		System.out.println(coordinator.getTrainedSamples()
+				+ " training iterations performed in " + duration + "ms");
+		FileManager.saveNetwork(coordinator.getNetwork(), args[3]);
+	}
+}
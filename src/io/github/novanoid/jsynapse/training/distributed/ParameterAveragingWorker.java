@@ -0,0 +1,198 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+// Copyright 2014 Novanoid
+
+package io.github.novanoid.jsynapse.training.distributed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import io.github.novanoid.jsynapse.network.NeuralNetwork;
+import io.github.novanoid.jsynapse.training.Training;
+import io.github.novanoid.jsynapse.training.digitrecognition.DigitRecognitionTraining;
+
+/**
+ * Runs a training on its own share of the data and periodically averages the
+ * weights of its network with other workers through a
+ * {@link ParameterAveragingCoordinator}
+ * 
+ * @author Novanoid
+ */
+public class ParameterAveragingWorker {
+	private Training training;
+	/**
+	 * Training iterations to perform between two synchronizations
+	 */
+	private int synchronizationPeriod;
+	/**
+	 * The weights received at the last synchronization
+	 */
+	private double[] synchronizedParameters;
+
+	private Socket socket;
+	private DataInputStream input;
+	private DataOutputStream output;
+
+	/**
+	 * Create a new worker for distributed training
+	 * 
+	 * @param training
+	 *            Training to be performed on the local data
+	 * @param synchronizationPeriod
+	 *            Training iterations to perform between two synchronizations
+	 */
+	public ParameterAveragingWorker(Training training,
+			int synchronizationPeriod) {
+		if (synchronizationPeriod < 1) {
+			throw new IllegalArgumentException("The synchronization period ("
+					+ synchronizationPeriod + ") must be at least 1.");
+		}
+
+		this.training = training;
+		this.synchronizationPeriod = synchronizationPeriod;
+	}
+
+	/**
+	 * Connect to a coordinator and take over the shared weights
+	 * 
+	 * @param address
+	 *            Address of the coordinator
+	 * @throws IOException
+	 *             If the connection could not be established
+	 */
+	public void connect(InetSocketAddress address) throws IOException {
+		NeuralNetwork net = this.training.getNetwork();
+
+		this.socket = new Socket();
+		this.socket.setTcpNoDelay(true);
+		this.socket.connect(address);
+		this.input = new DataInputStream(new BufferedInputStream(
+				this.socket.getInputStream()));
+		this.output = new DataOutputStream(new BufferedOutputStream(
+				this.socket.getOutputStream()));
+
+		this.output.writeInt(ParameterAveragingCoordinator.MAGIC_NUMBER);
+		this.output.writeInt(net.getAmountOfParameters());
+		this.output.flush();
+
+		this.synchronizedParameters = this.readParameters(net
+				.getAmountOfParameters());
+		net.setParameters(this.synchronizedParameters);
+	}
+
+	/**
+	 * Train the neural network for the specified amount of times, averaging
+	 * its weights with the other workers after every synchronization period
+	 * 
+	 * @param iterations
+	 *            Training iterations to perform
+	 * @throws IOException
+	 *             If the weights could not be exchanged
+	 */
+	public void startTraining(int iterations) throws IOException {
+		if (this.socket == null) {
+			throw new IllegalStateException(
+					"The worker is not connected to a coordinator.");
+		}
+
+		NeuralNetwork net = this.training.getNetwork();
+		for (int i = 0; i < iterations; i += this.synchronizationPeriod) {
+			int period = Math.min(this.synchronizationPeriod, iterations - i);
+			this.training.startTraining(period, false);
+
+			double[] parameters = net.getParameters();
+			this.output.writeInt(period);
+			for (int j = 0; j < parameters.length; j++) {
+				parameters[j] -= this.synchronizedParameters[j];
+			}
+			ParameterAveragingCoordinator.writeParameters(this.output,
+					parameters);
+
+			this.synchronizedParameters = this
+					.readParameters(parameters.length);
+			net.setParameters(this.synchronizedParameters);
+		}
+	}
+
+	/**
+	 * Disconnect from the coordinator
+	 */
+	public void close() {
+		if (this.socket == null) {
+			return;
+		}
+
+		try {
+			this.socket.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		this.socket = null;
+	}
+
+	/**
+	 * Receive weights and biases from the coordinator
+	 * 
+	 * @param parameterCount
+	 *            Amount of weights and biases to receive
+	 * @return Received weights and biases
+	 * @throws IOException
+	 *             If the weights could not be received
+	 */
+	private double[] readParameters(int parameterCount) throws IOException {
+		double[] parameters = new double[parameterCount];
+		for (int i = 0; i < parameterCount; i++) {
+			parameters[i] = this.input.readDouble();
+		}
+
+		return parameters;
+	}
+
+	/**
+	 * Train a digit recognition network on a local share of the data
+	 * 
+	 * @param args
+	 *            Host and port of the coordinator, amount of hidden layers, the
+	 *            file containing the data, training iterations and the
+	 *            synchronization period
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length != 6) {
+			System.err.println("Usage: ParameterAveragingWorker <host> <port> "
+					+ "<hidden layers> <data file> <iterations> "
+					+ "<synchronization period>");
+			return;
+		}
+
+		NeuralNetwork net = new NeuralNetwork(256, Integer.parseInt(args[2]),
+				10);
+		DigitRecognitionTraining training = new DigitRecognitionTraining(net,
+				args[3], 10000);
+		ParameterAveragingWorker worker = new ParameterAveragingWorker(
+				training, Integer.parseInt(args[5]));
+
+		worker.connect(new InetSocketAddress(args[0], Integer
+				.parseInt(args[1])));
+		worker.startTraining(Integer.parseInt(args[4]));
+		worker.close();
+
+		System.out.println("Accuracy on the local data: "
+				+ training.startTesting(1000, false));
+	}
+}
@@ -0,0 +1,159 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+// Copyright 2014 Novanoid
+
+package io.github.novanoid.jsynapse.training.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.github.novanoid.jsynapse.math.RandomStream;
+import io.github.novanoid.jsynapse.network.NeuralNetwork;
+
+/**
+ * A configuration of a neural network and its training to be tried by a
+ * search
+ * 
+ * @author Novanoid
+ */
+public class Hyperparameters {
+	private final double eta, alpha;
+	private final int hiddenLayers;
+
+	/**
+	 * Create a new configuration
+	 * 
+	 * @param eta
+	 *            Value for the learning rate
+	 * @param alpha
+	 *            Value for the momentum
+	 * @param hiddenLayers
+	 *            Amount of hidden layers
+	 */
+	public Hyperparameters(double eta, double alpha, int hiddenLayers) {
+		this.eta = eta;
+		this.alpha = alpha;
+		this.hiddenLayers = hiddenLayers;
+	}
+
+	/**
+	 * Create random configurations, with learning rates and momentums spread
+	 * evenly across their orders of magnitude
+	 * 
+	 * @param amount
+	 *            Amount of configurations to create
+	 * @param minimumEta
+	 *            Lowest learning rate
+	 * @param maximumEta
+	 *            Highest learning rate
+	 * @param minimumAlpha
+	 *            Lowest momentum, must be greater than 0
+	 * @param maximumAlpha
+	 *            Highest momentum
+	 * @param maximumHiddenLayers
+	 *            Highest amount of hidden layers, starting at 1
+	 * @param random
+	 *            Source of randomness
+	 * @return A list of random configurations
+	 */
+	public static List<Hyperparameters> random(int amount, double minimumEta,
+			double maximumEta, double minimumAlpha, double maximumAlpha,
+			int maximumHiddenLayers, RandomStream random) {
+		List<Hyperparameters> configurations = new ArrayList<Hyperparameters>();
+		for (int i = 0; i < amount; i++) {
+			configurations.add(new Hyperparameters(logUniform(minimumEta,
+					maximumEta, random), logUniform(minimumAlpha,
+					maximumAlpha, random),
+					1 + random.nextInt(maximumHiddenLayers)));
+		}
+
+		return configurations;
+	}
+
+	/**
+	 * Pick a random value so that every order of magnitude between the bounds
+	 * is equally likely
+	 * 
+	 * @param minimum
+	 *            Lowest value, must be greater than 0
+	 * @param maximum
+	 *            Highest value
+	 * @param random
+	 *            Source of randomness
+	 * @return A random value between the bounds
+	 */
+	private static double logUniform(double minimum, double maximum,
+			RandomStream random) {
+		if (minimum <= 0 || maximum < minimum) {
+			throw new IllegalArgumentException("The range from " + minimum
+					+ " to " + maximum + " must be positive and not empty.");
+		}
+
+		return Math.exp(Math.log(minimum) + random.nextDouble()
+				* (Math.log(maximum) - Math.log(minimum)));
+	}
+
+	/**
+	 * Create a new neural network using this configuration
+	 * 
+	 * @param inputNodes
+	 *            Number of neural nodes in the input layer
+	 * @param outputNodes
+	 *            Number of neural nodes in the output layer
+	 * @param random
+	 *            Source of the random initial weights
+	 * @return The configured neural network
+	 */
+	public NeuralNetwork createNetwork(int inputNodes, int outputNodes,
+			RandomStream random) {
+		NeuralNetwork net = new NeuralNetwork(inputNodes, this.hiddenLayers,
+				outputNodes, random);
+		net.configure(this.eta, this.alpha);
+
+		return net;
+	}
+
+	/**
+	 * Get the learning rate
+	 * 
+	 * @return Value for the learning rate
+	 */
+	public double getEta() {
+		return this.eta;
+	}
+
+	/**
+	 * Get the momentum
+	 * 
+	 * @return Value for the momentum
+	 */
+	public double getAlpha() {
+		return this.alpha;
+	}
+
+	/**
+	 * Get the amount of hidden layers
+	 * 
+	 * @return Amount of hidden layers
+	 */
+	public int getHiddenLayers() {
+		return this.hiddenLayers;
+	}
+
+	@Override
+	public String toString() {
+		return "eta=" + this.eta + ", alpha=" + this.alpha + ", hidden layers="
+				+ this.hiddenLayers;
+	}
+}
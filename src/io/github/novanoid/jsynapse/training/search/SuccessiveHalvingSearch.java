@@ -0,0 +1,262 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+// Copyright 2014 Novanoid
+
+package io.github.novanoid.jsynapse.training.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import io.github.novanoid.jsynapse.math.RandomStream;
+import io.github.novanoid.jsynapse.network.NeuralNetwork;
+import io.github.novanoid.jsynapse.training.Training;
+import io.github.novanoid.jsynapse.training.digitrecognition.DigitRecognitionTraining;
+
+/**
+ * Searches for a good configuration by training many networks at the same
+ * time, one per processor core. After each round all remaining networks are
+ * tested and the worse half is dropped, while the better half is trained
+ * twice as long in the next round.
+ * 
+ * @author Novanoid
+ */
+public class SuccessiveHalvingSearch {
+	private TrainingFactory trainingFactory;
+	private int inputNodes, outputNodes;
+	private int threads;
+	/**
+	 * Source of the initial weights and data sets of all trials, split into
+	 * one independent stream per trial
+	 */
+	private RandomStream random;
+
+	/**
+	 * Create a new search using one thread per processor core
+	 * 
+	 * @param trainingFactory
+	 *            Creates the training of each tried network
+	 * @param inputNodes
+	 *            Number of neural nodes in the input layer
+	 * @param outputNodes
+	 *            Number of neural nodes in the output layer
+	 */
+	public SuccessiveHalvingSearch(TrainingFactory trainingFactory,
+			int inputNodes, int outputNodes) {
+		this(trainingFactory, inputNodes, outputNodes, Runtime.getRuntime()
+				.availableProcessors());
+	}
+
+	/**
+	 * Create a new search
+	 * 
+	 * @param trainingFactory
+	 *            Creates the training of each tried network
+	 * @param inputNodes
+	 *            Number of neural nodes in the input layer
+	 * @param outputNodes
+	 *            Number of neural nodes in the output layer
+	 * @param threads
+	 *            Amount of networks to train at the same time
+	 */
+	public SuccessiveHalvingSearch(TrainingFactory trainingFactory,
+			int inputNodes, int outputNodes, int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("The amount of threads ("
+					+ threads + ") must be at least 1.");
+		}
+
+		this.trainingFactory = trainingFactory;
+		this.inputNodes = inputNodes;
+		this.outputNodes = outputNodes;
+		this.threads = threads;
+		this.random = RandomStream.create();
+	}
+
+	/**
+	 * Replace the source of the initial weights and data sets of all trials,
+	 * making the search reproducible
+	 * 
+	 * @param random
+	 *            New source of random decisions
+	 */
+	public void setRandom(RandomStream random) {
+		this.random = random;
+	}
+
+	/**
+	 * Try all configurations and find the best one
+	 * 
+	 * @param configurations
+	 *            Configurations to try
+	 * @param minimumIterations
+	 *            Training iterations of each network in the first round
+	 * @param maximumIterations
+	 *            Training iterations after which the remaining networks are
+	 *            compared a last time
+	 * @param testIterations
+	 *            Amount of data sets to test each network with after a round
+	 * @param verbose
+	 *            True, if the result of each round should be output, false
+	 *            otherwise
+	 * @return The trial of the best configuration
+	 * @throws InterruptedException
+	 *             If the thread was interrupted while waiting for the trials
+	 */
+	public Trial search(List<Hyperparameters> configurations,
+			int minimumIterations, int maximumIterations, int testIterations,
+			boolean verbose) throws InterruptedException {
+		if (configurations.isEmpty()) {
+			throw new IllegalArgumentException(
+					"At least one configuration must be specified.");
+		} else if (minimumIterations < 1
+				|| maximumIterations < minimumIterations) {
+			throw new IllegalArgumentException("The training iterations must "
+					+ "range from at least 1 (" + minimumIterations
+					+ ") to at least as many (" + maximumIterations + ").");
+		}
+
+		List<Trial> trials = new ArrayList<Trial>();
+		for (Hyperparameters hyperparameters : configurations) {
+			NeuralNetwork net = hyperparameters.createNetwork(this.inputNodes,
+					this.outputNodes, this.random.split());
+			Training training = this.trainingFactory.createTraining(net);
+			training.setRandom(this.random.split());
+			trials.add(new Trial(hyperparameters, training));
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(
+				this.threads, trials.size()));
+		try {
+			int iterations = minimumIterations;
+			for (int round = 1;; round++) {
+				this.trainAll(executor, trials, iterations, testIterations);
+
+				Collections.sort(trials, new Comparator<Trial>() {
+					@Override
+					public int compare(Trial a, Trial b) {
+						return Double.compare(b.getAccuracy(), a.getAccuracy());
+					}
+				});
+
+				if (verbose) {
+					System.out.println("Round " + round + ", " + iterations
+							+ " iterations, " + trials.size() + " trials:");
+					for (Trial trial : trials) {
+						System.out.println("  " + trial);
+					}
+				}
+
+				if (trials.size() == 1 || iterations == maximumIterations) {
+					return trials.get(0);
+				}
+
+				trials = new ArrayList<Trial>(trials.subList(0,
+						(trials.size() + 1) / 2));
+				iterations = (int) Math.min(2L * iterations, maximumIterations);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Train and test all trials in parallel
+	 * 
+	 * @param executor
+	 *            Executor running the trials
+	 * @param trials
+	 *            Trials to train
+	 * @param iterations
+	 *            Amount of training iterations each network should reach
+	 * @param testIterations
+	 *            Amount of data sets to test each network with
+	 * @throws InterruptedException
+	 *             If the thread was interrupted while waiting for the trials
+	 */
+	private void trainAll(ExecutorService executor, List<Trial> trials,
+			final int iterations, final int testIterations)
+			throws InterruptedException {
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (final Trial trial : trials) {
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					trial.trainUntil(iterations, testIterations);
+					return null;
+				}
+			});
+		}
+
+		List<Future<Void>> futures = executor.invokeAll(tasks);
+		for (int i = 0; i < futures.size(); i++) {
+			try {
+				futures.get(i).get();
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("The trial with "
+						+ trials.get(i).getHyperparameters() + " failed.",
+						e.getCause());
+			}
+		}
+	}
+
+	/**
+	 * Search a good configuration for recognizing digits
+	 * 
+	 * @param args
+	 *            Optional amount of configurations to try (defaults to 32) and
+	 *            training iterations of the first and the last round (default
+	 *            to 1000 and 100000)
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		int amount = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+		int minimumIterations = args.length > 1 ? Integer.parseInt(args[1])
+				: 1000;
+		int maximumIterations = args.length > 2 ? Integer.parseInt(args[2])
+				: 100000;
+
+		final DigitRecognitionTraining dataSource = new DigitRecognitionTraining(
+				new NeuralNetwork(256, 1, 10));
+		dataSource.holdOutDataSets(0.2);
+
+		SuccessiveHalvingSearch search = new SuccessiveHalvingSearch(
+				new TrainingFactory() {
+					@Override
+					public Training createTraining(NeuralNetwork net) {
+						return new DigitRecognitionTraining(net, dataSource);
+					}
+				}, 256, 10);
+		List<Hyperparameters> configurations = Hyperparameters.random(amount,
+				0.0001, 0.1, 0.00001, 0.1, 3, RandomStream.create());
+
+		Trial best = search.search(configurations, minimumIterations,
+				maximumIterations, 300, true);
+
+		System.out.println();
+		System.out.println("Best configuration: " + best.getHyperparameters());
+		System.out.println("Learning curve:");
+		for (Map.Entry<Integer, Double> point : best.getLearningCurve()
+				.entrySet()) {
+			System.out.println("  " + point.getKey() + " iterations: "
+					+ point.getValue());
+		}
+	}
+}
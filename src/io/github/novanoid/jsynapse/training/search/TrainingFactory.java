@@ -0,0 +1,37 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+// Copyright 2014 Novanoid
+
+package io.github.novanoid.jsynapse.training.search;
+
+import io.github.novanoid.jsynapse.network.NeuralNetwork;
+import io.github.novanoid.jsynapse.training.Training;
+
+/**
+ * Creates the trainings of the networks tried by a search. Trainings created
+ * by one factory are used by several threads at the same time, so they should
+ * share their data sets without modifying them.
+ * 
+ * @author Novanoid
+ */
+public interface TrainingFactory {
+	/**
+	 * Create a new training for a neural network
+	 * 
+	 * @param net
+	 *            Neural network to be trained
+	 * @return A training for the network
+	 */
+	public Training createTraining(NeuralNetwork net);
+}
@@ -0,0 +1,130 @@
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+// Copyright 2014 Novanoid
+
+package io.github.novanoid.jsynapse.training.search;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import io.github.novanoid.jsynapse.network.NeuralNetwork;
+import io.github.novanoid.jsynapse.training.Training;
+
+/**
+ * A neural network trained with one configuration during a search, together
+ * with its accuracy after each evaluation
+ * 
+ * @author Novanoid
+ */
+public class Trial {
+	private Hyperparameters hyperparameters;
+	private Training training;
+	private int iterations;
+	private double accuracy;
+	/**
+	 * The accuracy after each evaluation, by the amount of training iterations
+	 * performed until then
+	 */
+	private Map<Integer, Double> learningCurve;
+
+	/**
+	 * Create a new trial with an untrained network
+	 * 
+	 * @param hyperparameters
+	 *            Configuration of the network and its training
+	 * @param training
+	 *            Training of the configured network
+	 */
+	Trial(Hyperparameters hyperparameters, Training training) {
+		this.hyperparameters = hyperparameters;
+		this.training = training;
+		this.learningCurve = new LinkedHashMap<Integer, Double>();
+	}
+
+	/**
+	 * Train the network until it has been trained for the given amount of
+	 * iterations in total and measure its accuracy afterwards
+	 * 
+	 * @param totalIterations
+	 *            Amount of training iterations to reach
+	 * @param testIterations
+	 *            Amount of data sets to measure the accuracy with
+	 */
+	void trainUntil(int totalIterations, int testIterations) {
+		if (totalIterations > this.iterations) {
+			this.training.startTraining(totalIterations - this.iterations,
+					false);
+			this.iterations = totalIterations;
+		}
+
+		this.accuracy = this.training.startTesting(testIterations, false);
+		if (Double.isNaN(this.accuracy)) {
+			this.accuracy = 0.0;
+		}
+		this.learningCurve.put(this.iterations, this.accuracy);
+	}
+
+	/**
+	 * Get the configuration tried by this trial
+	 * 
+	 * @return Configuration of the network and its training
+	 */
+	public Hyperparameters getHyperparameters() {
+		return this.hyperparameters;
+	}
+
+	/**
+	 * Get the trained neural network
+	 * 
+	 * @return The neural network of this trial
+	 */
+	public NeuralNetwork getNetwork() {
+		return this.training.getNetwork();
+	}
+
+	/**
+	 * Get the amount of training iterations performed so far
+	 * 
+	 * @return Amount of training iterations
+	 */
+	public int getIterations() {
+		return this.iterations;
+	}
+
+	/**
+	 * Get the accuracy measured at the last evaluation
+	 * 
+	 * @return The last accuracy, ranging from 0 to 1
+	 */
+	public double getAccuracy() {
+		return this.accuracy;
+	}
+
+	/**
+	 * Get the accuracy after each evaluation
+	 * 
+	 * @return The accuracies by the amount of training iterations performed
+	 *         until they were measured, in the order of the evaluations
+	 */
+	public Map<Integer, Double> getLearningCurve() {
+		return Collections.unmodifiableMap(this.learningCurve);
+	}
+
+	@Override
+	public String toString() {
+		return this.hyperparameters + ": accuracy " + this.accuracy
+				+ " after " + this.iterations + " iterations";
+	}
+}